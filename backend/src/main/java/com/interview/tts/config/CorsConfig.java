@@ -1,5 +1,6 @@
 package com.interview.tts.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.cors.CorsConfiguration;
@@ -9,15 +10,22 @@ import org.springframework.web.filter.CorsFilter;
 @Configuration
 public class CorsConfig {
 
+    // 允许的来源，逗号分隔，支持通配符模式如 https://*.example.com；WebSocket端点共用该配置
+    @Value("${project.cors-allowed-origins:*}")
+    private String[] allowedOrigins;
+
     @Bean
     public CorsFilter corsFilter() {
         CorsConfiguration config = new CorsConfiguration();
-        // 允许所有来源
-        config.addAllowedOriginPattern("*");
+        for (String origin : allowedOrigins) {
+            config.addAllowedOriginPattern(origin);
+        }
         // 允许所有头
         config.addAllowedHeader("*");
         // 允许所有方法
         config.addAllowedMethod("*");
+        // 跨域时前端需要读取流式生成返回的音频记录ID
+        config.addExposedHeader("X-Audio-Id");
         // 允许携带认证信息
         config.setAllowCredentials(true);
         // 预检请求缓存时间
@@ -0,0 +1,45 @@
+package com.interview.tts.config;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 共享HTTP客户端
+ * 全部上游调用共用一个连接池和调度器，各服务通过 HttpClients.create 派生客户端（newBuilder 不会新建连接池），
+ * 同一主机的连接在服务之间复用；TLS连接通过ALPN协商HTTP/2，多个请求复用同一连接
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${http-client.pool.max-idle:32}")
+    private int maxIdleConnections;
+
+    @Value("${http-client.pool.keep-alive-ms:300000}")
+    private long keepAliveMs;
+
+    @Value("${http-client.dispatcher.max-requests:128}")
+    private int maxRequests;
+
+    @Value("${http-client.dispatcher.max-requests-per-host:32}")
+    private int maxRequestsPerHost;
+
+    @Bean
+    public OkHttpClient sharedHttpClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMs, TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .build();
+    }
+}
@@ -0,0 +1,32 @@
+package com.interview.tts.config;
+
+import com.interview.tts.interceptor.WebSocketAuthInterceptor;
+import com.interview.tts.websocket.TtsV2StreamHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * 原生WebSocket端点 (音频等二进制流，不经过STOMP)
+ */
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class StreamWebSocketConfig implements WebSocketConfigurer {
+
+    private final TtsV2StreamHandler ttsV2StreamHandler;
+    private final WebSocketAuthInterceptor webSocketAuthInterceptor;
+
+    @Value("${project.cors-allowed-origins:*}")
+    private String[] allowedOrigins;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(ttsV2StreamHandler, "/ws/tts/v2")
+                .addInterceptors(webSocketAuthInterceptor)
+                .setAllowedOriginPatterns(allowedOrigins);
+    }
+}
@@ -0,0 +1,63 @@
+package com.interview.tts.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 合成引擎路由配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "tts.router")
+public class TtsRouterProperties {
+
+    /**
+     * 引擎优先级，未列出的引擎排在最后
+     */
+    private List<String> order = new ArrayList<>(List.of("volc-v1", "volc-v2"));
+
+    /**
+     * 跨引擎的等价音色（双向），未配置时按相同语言和性别选择
+     */
+    private Map<String, String> voiceEquivalents = new HashMap<>();
+
+    /**
+     * 健康分低于该值的引擎排到健康引擎之后（健康分为成功率的指数移动平均，0~1）
+     */
+    private double minHealth = 0.5;
+
+    private Breaker breaker = new Breaker();
+
+    @Data
+    public static class Breaker {
+        /**
+         * 统计最近多少次调用
+         */
+        private int windowSize = 20;
+
+        /**
+         * 至少多少次调用后才判断失败率
+         */
+        private int minCalls = 10;
+
+        private double failureRateThreshold = 0.5;
+
+        /**
+         * 单次上游调用超过该耗时计为失败：v1按单个分段的HTTP请求，v2按会话开始到首个音频分片
+         */
+        private long slowCallMs = 20000;
+
+        /**
+         * 打开后多久放行试探请求
+         */
+        private long openMs = 30000;
+
+        private int halfOpenCalls = 2;
+    }
+}
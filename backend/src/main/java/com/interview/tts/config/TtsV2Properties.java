@@ -41,4 +41,82 @@ public class TtsV2Properties {
      */
     @Value("${volcengine.tts.access-token:}")
     private String accessToken;
+
+    /**
+     * 连接池配置
+     */
+    private Pool pool = new Pool();
+
+    /**
+     * 文本发送配置
+     */
+    private Feeder feeder = new Feeder();
+
+    /**
+     * WebSocket实时转发配置
+     */
+    private Stream stream = new Stream();
+
+    @Data
+    public static class Pool {
+
+        /**
+         * 最大连接数（所有resourceId合计）
+         */
+        private int maxConnections = 8;
+
+        /**
+         * 每个连接同时承载的最大会话数
+         * 服务端同一连接同一时刻只处理一个会话，默认1；会话结束后连接可复用
+         */
+        private int maxSessionsPerConnection = 1;
+
+        /**
+         * 空闲超过该时间的连接被回收(毫秒)
+         */
+        private long idleTimeoutMs = 60000;
+
+        /**
+         * 连接最长存活时间(毫秒)，到期后空闲时回收，避免长期占用同一连接
+         */
+        private long maxLifetimeMs = 600000;
+
+        /**
+         * 获取会话的最长等待时间(毫秒)
+         */
+        private long acquireTimeoutMs = 10000;
+
+        /**
+         * 心跳检测间隔(秒)，超过2个间隔无响应视为断线
+         */
+        private int heartbeatIntervalSeconds = 30;
+    }
+
+    @Data
+    public static class Feeder {
+
+        /**
+         * 单个TASK_REQUEST帧的最大字符数
+         */
+        private int maxFrameChars = 200;
+
+        /**
+         * 增量模式下未遇到句末标点时的最长缓冲时间(毫秒)
+         */
+        private long flushIntervalMs = 500;
+    }
+
+    @Data
+    public static class Stream {
+
+        /**
+         * 同时进行的流式合成数，每个合成占用一个线程直到音频转发完成
+         */
+        private int maxConcurrent = 16;
+
+        /**
+         * 超过并发数时的排队上限，队列满时直接返回繁忙
+         */
+        private int queueCapacity = 32;
+    }
 }
@@ -2,6 +2,7 @@ package com.interview.tts.config;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -14,6 +15,15 @@ public class WebConfig implements WebMvcConfigurer {
     @Value("${storage.public-base-url:http://localhost:8080}")
     private String publicBaseUrl;
 
+    // 流式合成等异步响应的超时时间，长文本合成可能超过容器默认的30秒
+    @Value("${audio.stream.timeout-ms:300000}")
+    private long asyncTimeoutMs;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(asyncTimeoutMs);
+    }
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // 本地存储模式下的静态资源访问
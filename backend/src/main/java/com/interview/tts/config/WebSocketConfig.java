@@ -1,28 +1,56 @@
 package com.interview.tts.config;
 
+import com.interview.tts.entity.SysUser;
+import com.interview.tts.interceptor.WebSocketAuthInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.security.Principal;
+import java.util.Map;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final WebSocketAuthInterceptor webSocketAuthInterceptor;
+
+    @Value("${project.cors-allowed-origins:*}")
+    private String[] allowedOrigins;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // 启用简单内存消息代理
         config.enableSimpleBroker("/topic", "/queue");
         // 应用程序目标前缀
         config.setApplicationDestinationPrefixes("/app");
+        // 点对点推送前缀，如 /user/queue/tasks
+        config.setUserDestinationPrefix("/user");
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
-        // 注册STOMP端点
+        // 注册STOMP端点，握手时认证，连接的Principal为用户ID
         registry.addEndpoint("/ws")
-                .setAllowedOrigins("*")
+                .addInterceptors(webSocketAuthInterceptor)
+                .setHandshakeHandler(new DefaultHandshakeHandler() {
+                    @Override
+                    protected Principal determineUser(ServerHttpRequest request, WebSocketHandler wsHandler,
+                                                      Map<String, Object> attributes) {
+                        SysUser user = (SysUser) attributes.get(WebSocketAuthInterceptor.CURRENT_USER_ATTR);
+                        String name = String.valueOf(user.getId());
+                        return () -> name;
+                    }
+                })
+                .setAllowedOriginPatterns(allowedOrigins)
                 .withSockJS();
     }
 }
@@ -6,7 +6,10 @@ import com.interview.tts.service.AudioService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.Data;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -15,6 +18,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class AudioController {
 
+    private static final String AUDIO_ID_HEADER = "X-Audio-Id";
+
     private final AudioService audioService;
 
     @PostMapping("/generate")
@@ -22,10 +27,35 @@ public class AudioController {
             @RequestBody AudioGenerateRequest request,
             HttpServletRequest httpRequest) {
         String userKey = (String) httpRequest.getAttribute(UserKeyInterceptor.USER_KEY_ATTR);
-        AudioGenerateResponse response = audioService.generate(userKey, request.getRawText(), request.getVoiceName());
+        AudioGenerateResponse response = audioService.generate(userKey, request.getRawText(), request.getVoiceName(),
+                request.getRequestId());
         return ApiResponse.success(response);
     }
 
+    /**
+     * 流式生成 - 首句合成完即开始以chunked方式输出MP3，持久化在后台完成
+     * 响应头X-Audio-Id为音频记录ID，可稍后通过详情接口获取持久化URL；
+     * 缓存命中时不输出音频，直接返回JSON（与同步生成相同的audioId和r2Url），前端按Content-Type区分
+     */
+    @PostMapping("/generate-stream")
+    public ResponseEntity<?> generateStream(
+            @RequestBody AudioGenerateRequest request,
+            HttpServletRequest httpRequest) {
+        String userKey = (String) httpRequest.getAttribute(UserKeyInterceptor.USER_KEY_ATTR);
+        AudioService.StreamTicket ticket = audioService.prepareStream(userKey, request.getRawText(), request.getVoiceName());
+        if (ticket.getCachedUrl() != null) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(AUDIO_ID_HEADER, String.valueOf(ticket.getAudioFileId()))
+                    .body(ApiResponse.success(new AudioGenerateResponse(ticket.getAudioFileId(), ticket.getCachedUrl(), 0)));
+        }
+        StreamingResponseBody body = out -> audioService.streamAudio(ticket, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("audio/mpeg"))
+                .header(AUDIO_ID_HEADER, String.valueOf(ticket.getAudioFileId()))
+                .body(body);
+    }
+
     /**
      * 长文本异步生成 - 创建任务
      * @param useEmotion 是否使用情感预测版（true=情感预测版，false=普通版）
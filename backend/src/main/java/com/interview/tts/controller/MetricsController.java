@@ -0,0 +1,142 @@
+package com.interview.tts.controller;
+
+import com.interview.tts.dto.ApiResponse;
+import com.interview.tts.service.AudioService;
+import com.interview.tts.service.CacheService;
+import com.interview.tts.service.DouyinTtsService;
+import com.interview.tts.service.LongTextTaskPoller;
+import com.interview.tts.service.ScriptCacheService;
+import com.interview.tts.service.SegmentCacheService;
+import com.interview.tts.service.SynthesisScheduler;
+import com.interview.tts.service.job.JobQueue;
+import com.interview.tts.service.tts.TtsRouter;
+import com.interview.tts.service.ttsv2.TtsV2ConnectionPool;
+import com.interview.tts.service.upstream.AdaptiveLimiter;
+import com.interview.tts.service.upstream.HttpClients;
+import com.interview.tts.service.upstream.RequestHedger;
+import com.interview.tts.service.upstream.UpstreamGateway;
+import com.interview.tts.util.SingleFlight;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * 运行指标查询
+ */
+@RestController
+@RequestMapping("/api/metrics")
+@RequiredArgsConstructor
+public class MetricsController {
+
+    private final CacheService cacheService;
+    private final SegmentCacheService segmentCacheService;
+    private final ScriptCacheService scriptCacheService;
+    private final AudioService audioService;
+    private final TtsV2ConnectionPool ttsV2ConnectionPool;
+    private final LongTextTaskPoller longTextTaskPoller;
+    private final JobQueue jobQueue;
+    private final SynthesisScheduler synthesisScheduler;
+    private final UpstreamGateway upstreamGateway;
+    private final HttpClients httpClients;
+    private final DouyinTtsService ttsService;
+    private final TtsRouter ttsRouter;
+
+    /**
+     * 音频缓存命中/淘汰统计
+     */
+    @GetMapping("/audio-cache")
+    public ApiResponse<CacheService.CacheStats> audioCache() {
+        return ApiResponse.success(cacheService.getStats());
+    }
+
+    /**
+     * 句子级分段缓存统计
+     */
+    @GetMapping("/segment-cache")
+    public ApiResponse<SegmentCacheService.SegmentCacheStats> segmentCache() {
+        return ApiResponse.success(segmentCacheService.getStats());
+    }
+
+    /**
+     * 播客脚本缓存命中、LLM调用与并发合并统计
+     */
+    @GetMapping("/script-cache")
+    public ApiResponse<ScriptCacheService.ScriptCacheStats> scriptCache() {
+        return ApiResponse.success(scriptCacheService.getStats());
+    }
+
+    /**
+     * 相同文本并发合成请求的合并统计
+     */
+    @GetMapping("/synthesis-coalescing")
+    public ApiResponse<SingleFlight.Stats> synthesisCoalescing() {
+        return ApiResponse.success(audioService.getSynthesisFlightStats());
+    }
+
+    /**
+     * TTSv2 WebSocket连接池统计
+     */
+    @GetMapping("/ttsv2-pool")
+    public ApiResponse<TtsV2ConnectionPool.PoolStats> ttsV2Pool() {
+        return ApiResponse.success(ttsV2ConnectionPool.getStats());
+    }
+
+    /**
+     * 长文本异步任务后台轮询统计
+     */
+    @GetMapping("/long-text-tasks")
+    public ApiResponse<LongTextTaskPoller.PollerStats> longTextTasks() {
+        return ApiResponse.success(longTextTaskPoller.getStats());
+    }
+
+    /**
+     * 持久化任务队列统计
+     */
+    @GetMapping("/job-queue")
+    public ApiResponse<JobQueue.QueueStats> jobQueue() {
+        return ApiResponse.success(jobQueue.getStats());
+    }
+
+    /**
+     * 合成调度统计（按用户类型分队列）
+     */
+    @GetMapping("/synthesis-scheduler")
+    public ApiResponse<SynthesisScheduler.SchedulerStats> synthesisScheduler() {
+        return ApiResponse.success(synthesisScheduler.getStats());
+    }
+
+    /**
+     * 上游接口自适应并发限制统计
+     */
+    @GetMapping("/upstream")
+    public ApiResponse<List<AdaptiveLimiter.LimiterStats>> upstream() {
+        return ApiResponse.success(upstreamGateway.getStats());
+    }
+
+    /**
+     * 共享HTTP客户端统计：连接池状态，按调用目标的耗时、流量和建连次数
+     */
+    @GetMapping("/http-clients")
+    public ApiResponse<HttpClients.HttpClientStats> httpClients() {
+        return ApiResponse.success(httpClients.getStats());
+    }
+
+    /**
+     * 短文本合成对冲请求统计
+     */
+    @GetMapping("/tts-hedge")
+    public ApiResponse<RequestHedger.HedgeStats> ttsHedge() {
+        return ApiResponse.success(ttsService.getHedgeStats());
+    }
+
+    /**
+     * 合成引擎熔断状态与切换统计
+     */
+    @GetMapping("/tts-backends")
+    public ApiResponse<TtsRouter.RouterStats> ttsBackends() {
+        return ApiResponse.success(ttsRouter.getStats());
+    }
+}
@@ -1,5 +1,6 @@
 package com.interview.tts.controller;
 
+import com.alibaba.fastjson.JSON;
 import com.interview.tts.dto.ApiResponse;
 import com.interview.tts.dto.PodcastGenerateRequest;
 import com.interview.tts.dto.PodcastGenerateResponse;
@@ -8,6 +9,8 @@ import com.interview.tts.interceptor.UserKeyInterceptor;
 import com.interview.tts.service.PodcastService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -63,9 +66,38 @@ public class PodcastController {
         detail.setDuration(podcast.getDuration());
         detail.setStatus(podcast.getStatus().name());
         detail.setCreateTime(podcast.getCreateTime().toString());
+        if (podcast.getTimeIndex() != null) {
+            detail.setTimeIndex(JSON.parseArray(podcast.getTimeIndex(), PodcastService.LineMark.class));
+        }
         return ApiResponse.success(detail);
     }
 
+    /**
+     * 生成进度（状态和逐句合成数）
+     */
+    @GetMapping("/{id}/progress")
+    public ApiResponse<PodcastService.PodcastProgress> progress(@PathVariable Long id) {
+        PodcastService.PodcastProgress progress = podcastService.getProgress(id);
+        if (progress == null) {
+            return ApiResponse.error("播客不存在");
+        }
+        return ApiResponse.success(progress);
+    }
+
+    /**
+     * 单句音频（合成完即可获取，用于播客整体完成前试听）
+     */
+    @GetMapping("/{id}/lines/{line}/audio")
+    public ResponseEntity<byte[]> lineAudio(@PathVariable Long id, @PathVariable int line) {
+        byte[] audio = podcastService.getLineAudio(id, line);
+        if (audio == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("audio/mpeg"))
+                .body(audio);
+    }
+
     public static class PodcastListItem {
         private Long id;
         private String title;
@@ -108,6 +140,7 @@ public class PodcastController {
         private Integer duration;
         private String status;
         private String createTime;
+        private List<PodcastService.LineMark> timeIndex;
 
         public Long getId() { return id; }
         public void setId(Long id) { this.id = id; }
@@ -129,5 +162,7 @@ public class PodcastController {
         public void setStatus(String status) { this.status = status; }
         public String getCreateTime() { return createTime; }
         public void setCreateTime(String createTime) { this.createTime = createTime; }
+        public List<PodcastService.LineMark> getTimeIndex() { return timeIndex; }
+        public void setTimeIndex(List<PodcastService.LineMark> timeIndex) { this.timeIndex = timeIndex; }
     }
 }
@@ -26,7 +26,8 @@ public class TtsController {
             @RequestBody AudioGenerateRequest request,
             HttpServletRequest httpRequest) {
         String userKey = (String) httpRequest.getAttribute(UserKeyInterceptor.USER_KEY_ATTR);
-        AudioGenerateResponse response = audioService.generate(userKey, request.getRawText(), request.getVoiceName());
+        AudioGenerateResponse response = audioService.generate(userKey, request.getRawText(), request.getVoiceName(),
+                request.getRequestId());
         return ApiResponse.success(response);
     }
 
@@ -7,4 +7,5 @@ public class AudioGenerateRequest {
     private String rawText;
     private String voiceName;
     private Boolean useEmotion; // 是否使用情感预测版
+    private String requestId; // 客户端生成的请求ID，同步生成时按此推送分段进度（可选）
 }
@@ -0,0 +1,40 @@
+package com.interview.tts.dto;
+
+import lombok.Data;
+
+/**
+ * 异步任务状态推送 (STOMP /user/queue/tasks)
+ */
+@Data
+public class TaskEvent {
+
+    public enum Stage {
+        QUEUED,       // 已创建
+        SYNTHESIZING, // 上游合成中
+        PERSISTING,   // 合成完成，正在下载并持久化音频
+        DONE,         // 完成（r2Url，或降级时只有临时audioUrl）
+        FAILED        // 失败
+    }
+
+    private String taskType;
+    private String taskId;
+    private Long audioFileId;
+    private Stage stage;
+    private String r2Url;
+    private String audioUrl;
+    private Integer duration;
+    private String message;
+    // 分段合成进度，仅SYNTHESIZING阶段且引擎支持分段时有值
+    private Integer completedChunks;
+    private Integer totalChunks;
+    private Long timestamp = System.currentTimeMillis();
+
+    public static TaskEvent of(String taskType, String taskId, Long audioFileId, Stage stage) {
+        TaskEvent event = new TaskEvent();
+        event.setTaskType(taskType);
+        event.setTaskId(taskId);
+        event.setAudioFileId(audioFileId);
+        event.setStage(stage);
+        return event;
+    }
+}
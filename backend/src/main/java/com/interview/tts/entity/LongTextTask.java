@@ -0,0 +1,64 @@
+package com.interview.tts.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "long_text_task", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_task_id", columnNames = {"task_id"})
+})
+public class LongTextTask {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "task_id", nullable = false, length = 64)
+    private String taskId;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "audio_file_id")
+    private Long audioFileId;
+
+    @Column(name = "use_emotion")
+    private Boolean useEmotion;
+
+    // PENDING/PERSISTING/COMPLETED/DEGRADED/FAILED
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "r2_url", length = 255)
+    private String r2Url;
+
+    @Column(name = "temp_audio_url", length = 500)
+    private String tempAudioUrl;
+
+    @Column(name = "duration")
+    private Integer duration;
+
+    @Column(name = "error_message", length = 500)
+    private String errorMessage;
+
+    @Column(name = "query_count")
+    private Integer queryCount;
+
+    @Column(name = "synthesizing")
+    private Boolean synthesizing;
+
+    // 毫秒时间戳，接管轮询时按值比较
+    @Column(name = "last_poll_at")
+    private Long lastPollAt;
+
+    @Column(name = "finished_at")
+    private Long finishedAt;
+
+    @Column(name = "create_time")
+    private LocalDateTime createTime = LocalDateTime.now();
+
+    @Column(name = "update_time")
+    private LocalDateTime updateTime = LocalDateTime.now();
+}
@@ -37,6 +37,12 @@ public class Podcast {
     @Column(name = "duration")
     private Integer duration;
 
+    /**
+     * 逐句时间索引(JSON)，见 PodcastService.LineMark
+     */
+    @Column(name = "time_index", columnDefinition = "TEXT")
+    private String timeIndex;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "status")
     private PodcastStatus status = PodcastStatus.PENDING;
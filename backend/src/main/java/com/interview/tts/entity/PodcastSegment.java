@@ -0,0 +1,63 @@
+package com.interview.tts.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 播客脚本的一句，保存合成好的音频，任务重试时已完成的句子不再合成
+ */
+@Data
+@Entity
+@Table(name = "podcast_segment", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_podcast_line", columnNames = {"podcast_id", "line_index"})
+})
+public class PodcastSegment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "podcast_id", nullable = false)
+    private Long podcastId;
+
+    // 脚本中的句序号
+    @Column(name = "line_index", nullable = false)
+    private Integer lineIndex;
+
+    // A / B
+    @Column(name = "speaker", nullable = false, length = 10)
+    private String speaker;
+
+    @Column(name = "voice", length = 50)
+    private String voice;
+
+    @Column(name = "content", columnDefinition = "TEXT")
+    private String content;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private SegmentStatus status = SegmentStatus.PENDING;
+
+    @Lob
+    @Column(name = "audio_data", columnDefinition = "MEDIUMBLOB")
+    private byte[] audioData;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "error_message", length = 500)
+    private String errorMessage;
+
+    @Column(name = "create_time")
+    private LocalDateTime createTime = LocalDateTime.now();
+
+    @Column(name = "update_time")
+    private LocalDateTime updateTime;
+
+    public enum SegmentStatus {
+        PENDING,
+        COMPLETED,
+        FAILED
+    }
+}
@@ -0,0 +1,47 @@
+package com.interview.tts.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "script_cache", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_cache_key", columnNames = {"cache_key"})
+})
+public class ScriptCache {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * SHA-256(原文SHA-256, 提示词版本, 模型, temperature)
+     */
+    @Column(name = "cache_key", nullable = false, length = 64)
+    private String cacheKey;
+
+    @Column(name = "source_hash", nullable = false, length = 64)
+    private String sourceHash;
+
+    @Column(name = "prompt_version", nullable = false, length = 32)
+    private String promptVersion;
+
+    @Column(name = "model_id", nullable = false, length = 100)
+    private String modelId;
+
+    @Column(name = "temperature", nullable = false)
+    private Double temperature;
+
+    @Column(name = "script_content", nullable = false, columnDefinition = "MEDIUMTEXT")
+    private String scriptContent;
+
+    @Column(name = "hit_count", nullable = false)
+    private Long hitCount = 0L;
+
+    @Column(name = "create_time")
+    private LocalDateTime createTime = LocalDateTime.now();
+
+    @Column(name = "last_hit_time")
+    private LocalDateTime lastHitTime = LocalDateTime.now();
+}
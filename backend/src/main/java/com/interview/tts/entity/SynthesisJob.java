@@ -0,0 +1,67 @@
+package com.interview.tts.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "synthesis_job", indexes = {
+    @Index(name = "idx_status_run_at", columnList = "status, run_at"),
+    @Index(name = "idx_lease_until", columnList = "status, lease_until")
+})
+public class SynthesisJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // 任务类型，对应JobHandler.type()
+    @Column(name = "job_type", nullable = false, length = 50)
+    private String jobType;
+
+    // 任务参数(JSON)
+    @Column(name = "payload", columnDefinition = "TEXT")
+    private String payload;
+
+    // 数值越大越先执行
+    @Column(name = "priority", nullable = false)
+    private Integer priority = 0;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private JobStatus status = JobStatus.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "max_attempts", nullable = false)
+    private Integer maxAttempts = 5;
+
+    // 最早执行时间，失败重试时按退避推后
+    @Column(name = "run_at", nullable = false)
+    private LocalDateTime runAt = LocalDateTime.now();
+
+    // 持有租约的实例，租约到期未续期视为实例已下线，任务重新排队
+    @Column(name = "lease_owner", length = 100)
+    private String leaseOwner;
+
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "create_time")
+    private LocalDateTime createTime = LocalDateTime.now();
+
+    @Column(name = "update_time")
+    private LocalDateTime updateTime = LocalDateTime.now();
+
+    public enum JobStatus {
+        PENDING,   // 等待执行
+        RUNNING,   // 执行中（持有租约）
+        SUCCEEDED, // 执行成功
+        DEAD       // 超过最大重试次数，进入死信
+    }
+}
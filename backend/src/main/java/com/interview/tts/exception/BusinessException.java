@@ -4,6 +4,10 @@ import lombok.Getter;
 
 @Getter
 public class BusinessException extends RuntimeException {
+    public static final String UPSTREAM_BUSY = "UPSTREAM_BUSY";
+    public static final String SYNTHESIS_BUSY = "SYNTHESIS_BUSY";
+    public static final String SYNTHESIS_QUEUED = "SYNTHESIS_QUEUED";
+
     private final String code;
 
     public BusinessException(String code, String message) {
@@ -30,4 +34,20 @@ public class BusinessException extends RuntimeException {
     public static BusinessException rateLimited() {
         return new BusinessException("RATE_LIMITED", "今日生成次数已达上限");
     }
+
+    public static BusinessException synthesisQueued(int position) {
+        return new BusinessException(SYNTHESIS_QUEUED, "当前合成排队中，前面还有" + position + "个请求，请稍后重试");
+    }
+
+    public static BusinessException synthesisBusy() {
+        return new BusinessException(SYNTHESIS_BUSY, "合成服务繁忙，请稍后重试");
+    }
+
+    public static BusinessException upstreamBusy() {
+        return new BusinessException(UPSTREAM_BUSY, "上游服务繁忙，请稍后重试");
+    }
+
+    public static BusinessException ttsUnavailable() {
+        return new BusinessException("TTS_UNAVAILABLE", "语音合成服务暂不可用，请稍后重试");
+    }
 }
@@ -40,28 +40,36 @@ public class PermissionInterceptor implements HandlerInterceptor {
             return false;
         }
 
-        // 检查用户类型
-        UserType requiredType = annotation.value();
-        if (requiredType == UserType.VIP && user.getUserType() != UserType.VIP) {
+        String denied = checkPermission(user, annotation.value());
+        if (denied != null) {
             response.setStatus(403);
             response.setContentType("application/json;charset=UTF-8");
-            response.getWriter().write("{\"success\":false,\"message\":\"VIP权限不足\"}");
+            response.getWriter().write("{\"success\":false,\"message\":\"" + denied + "\"}");
             return false;
         }
 
+        return true;
+    }
+
+    /**
+     * 检查用户类型和月度字数限额，WebSocket合成等不经过HandlerInterceptor的入口也复用该检查
+     * @return 拒绝原因，通过时为null
+     */
+    public String checkPermission(SysUser user, UserType requiredType) {
+        // 检查用户类型
+        if (requiredType == UserType.VIP && user.getUserType() != UserType.VIP) {
+            return "VIP权限不足";
+        }
+
         // 检查字数限额
         if (user.getUserType() == UserType.USER) {
             // 重置月度字数
             resetMonthlyCharIfNeeded(user);
             if (user.getMonthlyCharUsed() >= user.getMonthlyCharLimit()) {
-                response.setStatus(403);
-                response.setContentType("application/json;charset=UTF-8");
-                response.getWriter().write("{\"success\":false,\"message\":\"本月字数限额已用完\"}");
-                return false;
+                return "本月字数限额已用完";
             }
         }
-
-        return true;
+        return null;
     }
 
     private void resetMonthlyCharIfNeeded(SysUser user) {
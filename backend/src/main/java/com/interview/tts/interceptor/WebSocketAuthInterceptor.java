@@ -0,0 +1,64 @@
+package com.interview.tts.interceptor;
+
+import com.interview.tts.entity.SysUser;
+import com.interview.tts.repository.SysUserRepository;
+import com.interview.tts.util.JwtUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * WebSocket握手认证
+ * 浏览器WebSocket无法设置请求头，token和userKey可通过查询参数传递: /ws/tts/v2?token=xxx&userKey=xxx
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebSocketAuthInterceptor implements HandshakeInterceptor {
+
+    public static final String CURRENT_USER_ATTR = "currentUser";
+
+    private final SysUserRepository userRepository;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        Map<String, String> params = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().toSingleValueMap();
+        String token = Optional.ofNullable(request.getHeaders().getFirst("X-Token")).orElse(params.get("token"));
+        String userKey = Optional.ofNullable(request.getHeaders().getFirst(UserKeyInterceptor.USER_KEY_HEADER))
+                .orElse(params.get("userKey"));
+
+        SysUser user = null;
+        if (token != null && !token.isEmpty()) {
+            try {
+                user = userRepository.findById(JwtUtil.parseToken(token)).orElse(null);
+            } catch (Exception e) {
+                // Token 无效，按未登录处理
+            }
+        }
+        if (user == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+
+        attributes.put(CURRENT_USER_ATTR, user);
+        if (userKey != null && !userKey.trim().isEmpty()) {
+            attributes.put(UserKeyInterceptor.USER_KEY_ATTR, userKey);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
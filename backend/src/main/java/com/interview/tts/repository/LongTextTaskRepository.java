@@ -0,0 +1,24 @@
+package com.interview.tts.repository;
+
+import com.interview.tts.entity.LongTextTask;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface LongTextTaskRepository extends JpaRepository<LongTextTask, Long> {
+
+    Optional<LongTextTask> findByTaskId(String taskId);
+
+    @Modifying
+    @Query("UPDATE LongTextTask t SET t.lastPollAt = :now WHERE t.taskId = :taskId AND t.lastPollAt = :expected")
+    int claim(@Param("taskId") String taskId, @Param("expected") Long expected, @Param("now") Long now);
+
+    @Modifying
+    @Query("DELETE FROM LongTextTask t WHERE t.status NOT IN ('PENDING', 'PERSISTING') AND t.finishedAt < :before")
+    int deleteFinishedBefore(@Param("before") Long before);
+}
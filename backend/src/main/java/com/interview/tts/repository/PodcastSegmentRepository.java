@@ -0,0 +1,38 @@
+package com.interview.tts.repository;
+
+import com.interview.tts.entity.PodcastSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * 按ID逐句加载，避免一次把整个播客的音频读入内存
+ */
+@Repository
+public interface PodcastSegmentRepository extends JpaRepository<PodcastSegment, Long> {
+
+    @Query("SELECT s.id FROM PodcastSegment s WHERE s.podcastId = :podcastId " +
+           "AND s.status = :status ORDER BY s.lineIndex ASC")
+    List<Long> findIdsByStatus(@Param("podcastId") Long podcastId,
+                               @Param("status") PodcastSegment.SegmentStatus status);
+
+    @Query("SELECT s.id FROM PodcastSegment s WHERE s.podcastId = :podcastId " +
+           "AND s.status <> com.interview.tts.entity.PodcastSegment.SegmentStatus.COMPLETED ORDER BY s.lineIndex ASC")
+    List<Long> findUnfinishedIds(@Param("podcastId") Long podcastId);
+
+    long countByPodcastId(Long podcastId);
+
+    PodcastSegment findByPodcastIdAndLineIndex(Long podcastId, Integer lineIndex);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM PodcastSegment s WHERE s.podcastId = :podcastId")
+    int deleteByPodcastId(@Param("podcastId") Long podcastId);
+
+    long countByPodcastIdAndStatus(Long podcastId, PodcastSegment.SegmentStatus status);
+}
@@ -0,0 +1,23 @@
+package com.interview.tts.repository;
+
+import com.interview.tts.entity.ScriptCache;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface ScriptCacheRepository extends JpaRepository<ScriptCache, Long> {
+
+    Optional<ScriptCache> findByCacheKey(String cacheKey);
+
+    @Modifying
+    @Query("UPDATE ScriptCache c SET c.hitCount = c.hitCount + 1, c.lastHitTime = :now WHERE c.id = :id")
+    int touch(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM ScriptCache c WHERE c.lastHitTime < :before")
+    int deleteNotHitSince(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,62 @@
+package com.interview.tts.repository;
+
+import com.interview.tts.entity.SynthesisJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 任务队列的状态变更都是带条件的UPDATE，多个实例并发领取同一任务时只有一个成功，
+ * 不依赖 SELECT ... FOR UPDATE SKIP LOCKED，MySQL和H2均可运行
+ */
+@Repository
+public interface SynthesisJobRepository extends JpaRepository<SynthesisJob, Long> {
+
+    @Query("SELECT j.id FROM SynthesisJob j WHERE j.status = com.interview.tts.entity.SynthesisJob.JobStatus.PENDING " +
+           "AND j.runAt <= :now ORDER BY j.priority DESC, j.id ASC")
+    List<Long> findRunnableIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE SynthesisJob j SET j.status = com.interview.tts.entity.SynthesisJob.JobStatus.RUNNING, " +
+           "j.leaseOwner = :owner, j.leaseUntil = :leaseUntil, j.attempts = j.attempts + 1, j.updateTime = :now " +
+           "WHERE j.id = :id AND j.status = com.interview.tts.entity.SynthesisJob.JobStatus.PENDING")
+    int claim(@Param("id") Long id, @Param("owner") String owner,
+              @Param("leaseUntil") LocalDateTime leaseUntil, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE SynthesisJob j SET j.leaseUntil = :leaseUntil " +
+           "WHERE j.id IN :ids AND j.leaseOwner = :owner " +
+           "AND j.status = com.interview.tts.entity.SynthesisJob.JobStatus.RUNNING")
+    int renewLeases(@Param("ids") List<Long> ids, @Param("owner") String owner,
+                    @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE SynthesisJob j SET j.status = :status, j.runAt = :runAt, j.lastError = :error, " +
+           "j.leaseOwner = null, j.leaseUntil = null, j.updateTime = :now " +
+           "WHERE j.id = :id AND j.leaseOwner = :owner " +
+           "AND j.status = com.interview.tts.entity.SynthesisJob.JobStatus.RUNNING")
+    int finish(@Param("id") Long id, @Param("owner") String owner, @Param("status") SynthesisJob.JobStatus status,
+               @Param("runAt") LocalDateTime runAt, @Param("error") String error, @Param("now") LocalDateTime now);
+
+    /**
+     * 租约过期（实例崩溃或重启）的任务重新排队
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE SynthesisJob j SET j.status = com.interview.tts.entity.SynthesisJob.JobStatus.PENDING, " +
+           "j.leaseOwner = null, j.leaseUntil = null, j.updateTime = :now " +
+           "WHERE j.status = com.interview.tts.entity.SynthesisJob.JobStatus.RUNNING AND j.leaseUntil < :now")
+    int releaseExpired(@Param("now") LocalDateTime now);
+
+    long countByStatus(SynthesisJob.JobStatus status);
+}
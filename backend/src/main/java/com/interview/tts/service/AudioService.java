@@ -3,6 +3,7 @@ package com.interview.tts.service;
 import com.interview.tts.dto.AudioDetailResponse;
 import com.interview.tts.dto.AudioGenerateResponse;
 import com.interview.tts.dto.AudioListItem;
+import com.interview.tts.dto.TaskEvent;
 import com.interview.tts.entity.AudioFile;
 import com.interview.tts.entity.SysUser;
 import com.interview.tts.entity.TextRecord;
@@ -10,20 +11,30 @@ import com.interview.tts.entity.UserCollect;
 import com.interview.tts.repository.AudioFileRepository;
 import com.interview.tts.repository.TextRecordRepository;
 import com.interview.tts.repository.UserCollectRepository;
+import com.interview.tts.service.tts.TtsRouter;
+import com.interview.tts.util.SingleFlight;
+import com.interview.tts.websocket.TaskEventPublisher;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -33,30 +44,56 @@ public class AudioService {
 
     private final TextPreprocessService textPreprocessService;
     private final DouyinTtsService ttsService;
+    private final TtsRouter ttsRouter;
     private final StorageService storageService;
     private final CacheService cacheService;
     private final RateLimitService rateLimitService;
     private final UserService userService;
+    private final LongTextTaskPoller longTextTaskPoller;
+    private final SynthesisScheduler synthesisScheduler;
+    private final TaskEventPublisher taskEventPublisher;
 
     private final TextRecordRepository textRecordRepository;
     private final AudioFileRepository audioFileRepository;
     private final UserCollectRepository userCollectRepository;
+    private final PlatformTransactionManager transactionManager;
 
-    // OkHttpClient用于下载音频
-    private final OkHttpClient httpClient = new OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(60, TimeUnit.SECONDS)
-            .build();
+    // 分段进度推送的任务类型
+    private static final String GENERATE_TASK_TYPE = "audio-generate";
+    private static final String STREAM_TASK_TYPE = "audio-stream";
 
-    // 缓存已处理完成的任务，避免重复查询数据库
-    private final ConcurrentHashMap<String, String> processedTaskCache = new ConcurrentHashMap<>();
-    // 记录已完成任务的查询次数，实现限流
-    private final ConcurrentHashMap<String, Integer> taskQueryCount = new ConcurrentHashMap<>();
-    private static final int MAX_QUERY_COUNT_PER_TASK = 10; // 每个任务最多查询10次
+    // 相同文本+音色的并发合成请求合并
+    private final SingleFlight<CacheService.CacheKey, SynthesisResult> synthesisFlight = new SingleFlight<>();
+
+    // 流式生成结束后的后台持久化，停机时等待已提交的任务完成
+    private static final long PERSIST_SHUTDOWN_TIMEOUT_SECONDS = 30;
+    private final AtomicInteger persistThreadCount = new AtomicInteger();
+    private final ExecutorService persistExecutor = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "audio-persist-" + persistThreadCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private TransactionTemplate recordTx;
 
     @PostConstruct
     public void init() {
         storageService.init();
+        recordTx = new TransactionTemplate(transactionManager);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        persistExecutor.shutdown();
+        try {
+            if (!persistExecutor.awaitTermination(PERSIST_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                List<Runnable> dropped = persistExecutor.shutdownNow();
+                log.warn("流式音频持久化未在{}秒内完成，放弃{}个任务", PERSIST_SHUTDOWN_TIMEOUT_SECONDS, dropped.size());
+            }
+        } catch (InterruptedException e) {
+            persistExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
@@ -102,8 +139,9 @@ public class AudioService {
         // 6. 保存任务记录（状态为处理中）
         Long audioFileId = createRecord(user.getId(), rawText, processedText, voiceName, null, 0);
         saveTaskId(audioFileId, taskId);
+        longTextTaskPoller.track(user.getId(), audioFileId, taskId, useEmotion);
 
-        // 返回任务ID和audioFileId，前端可以轮询查询
+        // 返回任务ID和audioFileId，前端查询状态只读后台轮询结果
         return new AudioGenerateResponse(audioFileId, (String) null, 0, taskId);
     }
 
@@ -116,6 +154,7 @@ public class AudioService {
 
     /**
      * 查询长文本任务状态
+     * 只读后台轮询器维护的状态；轮询器中没有该任务时（如服务重启后）从数据库读取，仍未完成则重新登记轮询
      */
     public AudioGenerateResponse queryLongTextTask(String userKey, Long audioFileId, String taskId, boolean useEmotion) {
         SysUser user = userService.getUserByKey(userKey);
@@ -123,145 +162,43 @@ public class AudioService {
             throw new RuntimeException("用户不存在");
         }
 
-        // 限流：检查查询次数，超过限制直接返回
-        int queryCount = taskQueryCount.getOrDefault(taskId, 0);
-        if (queryCount >= MAX_QUERY_COUNT_PER_TASK) {
-            log.warn("⛔ 任务查询次数超限，不再查询: taskId={}, count={}", taskId, queryCount);
-            // 尝试从缓存或数据库获取结果
-            String cachedR2Url = processedTaskCache.get(taskId);
-            if (cachedR2Url != null) {
-                return new AudioGenerateResponse(audioFileId, cachedR2Url, 0, taskId);
+        LongTextTaskState state = longTextTaskPoller.get(taskId);
+        if (state == null) {
+            AudioFile audioFile = audioFileRepository.findById(audioFileId).orElse(null);
+            if (audioFile == null || !user.getId().equals(audioFile.getUserId())) {
+                throw new RuntimeException("任务不存在");
             }
-            // 尝试从数据库获取
-            AudioFile dbFile = audioFileRepository.findById(audioFileId).orElse(null);
-            if (dbFile != null && dbFile.getR2Url() != null) {
-                processedTaskCache.put(taskId, dbFile.getR2Url());
-                taskQueryCount.remove(taskId); // 清理查询计数
-                return new AudioGenerateResponse(audioFileId, dbFile.getR2Url(),
-                        dbFile.getDuration() != null ? dbFile.getDuration() : 0, taskId);
+            if (audioFile.getR2Url() != null && !audioFile.getR2Url().isEmpty()) {
+                return new AudioGenerateResponse(audioFileId, audioFile.getR2Url(),
+                        audioFile.getDuration() != null ? audioFile.getDuration() : 0, taskId);
             }
-            // 超过限制且没有结果，返回处理中状态
-            return new AudioGenerateResponse((Long) null, (String) null, 0, taskId);
-        }
-        // 增加查询计数
-        taskQueryCount.put(taskId, queryCount + 1);
-
-        // 先检查内存缓存，避免重复处理
-        String cachedR2Url = processedTaskCache.get(taskId);
-        if (cachedR2Url != null) {
-            log.info("⏭️ 任务已在缓存中，直接返回: {}", cachedR2Url);
-            // 清理查询计数
-            taskQueryCount.remove(taskId);
-            // 从数据库获取正确的时长
-            AudioFile cachedFile = audioFileRepository.findById(audioFileId).orElse(null);
-            int duration = (cachedFile != null && cachedFile.getDuration() != null) ? cachedFile.getDuration() : 0;
-            return new AudioGenerateResponse(audioFileId, cachedR2Url, duration, taskId);
-        }
-
-        // 检查是否已经下载失败过（只有失败才查数据库）
-        AudioFile audioFileCheck = audioFileRepository.findById(audioFileId).orElse(null);
-        if (audioFileCheck != null && Boolean.TRUE.equals(audioFileCheck.getDownloadFailed())) {
-            log.info("⏭️ 下载之前已失败，直接返回临时URL: {}", audioFileCheck.getTempAudioUrl());
-            AudioGenerateResponse response = new AudioGenerateResponse(audioFileId, (String) null,
-                    audioFileCheck.getDuration() != null ? audioFileCheck.getDuration() : 0, taskId);
-            response.setAudioUrl(audioFileCheck.getTempAudioUrl());
-            return response;
-        }
-
-        // 查询任务状态
-        DouyinTtsService.AsyncTaskResult result = ttsService.queryLongTextTask(taskId, useEmotion);
-        log.info("任务状态: status={}", result.getTaskStatus());
-        if (result.getTaskStatus() == 1) {
-            log.info("✅ 任务完成! 临时音频URL: {}", result.getAudioUrl());
-        }
-
-        // 如果任务完成，保存音频
-        if (result.getTaskStatus() == 1 && result.getAudioUrl() != null) {
-            // 先检查缓存（优先，避免查数据库）
-            String cachedUrl = processedTaskCache.get(taskId);
-            if (cachedUrl != null) {
-                log.info("⏭️ 任务已在缓存中，直接返回: {}", cachedUrl);
-                return new AudioGenerateResponse(audioFileId, cachedUrl, 0, taskId);
-            }
-
-            // 再检查数据库
-            AudioFile existingAudioFile = audioFileRepository.findById(audioFileId).orElse(null);
-            if (existingAudioFile != null && existingAudioFile.getR2Url() != null && !existingAudioFile.getR2Url().isEmpty()) {
-                log.info("⏭️ 音频已处理完成，直接返回已有URL: {}", existingAudioFile.getR2Url());
-                // 存入缓存
-                processedTaskCache.put(taskId, existingAudioFile.getR2Url());
-                taskQueryCount.remove(taskId); // 清理查询计数
-                return new AudioGenerateResponse(audioFileId, existingAudioFile.getR2Url(),
-                        existingAudioFile.getDuration() != null ? existingAudioFile.getDuration() : 0, taskId);
+            if (Boolean.TRUE.equals(audioFile.getDownloadFailed())) {
+                AudioGenerateResponse response = new AudioGenerateResponse(audioFileId, (String) null,
+                        audioFile.getDuration() != null ? audioFile.getDuration() : 0, taskId);
+                response.setAudioUrl(audioFile.getTempAudioUrl());
+                return response;
             }
+            state = longTextTaskPoller.track(user.getId(), audioFileId, taskId, useEmotion);
+        }
+        // taskId由客户端传入，状态必须属于当前用户且与audioFileId对应
+        if (!user.getId().equals(state.getUserId()) || !audioFileId.equals(state.getAudioFileId())) {
+            throw new RuntimeException("任务不存在");
+        }
 
-            try {
-                // 1. 下载火山引擎的临时音频
-                log.info("========== 开始持久化处理 ==========");
-                log.info("📥 步骤1: 从火山引擎下载临时音频...");
-                byte[] audioData = downloadAudio(result.getAudioUrl());
-                log.info("✅ 音频下载成功! 大小: {} bytes ({} KB)", audioData.length, audioData.length / 1024);
-
-                // 2. 上传到R2进行持久化存储
-                log.info("📤 步骤2: 上传到R2持久化存储...");
-                String r2Url = storageService.uploadAudio(audioData, "longtext_" + taskId);
-                log.info("✅ 上传成功! R2 URL: {}", r2Url);
-
-                // 3. 更新数据库记录
-                log.info("💾 步骤3: 更新数据库...");
-                AudioFile audioFile = audioFileRepository.findById(audioFileId).orElse(null);
-                if (audioFile != null && audioFile.getTextRecordId() != null) {
-                    TextRecord textRecord = textRecordRepository.findById(audioFile.getTextRecordId()).orElse(null);
-                    if (textRecord != null) {
-                        audioFile.setR2Url(r2Url);
-                        audioFile.setDuration(estimateDurationFromText(textRecord.getRawText()));
-                        audioFileRepository.save(audioFile);
-                        log.info("✅ 数据库更新完成");
-                    }
-                }
-                // 存入缓存，避免后续重复处理
-                processedTaskCache.put(taskId, r2Url);
-                // 清理查询计数
-                taskQueryCount.remove(taskId);
-
-                // 获取正确的音频时长
-                int audioDuration = 0;
-                AudioFile savedFile = audioFileRepository.findById(audioFileId).orElse(null);
-                if (savedFile != null && savedFile.getDuration() != null) {
-                    audioDuration = savedFile.getDuration();
-                }
-
-                log.info("========== 持久化处理完成! ==========");
-                AudioGenerateResponse response = new AudioGenerateResponse(audioFileId, r2Url, audioDuration, taskId);
-                return response;
-            } catch (Exception e) {
-                log.error("❌ 持久化处理失败: {}", e.getMessage(), e);
-                // 保存失败状态，防止无限重试
-                try {
-                    AudioFile audioFile = audioFileRepository.findById(audioFileId).orElse(null);
-                    if (audioFile != null) {
-                        audioFile.setDownloadFailed(true);
-                        audioFile.setTempAudioUrl(result.getAudioUrl());
-                        audioFileRepository.save(audioFile);
-                        log.info("💾 已记录下载失败状态，避免后续无限重试");
-                    }
-                } catch (Exception saveErr) {
-                    log.error("保存失败状态失败: {}", saveErr.getMessage());
-                }
+        switch (state.getStatus()) {
+            case COMPLETED:
+                return new AudioGenerateResponse(state.getAudioFileId(), state.getR2Url(), state.getDuration(), taskId);
+            case DEGRADED:
                 // 返回临时URL，让前端可以尝试播放
-                log.warn("⚠️ 降级处理: 返回临时URL给前端");
-                AudioGenerateResponse response = new AudioGenerateResponse(audioFileId, (String) null, result.getTextLength(), taskId);
-                response.setAudioUrl(result.getAudioUrl());
+                AudioGenerateResponse response = new AudioGenerateResponse(state.getAudioFileId(), (String) null, 0, taskId);
+                response.setAudioUrl(state.getTempAudioUrl());
                 return response;
-            }
-        } else if (result.getTaskStatus() == 2) {
-            log.error("❌ 任务合成失败: {}", result.getErrorMessage());
-            throw new RuntimeException("合成失败: " + result.getErrorMessage());
+            case FAILED:
+                throw new RuntimeException("合成失败: " + state.getErrorMessage());
+            default:
+                // 任务还在处理中
+                return new AudioGenerateResponse((Long) null, (String) null, 0, taskId);
         }
-
-        // 任务还在处理中
-        log.info("⏳ 任务仍在处理中...");
-        return new AudioGenerateResponse((Long) null, (String) null, 0, taskId);
     }
 
     private void saveTaskId(Long audioFileId, String taskId) {
@@ -275,33 +212,17 @@ public class AudioService {
         }
     }
 
-    /**
-     * 从URL下载音频文件
-     */
-    private byte[] downloadAudio(String audioUrl) throws Exception {
-        Request request = new Request.Builder()
-                .url(audioUrl)
-                .get()
-                .build();
-
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new Exception("下载失败: " + response.code());
-            }
-            if (response.body() == null) {
-                throw new Exception("响应体为空");
-            }
-            return response.body().bytes();
-        }
-    }
-
-    private int estimateDurationFromText(String text) {
-        // 粗略估算：假设平均每秒15个字符
-        return text.length() / 15;
+    public AudioGenerateResponse generate(String userKey, String rawText, String voiceName) {
+        return generate(userKey, rawText, voiceName, null);
     }
 
-    @Transactional
-    public AudioGenerateResponse generate(String userKey, String rawText, String voiceName) {
+    /**
+     * 同步生成
+     * 不整体开启事务：排队等待合成槽位和合成本身可能持续数十秒，期间不占用数据库连接，只有最后写记录时开启短事务
+     * @param requestId 客户端生成的请求ID，非空时通过 /user/queue/tasks 推送分段进度（可为null）；
+     *                  与其他请求合并时只有实际发起合成的请求收到进度
+     */
+    public AudioGenerateResponse generate(String userKey, String rawText, String voiceName, String requestId) {
         // 1. 校验用户
         SysUser user = userService.getUserByKey(userKey);
         if (user == null) {
@@ -316,33 +237,156 @@ public class AudioService {
 
         // 4. 检查缓存
         String promptHash = textPreprocessService.getPromptHash();
-        String cachedUrl = cacheService.getCachedUrl(rawText, voiceName, promptHash);
+        CacheService.CacheKey cacheKey = cacheService.buildKey(rawText, voiceName, promptHash);
+        String cachedUrl = cacheService.getCachedUrl(cacheKey);
         if (cachedUrl != null) {
             log.info("缓存命中，直接返回: {}", cachedUrl);
             // 即使缓存命中，也需要创建记录
-            createRecord(user.getId(), rawText, null, voiceName, cachedUrl, 0);
-            return new AudioGenerateResponse(null, cachedUrl, 0);
+            Long audioFileId = recordTx.execute(status -> createRecord(user.getId(), rawText, null, voiceName, cachedUrl, 0));
+            return new AudioGenerateResponse(audioFileId, cachedUrl, 0);
+        }
+
+        // 5-9. 预处理、合成、存储、写缓存；相同文本+音色的并发请求合并为一次合成，共享同一URL
+        SynthesisResult result = synthesisFlight.execute(cacheKey, () -> {
+            // 排在前一次合成之后到达的请求，缓存可能已经写好
+            String url = cacheService.getCachedUrl(cacheKey);
+            if (url != null) {
+                return new SynthesisResult(null, url, 0);
+            }
+
+            String ssmlText = textPreprocessService.preprocess(rawText);
+            DouyinTtsService.ChunkProgressListener progress = requestId == null ? null
+                    : chunkProgressPublisher(user.getId(), GENERATE_TASK_TYPE, requestId, null);
+            byte[] audioData = synthesisScheduler.run(user,
+                    () -> ttsRouter.synthesize(ssmlText, voiceName, user.getId(), null, progress));
+            String r2Url = storageService.uploadAudio(audioData, rawText);
+            int duration = storageService.estimateDuration(audioData);
+            cacheService.saveToCache(cacheKey, r2Url);
+            return new SynthesisResult(ssmlText, r2Url, duration);
+        });
+        String r2Url = result.getR2Url();
+        int duration = result.getDuration();
+
+        // 10. 保存记录
+        Long textRecordId = recordTx.execute(status ->
+                createRecord(user.getId(), rawText, result.getSsmlText(), voiceName, r2Url, duration));
+
+        return new AudioGenerateResponse(textRecordId, r2Url, duration);
+    }
+
+    /**
+     * 流式生成 - 第一阶段：校验、限额、查缓存并预先创建记录
+     * 缓存命中时返回cachedUrl，否则返回待合成的票据，由streamAudio输出音频
+     */
+    @Transactional
+    public StreamTicket prepareStream(String userKey, String rawText, String voiceName) {
+        SysUser user = userService.getUserByKey(userKey);
+        if (user == null) {
+            throw new RuntimeException("用户不存在");
         }
+        rateLimitService.checkTextLength(rawText);
+        rateLimitService.checkAndIncrement(userKey);
 
-        // 5. 文本预处理
-        String ssmlText = textPreprocessService.preprocess(rawText);
+        StreamTicket ticket = new StreamTicket();
+        ticket.setUser(user);
+        ticket.setRawText(rawText);
+        ticket.setVoiceName(voiceName);
+        ticket.setCacheKey(cacheService.buildKey(rawText, voiceName, textPreprocessService.getPromptHash()));
 
-        // 6. TTS 合成
-        byte[] audioData = ttsService.generateAudio(ssmlText, voiceName);
+        String cachedUrl = cacheService.getCachedUrl(ticket.getCacheKey());
+        if (cachedUrl != null) {
+            log.info("缓存命中，直接返回: {}", cachedUrl);
+            ticket.setCachedUrl(cachedUrl);
+            ticket.setAudioFileId(createRecord(user.getId(), rawText, null, voiceName, cachedUrl, 0));
+            return ticket;
+        }
 
-        // 7. 存储
-        String r2Url = storageService.uploadAudio(audioData, rawText);
+        // 响应开始输出后无法再返回错误，排队已满在这里先拒绝
+        synthesisScheduler.checkAdmission(user);
+        ticket.setSsmlText(textPreprocessService.preprocess(rawText));
+        // 先建记录拿到ID返回给前端，音频URL在后台持久化后回填
+        ticket.setAudioFileId(createRecord(user.getId(), rawText, ticket.getSsmlText(), voiceName, null, 0));
+        return ticket;
+    }
 
-        // 8. 估算时长
-        int duration = storageService.estimateDuration(audioData);
+    /**
+     * 流式生成 - 第二阶段：边合成边输出MP3分段，输出结束后在后台上传并回填记录
+     * 客户端中途断开不影响合成和持久化
+     */
+    public void streamAudio(StreamTicket ticket, OutputStream out) {
+        long startTime = System.currentTimeMillis();
+        AtomicBoolean clientGone = new AtomicBoolean(false);
+        AtomicBoolean firstPart = new AtomicBoolean(true);
+
+        byte[] audioData;
+        try {
+            audioData = synthesisScheduler.run(ticket.getUser(), () -> ttsRouter.synthesize(ticket.getSsmlText(), ticket.getVoiceName(), ticket.getUser().getId(), part -> {
+                if (clientGone.get()) {
+                    return;
+                }
+                try {
+                    out.write(part);
+                    out.flush();
+                    if (firstPart.compareAndSet(true, false)) {
+                        log.info("流式合成首段输出: audioFileId={}, firstByte={}ms",
+                                ticket.getAudioFileId(), System.currentTimeMillis() - startTime);
+                    }
+                } catch (IOException e) {
+                    log.warn("客户端已断开，继续后台合成: audioFileId={}", ticket.getAudioFileId());
+                    clientGone.set(true);
+                }
+            }, chunkProgressPublisher(ticket.getUser().getId(), STREAM_TASK_TYPE,
+                    String.valueOf(ticket.getAudioFileId()), ticket.getAudioFileId())));
+        } catch (RuntimeException e) {
+            persistExecutor.submit(() -> discardRecord(ticket.getAudioFileId()));
+            throw e;
+        }
 
-        // 9. 保存到缓存
-        cacheService.saveToCache(rawText, voiceName, promptHash, r2Url);
+        persistExecutor.submit(() -> persistStreamedAudio(ticket, audioData));
+    }
 
-        // 10. 保存记录
-        Long textRecordId = createRecord(user.getId(), rawText, ssmlText, voiceName, r2Url, duration);
+    /**
+     * 分段完成时推送合成进度，客户端订阅 /user/queue/tasks 按taskId区分请求
+     */
+    private DouyinTtsService.ChunkProgressListener chunkProgressPublisher(Long userId, String taskType, String taskId,
+                                                                         Long audioFileId) {
+        return (completed, total) -> {
+            TaskEvent event = TaskEvent.of(taskType, taskId, audioFileId, TaskEvent.Stage.SYNTHESIZING);
+            event.setCompletedChunks(completed);
+            event.setTotalChunks(total);
+            taskEventPublisher.publish(userId, event);
+        };
+    }
 
-        return new AudioGenerateResponse(textRecordId, r2Url, duration);
+    private void persistStreamedAudio(StreamTicket ticket, byte[] audioData) {
+        try {
+            String r2Url = storageService.uploadAudio(audioData, ticket.getRawText());
+            int duration = storageService.estimateDuration(audioData);
+            cacheService.saveToCache(ticket.getCacheKey(), r2Url);
+
+            AudioFile audioFile = audioFileRepository.findById(ticket.getAudioFileId()).orElse(null);
+            if (audioFile != null) {
+                audioFile.setR2Url(r2Url);
+                audioFile.setDuration(duration);
+                audioFileRepository.save(audioFile);
+            }
+            log.info("流式合成持久化完成: audioFileId={}, url={}", ticket.getAudioFileId(), r2Url);
+        } catch (Exception e) {
+            log.error("流式合成持久化失败: audioFileId={}, error={}", ticket.getAudioFileId(), e.getMessage(), e);
+        }
+    }
+
+    private void discardRecord(Long audioFileId) {
+        try {
+            audioFileRepository.findById(audioFileId).ifPresent(audioFile -> {
+                audioFileRepository.delete(audioFile);
+                if (audioFile.getTextRecordId() != null) {
+                    textRecordRepository.deleteById(audioFile.getTextRecordId());
+                }
+            });
+        } catch (Exception e) {
+            log.warn("清理失败记录失败: audioFileId={}, error={}", audioFileId, e.getMessage());
+        }
     }
 
     private Long createRecord(Long userId, String rawText, String ssmlText, String voiceName, String r2Url, int duration) {
@@ -562,4 +606,33 @@ public class AudioService {
         }
         userCollectRepository.deleteByUserIdAndAudioFileId(user.getId(), audioId);
     }
+
+    public SingleFlight.Stats getSynthesisFlightStats() {
+        return synthesisFlight.getStats();
+    }
+
+    /**
+     * 合成结果（供合并的并发请求共享）
+     */
+    @Data
+    @AllArgsConstructor
+    private static class SynthesisResult {
+        private String ssmlText;
+        private String r2Url;
+        private int duration;
+    }
+
+    /**
+     * 流式生成票据
+     */
+    @Data
+    public static class StreamTicket {
+        private SysUser user;
+        private Long audioFileId;
+        private String cachedUrl;
+        private String rawText;
+        private String ssmlText;
+        private String voiceName;
+        private CacheService.CacheKey cacheKey;
+    }
 }
@@ -1,56 +1,235 @@
 package com.interview.tts.service;
 
+import cn.hutool.cache.impl.LRUCache;
 import cn.hutool.crypto.digest.DigestUtil;
 import com.interview.tts.entity.AudioCache;
 import com.interview.tts.repository.AudioCacheRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * 音频缓存服务 - 两级缓存
+ * L1: 进程内LRU (md5 + 音色 + promptHash -> URL)，命中时不访问数据库
+ * L2: audio_cache表
+ * 数据库未命中的key会短暂记入负缓存，避免同一文本反复查库
+ * 在事务中保存缓存时，等调用方事务提交后由写入线程落库，不在事务内再占用第二个数据库连接
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class CacheService {
 
     private final AudioCacheRepository audioCacheRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${cache.audio.local-capacity:10000}")
+    private int localCapacity;
+
+    // L1条目过期时间（从写入时算起，读取不续期），0表示不过期（仅按LRU淘汰）
+    @Value("${cache.audio.local-ttl-ms:0}")
+    private long localTtlMs;
+
+    @Value("${cache.audio.negative-capacity:10000}")
+    private int negativeCapacity;
+
+    // 负缓存过期时间（从写入时算起，读取不续期）
+    @Value("${cache.audio.negative-ttl-ms:30000}")
+    private long negativeTtlMs;
+
+    private LRUCache<String, String> localCache;
+    private LRUCache<String, Boolean> negativeCache;
+    private TransactionTemplate requiresNewTx;
+    private ExecutorService writer;
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder dbHits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder admissions = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        localCache = new LRUCache<>(localCapacity, localTtlMs);
+        localCache.setListener((key, url) -> evictions.increment());
+        negativeCache = new LRUCache<>(negativeCapacity, negativeTtlMs);
+
+        requiresNewTx = new TransactionTemplate(transactionManager);
+        requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "audio-cache-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("音频缓存写入未在停机前完成，放弃{}条", writer.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 构建缓存key，同一请求内复用以避免重复计算整段文本的MD5
+     */
+    public CacheKey buildKey(String rawText, String voiceName, String promptHash) {
+        return new CacheKey(DigestUtil.md5Hex(rawText), voiceName, promptHash);
+    }
 
     public String getCachedUrl(String rawText, String voiceName, String promptHash) {
-        String md5 = DigestUtil.md5Hex(rawText);
-        Optional<AudioCache> cached = audioCacheRepository
-                .findByRawTextMd5AndVoiceNameAndPromptHash(md5, voiceName, promptHash);
+        return getCachedUrl(buildKey(rawText, voiceName, promptHash));
+    }
 
+    public String getCachedUrl(CacheKey key) {
+        String id = key.id();
+        // 读取不续期，TTL从写入时算起：被频繁查询的未命中条目也会按时过期，其他实例写入的结果最迟在TTL后可见
+        String url = localCache.get(id, false);
+        if (url != null) {
+            localHits.increment();
+            return url;
+        }
+        if (negativeCache.get(id, false) != null) {
+            negativeHits.increment();
+            return null;
+        }
+
+        Optional<AudioCache> cached = audioCacheRepository
+                .findByRawTextMd5AndVoiceNameAndPromptHash(key.getMd5(), key.getVoiceName(), key.getPromptHash());
         if (cached.isPresent()) {
-            log.info("缓存命中: md5={}, voice={}", md5, voiceName);
+            dbHits.increment();
+            admit(id, cached.get().getR2Url());
+            log.info("缓存命中: md5={}, voice={}", key.getMd5(), key.getVoiceName());
             return cached.get().getR2Url();
         }
+
+        misses.increment();
+        negativeCache.put(id, Boolean.TRUE);
         return null;
     }
 
     public void saveToCache(String rawText, String voiceName, String promptHash, String r2Url) {
-        String md5 = DigestUtil.md5Hex(rawText);
-
-        // 检查是否已存在
-        Optional<AudioCache> existing = audioCacheRepository
-                .findByRawTextMd5AndVoiceNameAndPromptHash(md5, voiceName, promptHash);
+        saveToCache(buildKey(rawText, voiceName, promptHash), r2Url);
+    }
 
-        if (existing.isPresent()) {
+    public void saveToCache(CacheKey key, String r2Url) {
+        String id = key.id();
+        negativeCache.remove(id);
+        if (localCache.containsKey(id)) {
             log.info("缓存已存在，无需重复创建");
             return;
         }
 
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            persist(key, r2Url);
+            return;
+        }
+        // afterCommit 时调用方的连接尚未归还，交给写入线程执行，避免同一线程同时占用两个连接
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                writer.execute(() -> persist(key, r2Url));
+            }
+        });
+    }
+
+    private void persist(CacheKey key, String r2Url) {
+        String id = key.id();
         AudioCache cache = new AudioCache();
-        cache.setRawTextMd5(md5);
-        cache.setVoiceName(voiceName);
-        cache.setPromptHash(promptHash);
+        cache.setRawTextMd5(key.getMd5());
+        cache.setVoiceName(key.getVoiceName());
+        cache.setPromptHash(key.getPromptHash());
         cache.setR2Url(r2Url);
-        audioCacheRepository.save(cache);
-
-        log.info("缓存保存成功: md5={}, voice={}", md5, voiceName);
+        try {
+            // 依赖唯一索引去重，不再先查一次；冲突只回滚这一次插入
+            requiresNewTx.executeWithoutResult(status -> audioCacheRepository.save(cache));
+            log.info("缓存保存成功: md5={}, voice={}", key.getMd5(), key.getVoiceName());
+        } catch (DataIntegrityViolationException e) {
+            log.info("缓存已存在，无需重复创建");
+        } catch (Exception e) {
+            log.warn("缓存保存失败: md5={}, voice={}, {}", key.getMd5(), key.getVoiceName(), e.getMessage());
+            return;
+        }
+        admit(id, r2Url);
     }
 
     public String getRawTextMd5(String rawText) {
         return DigestUtil.md5Hex(rawText);
     }
+
+    public CacheStats getStats() {
+        CacheStats stats = new CacheStats();
+        stats.setLocalSize(localCache.size());
+        stats.setLocalCapacity(localCapacity);
+        stats.setNegativeSize(negativeCache.size());
+        stats.setLocalHits(localHits.sum());
+        stats.setDbHits(dbHits.sum());
+        stats.setNegativeHits(negativeHits.sum());
+        stats.setMisses(misses.sum());
+        stats.setAdmissions(admissions.sum());
+        stats.setEvictions(evictions.sum());
+        long lookups = stats.getLocalHits() + stats.getDbHits() + stats.getNegativeHits() + stats.getMisses();
+        stats.setHitRate(lookups == 0 ? 0 : (double) (stats.getLocalHits() + stats.getDbHits()) / lookups);
+        return stats;
+    }
+
+    private void admit(String id, String url) {
+        localCache.put(id, url);
+        admissions.increment();
+    }
+
+    /**
+     * 缓存key
+     */
+    @Data
+    public static class CacheKey {
+        private final String md5;
+        private final String voiceName;
+        private final String promptHash;
+
+        String id() {
+            return md5 + ":" + voiceName + ":" + promptHash;
+        }
+    }
+
+    /**
+     * 缓存统计
+     */
+    @Data
+    public static class CacheStats {
+        private int localSize;
+        private int localCapacity;
+        private int negativeSize;
+        private long localHits;
+        private long dbHits;
+        private long negativeHits;
+        private long misses;
+        private long admissions;
+        private long evictions;
+        private double hitRate;
+    }
 }
@@ -4,6 +4,7 @@ import com.interview.tts.entity.ChatMessage;
 import com.interview.tts.entity.Session;
 import com.interview.tts.repository.ChatMessageRepository;
 import com.interview.tts.repository.SessionRepository;
+import com.interview.tts.service.tts.TtsRouter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -24,7 +25,7 @@ public class ChatService {
 
     private final SessionRepository sessionRepository;
     private final ChatMessageRepository chatMessageRepository;
-    private final DouyinTtsService ttsService;
+    private final TtsRouter ttsRouter;
     private final StorageService storageService;
     private final LlmScriptService llmScriptService;
 
@@ -100,7 +101,7 @@ public class ChatService {
         // 5. 生成语音
         try {
             String voiceName = "BV001_streaming";
-            byte[] audioData = ttsService.generateAudio(answer, voiceName);
+            byte[] audioData = ttsRouter.generateAudio(answer, voiceName);
             String audioUrl = storageService.uploadAudio(audioData, "chat_" + System.currentTimeMillis());
             int duration = storageService.estimateDuration(audioData);
 
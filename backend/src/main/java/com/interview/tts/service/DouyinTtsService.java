@@ -4,6 +4,11 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.annotation.JSONField;
 import com.interview.tts.exception.BusinessException;
+import com.interview.tts.service.upstream.HttpClients;
+import com.interview.tts.service.upstream.RequestHedger;
+import com.interview.tts.service.upstream.UpstreamGateway;
+import com.interview.tts.service.upstream.UpstreamRejectedException;
+import com.interview.tts.util.TextChunker;
 import lombok.Builder;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -12,9 +17,21 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 /**
  * 豆包TTS服务 (火山引擎)
@@ -56,7 +73,57 @@ public class DouyinTtsService {
     @Value("${volcengine.tts.cluster:volcano_tts}")
     private String cluster;
 
+    // 短文本合成接口地址，可指向本地stub做离线测试
+    @Value("${volcengine.tts.api-url:" + API_URL + "}")
+    private String apiUrl;
+
+    // 分段合成: 每段最大字符数
+    @Value("${volcengine.tts.chunk.max-chars:300}")
+    private int chunkMaxChars;
+
+    // 分段合成: 并行度（全局共享）
+    @Value("${volcengine.tts.chunk.parallelism:4}")
+    private int chunkParallelism;
+
+    // 分段合成: 单段最大重试次数
+    @Value("${volcengine.tts.chunk.max-retries:2}")
+    private int chunkMaxRetries;
+
+    @Value("${volcengine.tts.chunk.retry-backoff-ms:500}")
+    private long chunkRetryBackoffMs;
+
+    // 对冲请求: 交互式短文本合成单段超过延迟分位数未返回时再发一个请求
+    @Value("${volcengine.tts.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    @Value("${volcengine.tts.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    // 样本不足时的对冲等待时间
+    @Value("${volcengine.tts.hedge.default-delay-ms:1500}")
+    private long hedgeDefaultDelayMs;
+
+    @Value("${volcengine.tts.hedge.min-delay-ms:200}")
+    private long hedgeMinDelayMs;
+
+    // 每个用户每次请求积累的对冲额度，即对冲请求最多占该用户请求数的比例
+    @Value("${volcengine.tts.hedge.budget-ratio:0.1}")
+    private double hedgeBudgetRatio;
+
+    @Value("${volcengine.tts.hedge.budget-burst:2}")
+    private double hedgeBudgetBurst;
+
+    @Value("${volcengine.tts.hedge.max-concurrent:8}")
+    private int hedgeMaxConcurrent;
+
     private final OkHttpClient httpClient;
+    // 长文本异步接口（提交/查询）单独限流，响应时间与短文本合成差异大
+    private final OkHttpClient asyncHttpClient;
+    private final SegmentCacheService segmentCacheService;
+    private final UpstreamGateway upstreamGateway;
+
+    private ExecutorService chunkExecutor;
+    private RequestHedger hedger;
 
     private static final List<VoiceInfo> CHINESE_VOICES = new ArrayList<>();
     private static final Map<String, String> VOICE_MAPPING = new HashMap<>();
@@ -75,12 +142,33 @@ public class DouyinTtsService {
         CHINESE_VOICES.add(new VoiceInfo("BV504_streaming", "en-US", "Male", "活力男声-Jackson"));
     }
 
-    public DouyinTtsService() {
-        this.httpClient = new OkHttpClient();
+    public DouyinTtsService(SegmentCacheService segmentCacheService, UpstreamGateway upstreamGateway,
+                            HttpClients httpClients) {
+        this.httpClient = httpClients.create("tts", builder -> builder
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .writeTimeout(10, TimeUnit.SECONDS)
+                .addInterceptor(upstreamGateway.interceptor("tts")));
+        this.asyncHttpClient = httpClients.create("tts-async", builder -> builder
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .addInterceptor(upstreamGateway.interceptor("tts-async")));
+        this.segmentCacheService = segmentCacheService;
+        this.upstreamGateway = upstreamGateway;
     }
 
     @PostConstruct
     public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        chunkExecutor = Executors.newFixedThreadPool(chunkParallelism, r -> {
+            Thread t = new Thread(r, "tts-chunk-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        hedger = new RequestHedger("tts", hedgePercentile, hedgeDefaultDelayMs, hedgeMinDelayMs,
+                hedgeBudgetRatio, hedgeBudgetBurst, hedgeMaxConcurrent, upstreamGateway.limiter("tts"));
+
         if (appId == null || appId.isEmpty()) {
             log.warn("豆包TTS未配置app-id，请检查配置!");
         } else if (accessToken == null || accessToken.isEmpty()) {
@@ -90,6 +178,16 @@ public class DouyinTtsService {
         }
     }
 
+    @PreDestroy
+    public void shutdown() {
+        chunkExecutor.shutdownNow();
+        hedger.shutdown();
+    }
+
+    public RequestHedger.HedgeStats getHedgeStats() {
+        return hedger.getStats();
+    }
+
     public List<VoiceInfo> listChineseVoices() {
         return new ArrayList<>(CHINESE_VOICES);
     }
@@ -101,6 +199,163 @@ public class DouyinTtsService {
      * @return 音频数据 (MP3格式)
      */
     public byte[] generateAudio(String text, String voiceName) {
+        return generateAudio(text, voiceName, null, null);
+    }
+
+    public byte[] generateAudio(String text, String voiceName, ChunkProgressListener progressListener) {
+        return generateAudio(text, voiceName, progressListener, null);
+    }
+
+    /**
+     * 生成语音 - 长文本按句子分段并行合成，按原文顺序拼接
+     * @param text 文本
+     * @param voiceName 音色名称
+     * @param progressListener 分段进度回调（可为null）
+     * @param hedgeUserId 交互式请求的用户ID，非空时按该用户的额度对慢请求发起对冲（可为null，仅需请求上游的分段只有一个时生效）
+     * @return 音频数据 (MP3格式)
+     */
+    public byte[] generateAudio(String text, String voiceName, ChunkProgressListener progressListener, Long hedgeUserId) {
+        return generateAudio(text, voiceName, progressListener, hedgeUserId, null);
+    }
+
+    /**
+     * @param upstreamLatency 每次上游HTTP调用完成时回调其耗时（不含本地排队，可为null），供调用方判断上游是否变慢
+     */
+    public byte[] generateAudio(String text, String voiceName, ChunkProgressListener progressListener, Long hedgeUserId,
+                                LongConsumer upstreamLatency) {
+        return synthesizeChunks(text, false, voiceName, progressListener, null, hedgeUserId, upstreamLatency);
+    }
+
+    public byte[] generateAudioStreaming(String text, String voiceName, Consumer<byte[]> partSink) {
+        return generateAudioStreaming(text, voiceName, null, partSink);
+    }
+
+    /**
+     * 流式生成语音 - 首句单独成段，各分段按原文顺序一旦就绪即交给partSink，
+     * 首句合成完即可开始输出，不必等待全文
+     * @param text 文本
+     * @param voiceName 音色名称
+     * @param hedgeUserId 交互式请求的用户ID，非空时按该用户的额度对慢请求发起对冲（可为null，仅需请求上游的分段只有一个时生效）
+     * @param partSink 按顺序接收MP3分段（已去除分段间的标签，可直接拼接）
+     * @return 完整音频数据 (MP3格式)
+     */
+    public byte[] generateAudioStreaming(String text, String voiceName, Long hedgeUserId, Consumer<byte[]> partSink) {
+        return generateAudioStreaming(text, voiceName, hedgeUserId, null, null, partSink);
+    }
+
+    /**
+     * @param progressListener 分段进度回调（可为null）
+     * @param upstreamLatency 每次上游HTTP调用完成时回调其耗时（不含本地排队，可为null）
+     */
+    public byte[] generateAudioStreaming(String text, String voiceName, Long hedgeUserId,
+                                         ChunkProgressListener progressListener, LongConsumer upstreamLatency,
+                                         Consumer<byte[]> partSink) {
+        return synthesizeChunks(text, true, voiceName, progressListener, partSink, hedgeUserId, upstreamLatency);
+    }
+
+    /**
+     * 切分合成分段：流式时首句单独成段，其余句子合并为不超过maxChars的分段
+     * 启用分段缓存时每个句子单独成段、单独请求并按句缓存，编辑一句只重新合成这一句，相邻句子仍能命中缓存；
+     * 请求数随句子数增加，由分段线程池和上游并发限制控制并发
+     */
+    private List<String> planChunks(String text, boolean streaming) {
+        if (text.trim().startsWith("<speak")) {
+            return List.of(text);
+        }
+        if (segmentCacheService.isEnabled()) {
+            return TextChunker.splitSentences(text, chunkMaxChars);
+        }
+        return streaming ? TextChunker.splitForStreaming(text, chunkMaxChars) : TextChunker.split(text, chunkMaxChars);
+    }
+
+    private byte[] synthesizeChunks(String text, boolean streaming, String voiceName,
+                                    ChunkProgressListener progressListener, Consumer<byte[]> partSink,
+                                    Long hedgeUserId, LongConsumer upstreamLatency) {
+        checkConfigured();
+        String mappedVoice = resolveVoice(voiceName);
+        List<String> chunks = planChunks(text, streaming);
+
+        if (chunks.size() <= 1) {
+            byte[] audio = synthesizeCached(chunks.isEmpty() ? text : chunks.get(0), mappedVoice, 0, hedgeUserId,
+                    upstreamLatency);
+            if (progressListener != null) {
+                progressListener.onProgress(1, 1);
+            }
+            if (partSink != null) {
+                partSink.accept(audio);
+            }
+            return audio;
+        }
+
+        int total = chunks.size();
+        log.info("豆包TTS分段合成: voice={}, textLength={}, chunks={}", mappedVoice, text.length(), total);
+        long startTime = System.currentTimeMillis();
+
+        List<byte[]> cachedParts = new ArrayList<>(total);
+        int uncached = 0;
+        for (String chunk : chunks) {
+            byte[] cached = segmentCacheService.isEnabled() ? segmentCacheService.get(chunk, mappedVoice) : null;
+            cachedParts.add(cached);
+            if (cached == null) {
+                uncached++;
+            }
+        }
+        // 多个分段需要请求上游时不对冲：分段已占用多个上游名额，再对冲会在一次请求内成倍放大上游压力和对冲额度消耗；
+        // 只改动了一句时仍按单段请求对冲
+        Long chunkHedgeUserId = uncached == 1 ? hedgeUserId : null;
+
+        AtomicInteger completed = new AtomicInteger();
+        // 任一分段失败后置位，尚未发出的分段和重试不再请求上游
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        List<CompletableFuture<byte[]>> sources = new ArrayList<>(total);
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            final int index = i;
+            final String chunk = chunks.get(i);
+            byte[] cached = cachedParts.get(i);
+            CompletableFuture<byte[]> future = cached != null
+                    ? CompletableFuture.completedFuture(cached)
+                    : CompletableFuture.supplyAsync(
+                            () -> synthesizeAndCache(chunk, mappedVoice, index, chunkHedgeUserId, upstreamLatency, aborted),
+                            chunkExecutor);
+            sources.add(future);
+            if (progressListener != null) {
+                future = future.whenComplete((audio, e) -> {
+                    if (e == null) {
+                        progressListener.onProgress(completed.incrementAndGet(), total);
+                    }
+                });
+            }
+            futures.add(future);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            for (int i = 0; i < total; i++) {
+                byte[] part = trimMp3Part(futures.get(i).join(), i == 0, i == total - 1);
+                output.write(part, 0, part.length);
+                if (partSink != null) {
+                    partSink.accept(part);
+                }
+            }
+        } catch (CompletionException e) {
+            // 任一分段最终失败，取消剩余分段：取消源future使排队中的分段不再执行，正在重试的分段在下次请求前退出
+            aborted.set(true);
+            sources.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof BusinessException) {
+                throw (BusinessException) e.getCause();
+            }
+            log.error("豆包TTS分段合成失败: {}", e.getMessage(), e);
+            throw BusinessException.ttsFailed();
+        }
+
+        byte[] audioData = output.toByteArray();
+        log.info("豆包TTS分段合成完成: chunks={}, size={}, cost={}ms",
+                total, audioData.length, System.currentTimeMillis() - startTime);
+        return audioData;
+    }
+
+    private void checkConfigured() {
         if (appId == null || appId.isEmpty()) {
             log.error("火山引擎TTS未配置app-id");
             throw BusinessException.ttsFailed();
@@ -110,7 +365,9 @@ public class DouyinTtsService {
             log.error("火山引擎TTS未配置access-token");
             throw BusinessException.ttsFailed();
         }
+    }
 
+    private String resolveVoice(String voiceName) {
         // 音色映射
         String mappedVoice = VOICE_MAPPING.getOrDefault(voiceName, voiceName);
         if (!mappedVoice.equals(voiceName)) {
@@ -121,104 +378,214 @@ public class DouyinTtsService {
             mappedVoice = "BV001_streaming";
             log.warn("未知音色 {}，使用默认音色 BV001_streaming", voiceName);
         }
+        return mappedVoice;
+    }
 
+    /**
+     * 单个分段合成，优先复用句子级分段缓存
+     */
+    private byte[] synthesizeCached(String text, String mappedVoice, int chunkIndex, Long hedgeUserId,
+                                    LongConsumer upstreamLatency) {
+        if (!segmentCacheService.isEnabled()) {
+            return synthesizeWithRetry(text, mappedVoice, chunkIndex, hedgeUserId, upstreamLatency, null);
+        }
+        byte[] audio = segmentCacheService.get(text, mappedVoice);
+        return audio != null ? audio : synthesizeAndCache(text, mappedVoice, chunkIndex, hedgeUserId, upstreamLatency, null);
+    }
+
+    private byte[] synthesizeAndCache(String text, String mappedVoice, int chunkIndex, Long hedgeUserId,
+                                      LongConsumer upstreamLatency, AtomicBoolean aborted) {
+        byte[] audio = synthesizeWithRetry(text, mappedVoice, chunkIndex, hedgeUserId, upstreamLatency, aborted);
+        if (segmentCacheService.isEnabled()) {
+            segmentCacheService.put(text, mappedVoice, audio);
+        }
+        return audio;
+    }
+
+    /**
+     * 单个分段合成，失败后按退避间隔重试
+     * @param aborted 同一请求的其他分段已失败时为true，不再请求上游（可为null）
+     */
+    private byte[] synthesizeWithRetry(String text, String mappedVoice, int chunkIndex, Long hedgeUserId,
+                                       LongConsumer upstreamLatency, AtomicBoolean aborted) {
+        int attempt = 0;
+        while (true) {
+            if (aborted != null && aborted.get()) {
+                throw new CancellationException("其他分段已失败，跳过分段" + chunkIndex);
+            }
+            try {
+                return synthesize(text, mappedVoice, hedgeUserId, upstreamLatency);
+            } catch (BusinessException e) {
+                // 排队失败说明上游已满，重试只会继续排队
+                if (attempt >= chunkMaxRetries || BusinessException.UPSTREAM_BUSY.equals(e.getCode())) {
+                    log.error("豆包TTS分段重试耗尽: chunk={}, attempts={}", chunkIndex, attempt + 1);
+                    throw e;
+                }
+                attempt++;
+                log.warn("豆包TTS分段合成失败，准备重试: chunk={}, attempt={}", chunkIndex, attempt);
+                try {
+                    Thread.sleep(chunkRetryBackoffMs * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 调用豆包TTS接口合成一段文本
+     * @param hedgeUserId 交互式请求的用户ID，非空且启用对冲时，超过p95未返回会再发一个请求
+     */
+    private byte[] synthesize(String text, String mappedVoice, Long hedgeUserId, LongConsumer upstreamLatency) {
         try {
-            // 构造请求体（参考demo格式）
-            TtsRequest ttsRequest = new TtsRequest();
-            ttsRequest.setApp(new TtsRequest.App());
-            ttsRequest.getApp().setAppid(appId);
-            ttsRequest.getApp().setCluster(cluster);
-            ttsRequest.getApp().setToken("access_token");
-
-            ttsRequest.setUser(new TtsRequest.User());
-            ttsRequest.getUser().setUid(UUID.randomUUID().toString());
-
-            ttsRequest.setAudio(new TtsRequest.Audio());
-            ttsRequest.getAudio().setVoiceType(mappedVoice);
-            ttsRequest.getAudio().setEncoding("mp3");
-            ttsRequest.getAudio().setSpeedRatio(1.0f);
-            ttsRequest.getAudio().setVolumeRatio(1.0f);
-            ttsRequest.getAudio().setPitchRatio(1.0f);
-
-            ttsRequest.setRequest(new TtsRequest.Request());
-            ttsRequest.getRequest().setReqID(UUID.randomUUID().toString());
-            ttsRequest.getRequest().setText(text);
-            ttsRequest.getRequest().setTextType("plain");
-            ttsRequest.getRequest().setOperation("query");
-
-            String reqBody = JSON.toJSONString(ttsRequest);
             log.info("豆包TTS请求: voice={}, text={}", mappedVoice, text.substring(0, Math.min(50, text.length())));
+            if (hedgeEnabled && hedgeUserId != null) {
+                return hedger.execute(hedgeUserId, onCancel -> requestTts(text, mappedVoice, onCancel, upstreamLatency));
+            }
+            return hedger.execute(onCancel -> requestTts(text, mappedVoice, onCancel, upstreamLatency));
+        } catch (BusinessException e) {
+            throw e;
+        } catch (UpstreamRejectedException e) {
+            log.warn("豆包TTS 本地排队失败: {}", e.getMessage());
+            throw BusinessException.upstreamBusy();
+        } catch (Exception e) {
+            log.error("豆包TTS 合成失败: {}", e.getMessage(), e);
+            throw BusinessException.ttsFailed();
+        }
+    }
 
-            // 使用Bearer Token鉴权
-            String authorization = "Bearer; " + accessToken;
+    /**
+     * 发送一次合成请求，每次使用新的reqid，对冲的两个请求互不影响
+     * @param onCancel 注册取消动作，对冲落选时取消请求
+     * @param upstreamLatency 由上游拦截器在响应读完时回调本次调用耗时（可为null）
+     */
+    private byte[] requestTts(String text, String mappedVoice, Consumer<Runnable> onCancel,
+                              LongConsumer upstreamLatency) throws IOException {
+        // 构造请求体（参考demo格式）
+        TtsRequest ttsRequest = new TtsRequest();
+        ttsRequest.setApp(new TtsRequest.App());
+        ttsRequest.getApp().setAppid(appId);
+        ttsRequest.getApp().setCluster(cluster);
+        ttsRequest.getApp().setToken("access_token");
+
+        ttsRequest.setUser(new TtsRequest.User());
+        ttsRequest.getUser().setUid(UUID.randomUUID().toString());
+
+        ttsRequest.setAudio(new TtsRequest.Audio());
+        ttsRequest.getAudio().setVoiceType(mappedVoice);
+        ttsRequest.getAudio().setEncoding("mp3");
+        ttsRequest.getAudio().setSpeedRatio(1.0f);
+        ttsRequest.getAudio().setVolumeRatio(1.0f);
+        ttsRequest.getAudio().setPitchRatio(1.0f);
+
+        ttsRequest.setRequest(new TtsRequest.Request());
+        ttsRequest.getRequest().setReqID(UUID.randomUUID().toString());
+        ttsRequest.getRequest().setText(text);
+        ttsRequest.getRequest().setTextType("plain");
+        ttsRequest.getRequest().setOperation("query");
+
+        String reqBody = JSON.toJSONString(ttsRequest);
+
+        // 使用Bearer Token鉴权
+        String authorization = "Bearer; " + accessToken;
+
+        RequestBody body = RequestBody.create(reqBody, MediaType.get("application/json; charset=utf-8"));
+        Request.Builder requestBuilder = new Request.Builder()
+                .url(apiUrl)
+                .header("Authorization", authorization)
+                .post(body);
+        if (upstreamLatency != null) {
+            requestBuilder.tag(UpstreamGateway.CallListener.class, upstreamLatency::accept);
+        }
 
-            RequestBody body = RequestBody.create(reqBody, MediaType.get("application/json; charset=utf-8"));
-            Request request = new Request.Builder()
-                    .url(API_URL)
-                    .header("Host", HOST)
-                    .header("Authorization", authorization)
-                    .post(body)
-                    .build();
+        Call call = httpClient.newCall(requestBuilder.build());
+        onCancel.accept(call::cancel);
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful()) {
+                String errorBody = response.body() != null ? response.body().string() : "empty";
+                log.error("豆包TTS请求失败: status={}, body={}", response.code(), errorBody);
+                throw BusinessException.ttsFailed();
+            }
 
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    String errorBody = response.body() != null ? response.body().string() : "empty";
-                    log.error("豆包TTS请求失败: status={}, body={}", response.code(), errorBody);
-                    throw BusinessException.ttsFailed();
-                }
+            String responseBodyStr = response.body() != null ? response.body().string() : "";
+            log.debug("豆包TTS原始响应: {}", responseBodyStr);
 
-                String responseBodyStr = response.body() != null ? response.body().string() : "";
-                log.debug("豆包TTS原始响应: {}", responseBodyStr);
+            if (responseBodyStr == null || responseBodyStr.isEmpty()) {
+                log.error("豆包TTS响应为空");
+                throw BusinessException.ttsFailed();
+            }
 
-                if (responseBodyStr == null || responseBodyStr.isEmpty()) {
-                    log.error("豆包TTS响应为空");
-                    throw BusinessException.ttsFailed();
-                }
+            // 解析JSON响应，提取base64编码的音频
+            JSONObject json = JSON.parseObject(responseBodyStr);
 
-                // 解析JSON响应，提取base64编码的音频
-                JSONObject json = JSON.parseObject(responseBodyStr);
+            // 检查是否有错误 (code=0或3000都是成功)
+            int code = json.containsKey("code") ? json.getIntValue("code") : -1;
+            if (code != 0 && code != 3000) {
+                String message = json.containsKey("message") ? json.getString("message") : "未知错误";
+                log.error("豆包TTS返回错误: code={}, message={}", json.getIntValue("code"), message);
+                throw BusinessException.ttsFailed();
+            }
 
-                // 检查是否有错误 (code=0或3000都是成功)
-                int code = json.containsKey("code") ? json.getIntValue("code") : -1;
-                if (code != 0 && code != 3000) {
-                    String message = json.containsKey("message") ? json.getString("message") : "未知错误";
-                    log.error("豆包TTS返回错误: code={}, message={}", json.getIntValue("code"), message);
-                    throw BusinessException.ttsFailed();
+            // 提取base64音频数据
+            String audioBase64 = null;
+            if (json.containsKey("data")) {
+                audioBase64 = json.getString("data");
+            } else if (json.containsKey("result")) {
+                JSONObject result = json.getJSONObject("result");
+                if (result != null && result.containsKey("data")) {
+                    audioBase64 = result.getString("data");
                 }
+            }
 
-                // 提取base64音频数据
-                String audioBase64 = null;
-                if (json.containsKey("data")) {
-                    audioBase64 = json.getString("data");
-                } else if (json.containsKey("result")) {
-                    JSONObject result = json.getJSONObject("result");
-                    if (result != null && result.containsKey("data")) {
-                        audioBase64 = result.getString("data");
-                    }
-                }
+            if (audioBase64 == null || audioBase64.isEmpty()) {
+                log.error("豆包TTS响应中没有音频数据: {}", responseBodyStr);
+                throw BusinessException.ttsFailed();
+            }
 
-                if (audioBase64 == null || audioBase64.isEmpty()) {
-                    log.error("豆包TTS响应中没有音频数据: {}", responseBodyStr);
-                    throw BusinessException.ttsFailed();
-                }
+            // Base64解码
+            byte[] audioData = Base64.getDecoder().decode(audioBase64);
+            if (audioData == null || audioData.length == 0) {
+                log.error("豆包TTS解码后为空");
+                throw BusinessException.ttsFailed();
+            }
 
-                // Base64解码
-                byte[] audioData = Base64.getDecoder().decode(audioBase64);
-                if (audioData == null || audioData.length == 0) {
-                    log.error("豆包TTS解码后为空");
-                    throw BusinessException.ttsFailed();
-                }
+            log.info("豆包TTS 合成成功: voice={}, size={}", mappedVoice, audioData.length);
+            return audioData;
+        }
+    }
 
-                log.info("豆包TTS 合成成功: voice={}, size={}", mappedVoice, audioData.length);
-                return audioData;
-            }
+    /**
+     * 裁剪MP3分段以便拼接：同一接口同一参数输出的帧格式一致，可直接首尾相接，
+     * 只需去掉后续分段开头的ID3v2标签和非末段结尾的ID3v1标签
+     */
+    private static byte[] trimMp3Part(byte[] part, boolean first, boolean last) {
+        int start = first ? 0 : id3v2Length(part);
+        int end = part.length;
+        if (!last && end - start >= 128
+                && part[end - 128] == 'T' && part[end - 127] == 'A' && part[end - 126] == 'G') {
+            end -= 128;
+        }
+        return start == 0 && end == part.length ? part : Arrays.copyOfRange(part, start, end);
+    }
 
-        } catch (BusinessException e) {
-            throw e;
-        } catch (Exception e) {
-            log.error("豆包TTS 合成失败: {}", e.getMessage(), e);
-            throw BusinessException.ttsFailed();
+    private static int id3v2Length(byte[] data) {
+        if (data.length < 10 || data[0] != 'I' || data[1] != 'D' || data[2] != '3') {
+            return 0;
         }
+        // 标签大小为4个7位有效字节 (synchsafe integer)
+        int size = ((data[6] & 0x7F) << 21) | ((data[7] & 0x7F) << 14)
+                | ((data[8] & 0x7F) << 7) | (data[9] & 0x7F);
+        int footer = (data[5] & 0x10) != 0 ? 10 : 0;
+        return Math.min(data.length, 10 + size + footer);
+    }
+
+    /**
+     * 分段合成进度回调
+     */
+    @FunctionalInterface
+    public interface ChunkProgressListener {
+        void onProgress(int completed, int total);
     }
 
     // ========== 请求对象（参考demo）==========
@@ -371,7 +738,7 @@ public class DouyinTtsService {
 
             log.info("发送请求中...");
 
-            try (Response response = httpClient.newCall(request).execute()) {
+            try (Response response = asyncHttpClient.newCall(request).execute()) {
                 log.info("========== 收到火山引擎响应 ==========");
                 log.info("HTTP状态码: {}", response.code());
 
@@ -451,7 +818,7 @@ public class DouyinTtsService {
             log.info("发送查询请求...");
             long startTime = System.currentTimeMillis();
 
-            try (Response response = httpClient.newCall(request).execute()) {
+            try (Response response = asyncHttpClient.newCall(request).execute()) {
                 long costTime = System.currentTimeMillis() - startTime;
                 log.info("========== 收到查询响应 ==========");
                 log.info("HTTP状态码: {}, 耗时: {}ms", response.code(), costTime);
@@ -0,0 +1,81 @@
+package com.interview.tts.service;
+
+import cn.hutool.cache.impl.LRUCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内任务状态存储，按LRU淘汰，条目超过ttl未访问即过期
+ * 轮询中的任务每次查询都会更新，不会因过期丢失
+ */
+@Component
+@ConditionalOnProperty(name = "task-state.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryTaskStateStore implements TaskStateStore {
+
+    @Value("${task-state.memory.capacity:10000}")
+    private int capacity;
+
+    @Value("${task-state.ttl-ms:600000}")
+    private long ttlMs;
+
+    private LRUCache<String, LongTextTaskState> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        cache = new LRUCache<>(capacity, ttlMs);
+        cache.setListener((taskId, state) -> evictions.increment());
+    }
+
+    @Override
+    public LongTextTaskState get(String taskId) {
+        LongTextTaskState state = cache.get(taskId);
+        if (state != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return state;
+    }
+
+    @Override
+    public synchronized boolean create(LongTextTaskState state) {
+        if (cache.containsKey(state.getTaskId())) {
+            return false;
+        }
+        cache.put(state.getTaskId(), state);
+        return true;
+    }
+
+    @Override
+    public void update(LongTextTaskState state) {
+        cache.put(state.getTaskId(), state);
+    }
+
+    @Override
+    public synchronized boolean tryClaim(String taskId, long expectedLastPollAt, long now) {
+        LongTextTaskState state = cache.get(taskId, false);
+        if (state == null || state.getLastPollAt() != expectedLastPollAt) {
+            return false;
+        }
+        state.setLastPollAt(now);
+        return true;
+    }
+
+    @Override
+    public void evictExpired() {
+        cache.prune();
+    }
+
+    @Override
+    public StoreStats getStats() {
+        return new StoreStats("memory", cache.size(), hits.sum(), misses.sum(), evictions.sum());
+    }
+}
@@ -0,0 +1,127 @@
+package com.interview.tts.service;
+
+import com.interview.tts.entity.LongTextTask;
+import com.interview.tts.repository.LongTextTaskRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于long_text_task表的任务状态存储，负载均衡后的多个实例读到同一份任务状态
+ * 已结束的任务超过ttl后删除，结果仍保存在audio_file中
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "task-state.store", havingValue = "jdbc")
+public class JdbcTaskStateStore implements TaskStateStore {
+
+    private final LongTextTaskRepository repository;
+
+    @Value("${task-state.ttl-ms:600000}")
+    private long ttlMs;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Override
+    public LongTextTaskState get(String taskId) {
+        LongTextTask task = repository.findByTaskId(taskId).orElse(null);
+        if (task == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return toState(task);
+    }
+
+    @Override
+    public boolean create(LongTextTaskState state) {
+        if (repository.findByTaskId(state.getTaskId()).isPresent()) {
+            return false;
+        }
+        try {
+            LongTextTask task = new LongTextTask();
+            copy(state, task);
+            repository.save(task);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // 其他实例已创建
+            return false;
+        }
+    }
+
+    @Override
+    public void update(LongTextTaskState state) {
+        LongTextTask task = repository.findByTaskId(state.getTaskId()).orElseGet(LongTextTask::new);
+        copy(state, task);
+        task.setUpdateTime(LocalDateTime.now());
+        repository.save(task);
+    }
+
+    @Override
+    @Transactional
+    public boolean tryClaim(String taskId, long expectedLastPollAt, long now) {
+        return repository.claim(taskId, expectedLastPollAt, now) > 0;
+    }
+
+    @Override
+    @Transactional
+    public void evictExpired() {
+        int deleted = repository.deleteFinishedBefore(System.currentTimeMillis() - ttlMs);
+        if (deleted > 0) {
+            evictions.add(deleted);
+            log.debug("清理已结束的长文本任务: {}条", deleted);
+        }
+    }
+
+    @Override
+    public StoreStats getStats() {
+        return new StoreStats("jdbc", repository.count(), hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private static void copy(LongTextTaskState state, LongTextTask task) {
+        task.setTaskId(state.getTaskId());
+        task.setUserId(state.getUserId());
+        task.setAudioFileId(state.getAudioFileId());
+        task.setUseEmotion(state.isUseEmotion());
+        task.setStatus(state.getStatus().name());
+        task.setR2Url(state.getR2Url());
+        task.setTempAudioUrl(state.getTempAudioUrl());
+        task.setDuration(state.getDuration());
+        task.setErrorMessage(state.getErrorMessage());
+        task.setQueryCount(state.getQueryCount());
+        task.setSynthesizing(state.isSynthesizing());
+        task.setLastPollAt(state.getLastPollAt());
+        task.setFinishedAt(state.getFinishedAt());
+    }
+
+    private static LongTextTaskState toState(LongTextTask task) {
+        LongTextTaskState state = new LongTextTaskState();
+        state.setTaskId(task.getTaskId());
+        state.setUserId(task.getUserId());
+        state.setAudioFileId(task.getAudioFileId());
+        state.setUseEmotion(Boolean.TRUE.equals(task.getUseEmotion()));
+        state.setStatus(LongTextTaskState.Status.valueOf(task.getStatus()));
+        state.setR2Url(task.getR2Url());
+        state.setTempAudioUrl(task.getTempAudioUrl());
+        state.setDuration(task.getDuration() != null ? task.getDuration() : 0);
+        state.setErrorMessage(task.getErrorMessage());
+        state.setQueryCount(task.getQueryCount() != null ? task.getQueryCount() : 0);
+        state.setSynthesizing(Boolean.TRUE.equals(task.getSynthesizing()));
+        state.setCreatedAt(task.getCreateTime() != null
+                ? task.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0);
+        state.setLastPollAt(task.getLastPollAt() != null ? task.getLastPollAt() : 0);
+        state.setFinishedAt(task.getFinishedAt() != null ? task.getFinishedAt() : 0);
+        return state;
+    }
+}
@@ -2,15 +2,20 @@ package com.interview.tts.service;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.interview.tts.service.upstream.HttpClients;
+import com.interview.tts.service.upstream.UpstreamGateway;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import okio.BufferedSource;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * LLM脚本生成服务 - 用于生成播客对话脚本
@@ -21,24 +26,37 @@ public class LlmScriptService {
 
     private static final String API_URL = "https://ark.cn-beijing.volces.com/api/v3/chat/completions";
 
+    // 提示词模板版本，修改 buildPodcastPrompt 或系统提示词时需要递增，使旧的脚本缓存失效
+    private static final String PROMPT_VERSION = "podcast-v1";
+
     @Value("${doubao.api-key:}")
     private String apiKey;
 
     @Value("${doubao.model-id:doubao-seed-2-0-lite-260215}")
     private String modelId;
 
+    // 对话补全接口地址，可指向本地stub做离线测试
+    @Value("${doubao.chat-url:" + API_URL + "}")
+    private String apiUrl;
+
+    @Value("${doubao.temperature:0.7}")
+    private double temperature;
+
     private final OkHttpClient httpClient;
+    private final ScriptCacheService scriptCacheService;
 
-    public LlmScriptService() {
-        this.httpClient = new OkHttpClient.Builder()
+    public LlmScriptService(UpstreamGateway upstreamGateway, HttpClients httpClients, ScriptCacheService scriptCacheService) {
+        this.scriptCacheService = scriptCacheService;
+        this.httpClient = httpClients.create("llm", builder -> builder
                 .connectTimeout(30, TimeUnit.SECONDS)
                 .readTimeout(60, TimeUnit.SECONDS)
                 .writeTimeout(30, TimeUnit.SECONDS)
-                .build();
+                .addInterceptor(upstreamGateway.interceptor("llm")));
     }
 
     /**
      * 将文本改写为双人对谈播客脚本
+     * 相同原文优先使用脚本缓存，并发的相同请求只调用一次LLM
      * @param sourceText 原始文本
      * @return 对话脚本内容
      */
@@ -49,14 +67,93 @@ public class LlmScriptService {
         }
 
         String prompt = buildPodcastPrompt(sourceText);
+        String script = scriptCacheService.getOrLoad(cacheKey(sourceText), () -> {
+            try {
+                return parseScriptFromResponse(callLlmApi(prompt));
+            } catch (Exception e) {
+                log.error("LLM脚本生成失败: {}", e.getMessage(), e);
+                return null;
+            }
+        });
+        // 降级脚本不写入缓存
+        return script != null ? script : generateDefaultScript(sourceText);
+    }
+
+    /**
+     * 流式生成播客脚本，每生成完一行（按换行切分）立即交给lineSink，脚本生成和逐句合成可以重叠
+     * 尚未输出任何一行时失败则退回默认脚本；已输出部分行后失败抛出异常，由调用方整体重试
+     * 命中脚本缓存，或合并到进行中的相同请求时，拿到完整脚本后一次性按行输出
+     * @param lineSink 接收去掉首尾空白的非空行，在读取响应的线程中调用
+     * @return 完整脚本内容
+     */
+    public String generatePodcastScriptStreaming(String sourceText, Consumer<String> lineSink) throws IOException {
+        if (apiKey == null || apiKey.isEmpty()) {
+            log.warn("豆包API未配置，使用默认脚本格式");
+            return emitLines(generateDefaultScript(sourceText), lineSink);
+        }
 
+        LineSplitter splitter = new LineSplitter(lineSink);
+        String script;
         try {
-            String response = callLlmApi(prompt);
-            return parseScriptFromResponse(response);
-        } catch (Exception e) {
-            log.error("LLM脚本生成失败: {}", e.getMessage(), e);
-            return generateDefaultScript(sourceText);
+            script = scriptCacheService.getOrLoad(cacheKey(sourceText), () -> {
+                try {
+                    return streamFromLlm(sourceText, splitter);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (splitter.getEmitted() > 0) {
+            return script;
+        }
+        // 脚本来自缓存或其他请求；或LLM在输出第一行之前失败，退回默认脚本
+        return emitLines(script != null ? script : generateDefaultScript(sourceText), lineSink);
+    }
+
+    /**
+     * @return 完整脚本；输出第一行之前失败返回null
+     */
+    private String streamFromLlm(String sourceText, LineSplitter splitter) throws IOException {
+        long startTime = System.currentTimeMillis();
+        try (Response response = httpClient.newCall(buildRequest(buildPodcastPrompt(sourceText), true)).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("LLM API请求失败: " + response.code());
+            }
+            BufferedSource source = response.body().source();
+            String event;
+            while ((event = source.readUtf8Line()) != null) {
+                // SSE: 每个事件为 "data: {json}"，以 "data: [DONE]" 结束
+                if (!event.startsWith("data:")) {
+                    continue;
+                }
+                String data = event.substring(5).trim();
+                if ("[DONE]".equals(data)) {
+                    break;
+                }
+                splitter.append(parseDelta(data));
+            }
+        } catch (IOException | RuntimeException e) {
+            if (splitter.getEmitted() > 0) {
+                throw e;
+            }
+            log.error("LLM流式脚本生成失败: {}", e.getMessage(), e);
+            return null;
         }
+        splitter.flush();
+        log.info("LLM流式脚本生成完成: lines={}, 首行{}ms, 总耗时{}ms", splitter.getEmitted(),
+                splitter.getFirstLineAt() - startTime, System.currentTimeMillis() - startTime);
+        return splitter.getEmitted() > 0 ? splitter.getScript() : null;
+    }
+
+    private static String emitLines(String script, Consumer<String> lineSink) {
+        script.lines().map(String::trim).filter(line -> !line.isEmpty()).forEach(lineSink);
+        return script;
+    }
+
+    private ScriptCacheService.ScriptKey cacheKey(String sourceText) {
+        return scriptCacheService.buildKey(sourceText, PROMPT_VERSION, modelId, temperature);
     }
 
     private String buildPodcastPrompt(String sourceText) {
@@ -78,6 +175,17 @@ public class LlmScriptService {
     }
 
     private String callLlmApi(String prompt) throws IOException {
+        try (Response response = httpClient.newCall(buildRequest(prompt, false)).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("LLM API请求失败: " + response.code());
+            }
+
+            String responseBody = response.body() != null ? response.body().string() : "";
+            return responseBody;
+        }
+    }
+
+    private Request buildRequest(String prompt, boolean stream) {
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("model", modelId);
 
@@ -93,28 +201,36 @@ public class LlmScriptService {
         messages.add(userMsg);
 
         requestBody.put("messages", messages);
-        requestBody.put("temperature", 0.7);
+        requestBody.put("temperature", temperature);
+        if (stream) {
+            requestBody.put("stream", true);
+        }
 
         RequestBody body = RequestBody.create(
                 JSON.toJSONString(requestBody),
                 MediaType.get("application/json; charset=utf-8")
         );
 
-        Request request = new Request.Builder()
-                .url(API_URL)
+        return new Request.Builder()
+                .url(apiUrl)
                 .header("Authorization", "Bearer " + apiKey)
                 .header("Content-Type", "application/json")
+                .header("Accept", stream ? "text/event-stream" : "application/json")
                 .post(body)
                 .build();
+    }
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("LLM API请求失败: " + response.code());
-            }
-
-            String responseBody = response.body() != null ? response.body().string() : "";
-            return responseBody;
+    /**
+     * 取流式响应事件中的增量文本 choices[0].delta.content
+     */
+    private String parseDelta(String data) {
+        JSONObject json = JSON.parseObject(data);
+        var choices = json.getJSONArray("choices");
+        if (choices == null || choices.isEmpty()) {
+            return null;
         }
+        JSONObject delta = choices.getJSONObject(0).getJSONObject("delta");
+        return delta != null ? delta.getString("content") : null;
     }
 
     private String parseScriptFromResponse(String responseBody) {
@@ -159,6 +275,60 @@ public class LlmScriptService {
         return script.toString();
     }
 
+    /**
+     * 把增量文本拼成完整行，遇到换行即输出
+     */
+    private static class LineSplitter {
+        private final Consumer<String> lineSink;
+        private final StringBuilder script = new StringBuilder();
+        private final StringBuilder line = new StringBuilder();
+        private int emitted;
+        private long firstLineAt;
+
+        LineSplitter(Consumer<String> lineSink) {
+            this.lineSink = lineSink;
+        }
+
+        void append(String delta) {
+            if (delta == null || delta.isEmpty()) {
+                return;
+            }
+            script.append(delta);
+            for (int i = 0; i < delta.length(); i++) {
+                char c = delta.charAt(i);
+                if (c == '\n') {
+                    flush();
+                } else {
+                    line.append(c);
+                }
+            }
+        }
+
+        void flush() {
+            String text = line.toString().trim();
+            line.setLength(0);
+            if (text.isEmpty()) {
+                return;
+            }
+            if (emitted++ == 0) {
+                firstLineAt = System.currentTimeMillis();
+            }
+            lineSink.accept(text);
+        }
+
+        int getEmitted() {
+            return emitted;
+        }
+
+        long getFirstLineAt() {
+            return firstLineAt;
+        }
+
+        String getScript() {
+            return script.toString();
+        }
+    }
+
     @Data
     public static class PodcastScript {
         private String speakerA;
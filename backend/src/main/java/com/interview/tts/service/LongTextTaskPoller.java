@@ -0,0 +1,384 @@
+package com.interview.tts.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.interview.tts.dto.TaskEvent;
+import com.interview.tts.entity.AudioFile;
+import com.interview.tts.entity.SynthesisJob;
+import com.interview.tts.entity.TextRecord;
+import com.interview.tts.repository.AudioFileRepository;
+import com.interview.tts.repository.TextRecordRepository;
+import com.interview.tts.service.job.JobHandler;
+import com.interview.tts.service.job.JobQueue;
+import com.interview.tts.service.upstream.HttpClients;
+import com.interview.tts.util.Mp3FrameCounter;
+import com.interview.tts.util.ResumableDownload;
+import com.interview.tts.websocket.TaskEventPublisher;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 长文本异步任务后台轮询
+ * 每个任务只有一个轮询者，按退避间隔查询上游，完成后提交long-text-persist任务由任务队列下载并持久化音频；
+ * 前端查询状态只读任务状态存储(TaskStateStore)，不再触发上游查询；状态变化同时通过STOMP推送给任务所属用户
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LongTextTaskPoller implements JobHandler {
+
+    public static final String PERSIST_JOB_TYPE = "long-text-persist";
+
+    private final DouyinTtsService ttsService;
+    private final StorageService storageService;
+    private final AudioFileRepository audioFileRepository;
+    private final TextRecordRepository textRecordRepository;
+    private final TaskEventPublisher taskEventPublisher;
+    private final TaskStateStore taskStateStore;
+    private final HttpClients httpClients;
+    private final JobQueue jobQueue;
+
+    private static final String TASK_TYPE = "long-text";
+
+    @Value("${volcengine.tts.long-text.initial-delay-ms:3000}")
+    private long initialDelayMs;
+
+    @Value("${volcengine.tts.long-text.max-delay-ms:30000}")
+    private long maxDelayMs;
+
+    @Value("${volcengine.tts.long-text.backoff-multiplier:1.5}")
+    private double backoffMultiplier;
+
+    @Value("${volcengine.tts.long-text.max-wait-ms:1800000}")
+    private long maxWaitMs;
+
+    // 下载中断时断点续传的次数
+    @Value("${volcengine.tts.long-text.download-max-retries:3}")
+    private int downloadMaxRetries;
+
+    // 用于下载音频，readTimeout为单次读取的间隔
+    private OkHttpClient httpClient;
+
+    // 本实例正在轮询的任务
+    private final Set<String> polling = ConcurrentHashMap.newKeySet();
+    private final AtomicLong upstreamQueries = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        httpClient = httpClients.create("download", builder -> builder
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS));
+
+        AtomicInteger index = new AtomicInteger();
+        scheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "longtext-poller-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 已结束的任务保留一段时间供前端读取，之后从audio_file读
+        scheduler.scheduleWithFixedDelay(this::evictExpired, 60, 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 登记任务并开始后台轮询，同一任务重复登记只保留第一个
+     */
+    public LongTextTaskState track(Long userId, Long audioFileId, String taskId, boolean useEmotion) {
+        LongTextTaskState state = new LongTextTaskState();
+        state.setTaskId(taskId);
+        state.setUserId(userId);
+        state.setAudioFileId(audioFileId);
+        state.setUseEmotion(useEmotion);
+        state.setCreatedAt(System.currentTimeMillis());
+        state.setLastPollAt(state.getCreatedAt());
+
+        // 本实例正在轮询（状态已被容量淘汰，下次轮询时会重新写入）
+        if (polling.contains(taskId)) {
+            return state;
+        }
+        if (!taskStateStore.create(state)) {
+            LongTextTaskState existing = taskStateStore.get(taskId);
+            return existing != null ? existing : state;
+        }
+        log.info("长文本任务开始后台轮询: taskId={}, audioFileId={}", taskId, audioFileId);
+        publish(state, TaskEvent.Stage.QUEUED);
+        polling.add(taskId);
+        schedule(state, initialDelayMs);
+        return state;
+    }
+
+    /**
+     * 读取任务状态，不访问上游
+     * 处理中的任务长时间没有被轮询（所在实例已下线）时由本实例接管
+     */
+    public LongTextTaskState get(String taskId) {
+        LongTextTaskState state = taskStateStore.get(taskId);
+        if (state != null && state.getStatus() == LongTextTaskState.Status.PENDING && !polling.contains(taskId)) {
+            long now = System.currentTimeMillis();
+            if (now - state.getLastPollAt() > maxDelayMs * 3 && taskStateStore.tryClaim(taskId, state.getLastPollAt(), now)) {
+                log.info("接管无人轮询的长文本任务: taskId={}", taskId);
+                state.setLastPollAt(now);
+                polling.add(taskId);
+                schedule(state, 0);
+            }
+        }
+        return state;
+    }
+
+    public PollerStats getStats() {
+        return new PollerStats(polling.size(), upstreamQueries.get(), taskStateStore.getStats());
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class PollerStats {
+        private int polling;
+        private long upstreamQueries;
+        private TaskStateStore.StoreStats store;
+    }
+
+    private void schedule(LongTextTaskState state, long delayMs) {
+        try {
+            scheduler.schedule(() -> poll(state, Math.max(delayMs, initialDelayMs)), delayMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            polling.remove(state.getTaskId());
+            // 应用关闭中
+            log.warn("长文本任务调度失败: taskId={}, {}", state.getTaskId(), e.getMessage());
+        }
+    }
+
+    private void poll(LongTextTaskState state, long lastDelayMs) {
+        long nextDelayMs = Math.min(maxDelayMs, (long) (lastDelayMs * backoffMultiplier));
+        try {
+            state.setQueryCount(state.getQueryCount() + 1);
+            state.setLastPollAt(System.currentTimeMillis());
+            upstreamQueries.incrementAndGet();
+            DouyinTtsService.AsyncTaskResult result = ttsService.queryLongTextTask(state.getTaskId(), state.isUseEmotion());
+
+            if (result.getTaskStatus() == 1 && result.getAudioUrl() != null) {
+                submitPersist(state, result.getAudioUrl());
+                return;
+            }
+            if (result.getTaskStatus() == 2) {
+                log.error("❌ 长文本任务合成失败: taskId={}, {}", state.getTaskId(), result.getErrorMessage());
+                finish(state, LongTextTaskState.Status.FAILED, result.getErrorMessage());
+                return;
+            }
+            if (!state.isSynthesizing()) {
+                state.setSynthesizing(true);
+                publish(state, TaskEvent.Stage.SYNTHESIZING);
+            }
+        } catch (Exception e) {
+            // 查询异常按退避继续重试，直到超时
+            log.warn("长文本任务查询异常: taskId={}, {}", state.getTaskId(), e.getMessage());
+        }
+        saveState(state);
+
+        if (System.currentTimeMillis() - state.getCreatedAt() + nextDelayMs > maxWaitMs) {
+            log.error("❌ 长文本任务超时: taskId={}, 查询{}次", state.getTaskId(), state.getQueryCount());
+            finish(state, LongTextTaskState.Status.FAILED, "任务超时");
+            return;
+        }
+        log.debug("⏳ 长文本任务处理中: taskId={}, {}ms后再查询", state.getTaskId(), nextDelayMs);
+        schedule(state, nextDelayMs);
+    }
+
+    /**
+     * 下载和上传可能持续数分钟，提交为持久化任务由任务队列的工作线程执行，轮询线程继续服务其他任务；
+     * 任务落库后实例重启或下线也不会丢失，由任意实例按租约继续执行
+     */
+    private void submitPersist(LongTextTaskState state, String tempAudioUrl) {
+        JSONObject payload = new JSONObject();
+        payload.put("taskId", state.getTaskId());
+        payload.put("tempAudioUrl", tempAudioUrl);
+        jobQueue.enqueue(PERSIST_JOB_TYPE, payload);
+
+        state.setTempAudioUrl(tempAudioUrl);
+        state.setStatus(LongTextTaskState.Status.PERSISTING);
+        polling.remove(state.getTaskId());
+        saveState(state);
+        publish(state, TaskEvent.Stage.PERSISTING);
+    }
+
+    @Override
+    public String type() {
+        return PERSIST_JOB_TYPE;
+    }
+
+    /**
+     * 下载火山引擎的临时音频，上传到存储并更新数据库
+     * 失败时抛出异常由任务队列退避重试（断点续传之外的整体重试）；最后一次执行仍失败则降级为临时URL
+     */
+    @Override
+    public void handle(SynthesisJob job) throws Exception {
+        JSONObject payload = JSON.parseObject(job.getPayload());
+        String taskId = payload.getString("taskId");
+        String tempAudioUrl = payload.getString("tempAudioUrl");
+        LongTextTaskState state = taskStateStore.get(taskId);
+        // 已被上一次执行完成，或状态已过期清理
+        if (state == null || isFinished(state)) {
+            return;
+        }
+        state.setTempAudioUrl(tempAudioUrl);
+
+        AudioFile audioFile = audioFileRepository.findById(state.getAudioFileId()).orElse(null);
+        try {
+            log.info("📥 长文本任务完成，下载临时音频: taskId={}, 第{}次", taskId, job.getAttempts());
+            // 边下载边上传，内存占用不超过一个上传分片
+            Mp3FrameCounter counter = new Mp3FrameCounter();
+            String r2Url;
+            try (ResumableDownload download = new ResumableDownload(httpClient, tempAudioUrl, downloadMaxRetries);
+                 InputStream input = new FrameCountingInputStream(download, counter)) {
+                r2Url = storageService.uploadAudioStream(input, "audio/mpeg");
+                log.info("长文本音频传输完成: taskId={}, {} bytes", taskId, download.getPosition());
+            }
+            int duration = estimateDuration(counter, audioFile);
+
+            if (audioFile != null) {
+                audioFile.setR2Url(r2Url);
+                audioFile.setDuration(duration);
+                audioFileRepository.save(audioFile);
+            }
+            state.setR2Url(r2Url);
+            state.setDuration(duration);
+            log.info("✅ 长文本音频持久化完成: taskId={}, url={}, 查询{}次", taskId, r2Url, state.getQueryCount());
+            finish(state, LongTextTaskState.Status.COMPLETED, null);
+        } catch (Exception e) {
+            if (job.getAttempts() < job.getMaxAttempts()) {
+                throw e;
+            }
+            log.error("❌ 长文本音频持久化失败: taskId={}, {}", taskId, e.getMessage(), e);
+            degrade(state, audioFile, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onDeadLetter(SynthesisJob job, Throwable lastError) {
+        LongTextTaskState state = taskStateStore.get(JSON.parseObject(job.getPayload()).getString("taskId"));
+        if (state != null && !isFinished(state)) {
+            state.setTempAudioUrl(JSON.parseObject(job.getPayload()).getString("tempAudioUrl"));
+            degrade(state, audioFileRepository.findById(state.getAudioFileId()).orElse(null), lastError.getMessage());
+        }
+    }
+
+    /**
+     * 保存失败状态，前端降级播放临时URL
+     */
+    private void degrade(LongTextTaskState state, AudioFile audioFile, String errorMessage) {
+        if (audioFile != null) {
+            try {
+                audioFile.setDownloadFailed(true);
+                audioFile.setTempAudioUrl(state.getTempAudioUrl());
+                audioFileRepository.save(audioFile);
+            } catch (Exception saveErr) {
+                log.error("保存失败状态失败: {}", saveErr.getMessage());
+            }
+        }
+        finish(state, LongTextTaskState.Status.DEGRADED, errorMessage);
+    }
+
+    private static boolean isFinished(LongTextTaskState state) {
+        return state.getStatus() != LongTextTaskState.Status.PENDING
+                && state.getStatus() != LongTextTaskState.Status.PERSISTING;
+    }
+
+    private void finish(LongTextTaskState state, LongTextTaskState.Status status, String errorMessage) {
+        state.setErrorMessage(errorMessage);
+        state.setFinishedAt(System.currentTimeMillis());
+        state.setStatus(status);
+        polling.remove(state.getTaskId());
+        saveState(state);
+        publish(state, status == LongTextTaskState.Status.FAILED ? TaskEvent.Stage.FAILED : TaskEvent.Stage.DONE);
+    }
+
+    private void publish(LongTextTaskState state, TaskEvent.Stage stage) {
+        TaskEvent event = TaskEvent.of(TASK_TYPE, state.getTaskId(), state.getAudioFileId(), stage);
+        if (stage == TaskEvent.Stage.DONE) {
+            event.setR2Url(state.getR2Url());
+            event.setDuration(state.getDuration());
+            if (state.getStatus() == LongTextTaskState.Status.DEGRADED) {
+                event.setAudioUrl(state.getTempAudioUrl());
+            }
+        }
+        event.setMessage(state.getErrorMessage());
+        taskEventPublisher.publish(state.getUserId(), event);
+    }
+
+    private void saveState(LongTextTaskState state) {
+        try {
+            taskStateStore.update(state);
+        } catch (Exception e) {
+            log.warn("长文本任务状态保存失败: taskId={}, {}", state.getTaskId(), e.getMessage());
+        }
+    }
+
+    private void evictExpired() {
+        try {
+            taskStateStore.evictExpired();
+        } catch (Exception e) {
+            log.warn("清理长文本任务状态失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按MP3帧计算时长，解析不到帧时按文本长度粗略估算（平均每秒15个字符）
+     */
+    private int estimateDuration(Mp3FrameCounter counter, AudioFile audioFile) {
+        if (counter.getFrames() > 0) {
+            return (int) Math.max(1, Math.round(counter.getDurationMs() / 1000.0));
+        }
+        if (audioFile != null && audioFile.getTextRecordId() != null) {
+            TextRecord textRecord = textRecordRepository.findById(audioFile.getTextRecordId()).orElse(null);
+            if (textRecord != null) {
+                return textRecord.getRawText().length() / 15;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 读取时顺带解析MP3帧，上传完成即得到时长
+     */
+    private static class FrameCountingInputStream extends FilterInputStream {
+
+        private final Mp3FrameCounter counter;
+
+        FrameCountingInputStream(InputStream in, Mp3FrameCounter counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                counter.feed(ByteBuffer.wrap(buffer, offset, n));
+            }
+            return n;
+        }
+    }
+}
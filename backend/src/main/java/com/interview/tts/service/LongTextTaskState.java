@@ -0,0 +1,34 @@
+package com.interview.tts.service;
+
+import lombok.Data;
+
+/**
+ * 长文本异步任务状态
+ */
+@Data
+public class LongTextTaskState {
+
+    public enum Status {
+        PENDING,   // 合成中
+        PERSISTING, // 上游合成完成，long-text-persist任务下载/上传中
+        COMPLETED, // 已持久化到存储
+        DEGRADED,  // 上游合成成功但下载/上传失败，只有临时URL
+        FAILED     // 合成失败或超时
+    }
+
+    private String taskId;
+    private Long userId;
+    private Long audioFileId;
+    private boolean useEmotion;
+    private volatile Status status = Status.PENDING;
+    private volatile String r2Url;
+    private volatile String tempAudioUrl;
+    private volatile int duration;
+    private volatile String errorMessage;
+    private volatile int queryCount;
+    private volatile boolean synthesizing;
+    private long createdAt;
+    // 最近一次轮询时间，多实例时用于发现无人轮询的任务
+    private volatile long lastPollAt;
+    private volatile long finishedAt;
+}
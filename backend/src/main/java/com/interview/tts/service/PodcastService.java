@@ -1,43 +1,119 @@
 package com.interview.tts.service;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
 import com.interview.tts.dto.PodcastGenerateRequest;
 import com.interview.tts.dto.PodcastGenerateResponse;
 import com.interview.tts.entity.Podcast;
+import com.interview.tts.entity.PodcastSegment;
+import com.interview.tts.entity.SynthesisJob;
 import com.interview.tts.entity.SysUser;
+import com.interview.tts.exception.BusinessException;
 import com.interview.tts.repository.PodcastRepository;
+import com.interview.tts.repository.PodcastSegmentRepository;
+import com.interview.tts.service.job.JobHandler;
+import com.interview.tts.service.job.JobQueue;
+import com.interview.tts.service.tts.TtsRouter;
+import com.interview.tts.util.Mp3Assembler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 播客生成服务
- * 1. 调用LLM将文本改写为双人对谈脚本
- * 2. 分别用两个不同音色合成语音
- * 3. 混合双声道音频
+ * 提交后立即返回，生成在持久化任务队列中分阶段执行，每个阶段的结果落库，重试时从断点继续：
+ * 1. 调用LLM将文本改写为双人对谈脚本（保存到podcast.script_content），流式生成时每生成完一句立即进入第2步
+ * 2. 拆分为句子（podcast_segment），各句并行合成，每句合成完即保存音频
+ * 3. 按脚本顺序逐帧拼接为一个MP3（主播切换处插入停顿），写入Xing头和逐句时间索引
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class PodcastService {
+public class PodcastService implements JobHandler {
+
+    public static final String JOB_TYPE = "podcast";
 
     private final LlmScriptService llmScriptService;
-    private final DouyinTtsService ttsService;
+    private final TtsRouter ttsRouter;
     private final StorageService storageService;
     private final UserService userService;
     private final PodcastRepository podcastRepository;
+    private final PodcastSegmentRepository segmentRepository;
+    private final JobQueue jobQueue;
 
-    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    /**
+     * 所有播客共用的合成线程数
+     */
+    @Value("${podcast.synthesis.parallelism:8}")
+    private int parallelism;
+
+    /**
+     * 单个播客同时合成的句数，避免一个长脚本占满全部线程
+     */
+    @Value("${podcast.synthesis.per-podcast:4}")
+    private int perPodcastConcurrency;
+
+    /**
+     * 主播切换时插入的停顿
+     */
+    @Value("${podcast.assembly.speaker-gap-ms:400}")
+    private long speakerGapMs;
 
+    /**
+     * 同一主播连续两句之间的停顿
+     */
+    @Value("${podcast.assembly.line-gap-ms:150}")
+    private long lineGapMs;
+
+    /**
+     * 流式生成脚本，每生成完一句立即开始合成
+     */
+    @Value("${podcast.streaming-script:true}")
+    private boolean streamingScript;
+
+    private ExecutorService lineExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        lineExecutor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "podcast-line-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lineExecutor.shutdownNow();
+    }
+
+    /**
+     * 创建播客并提交生成任务，立即返回播客ID，通过详情和进度接口查询结果
+     */
     @Transactional
     public PodcastGenerateResponse generate(String userKey, PodcastGenerateRequest request) {
         // 1. 校验用户
@@ -53,76 +129,383 @@ public class PodcastService {
         podcast.setSourceText(request.getSourceText());
         podcast.setVoiceA(request.getVoiceA());
         podcast.setVoiceB(request.getVoiceB());
-        podcast.setStatus(Podcast.PodcastStatus.PROCESSING);
+        podcast.setStatus(Podcast.PodcastStatus.PENDING);
         podcast.setCreateTime(LocalDateTime.now());
         podcast = podcastRepository.save(podcast);
 
-        try {
-            // 3. 生成对话脚本
-            log.info("开始生成播客脚本，podcastId={}", podcast.getId());
-            String scriptContent = llmScriptService.generatePodcastScript(request.getSourceText());
-            podcast.setScriptContent(scriptContent);
+        // 3. 提交异步任务（与播客记录同一事务落库）
+        JSONObject payload = new JSONObject();
+        payload.put("podcastId", podcast.getId());
+        jobQueue.enqueue(JOB_TYPE, payload);
+
+        return new PodcastGenerateResponse(
+                podcast.getId(),
+                podcast.getStatus().name(),
+                null,
+                null,
+                null,
+                "播客已提交，正在生成"
+        );
+    }
+
+    @Override
+    public String type() {
+        return JOB_TYPE;
+    }
 
-            // 4. 解析脚本，分别合成语音
-            List<byte[]> audioParts = synthesizeDialogues(scriptContent, request.getVoiceA(), request.getVoiceB());
+    /**
+     * 执行生成任务，已完成的阶段和已合成的句子直接复用
+     * 有句子合成失败时抛出异常由任务队列退避重试（只重新合成失败的句子）；最后一次执行时跳过失败的句子完成拼接
+     */
+    @Override
+    public void handle(SynthesisJob job) throws Exception {
+        Long podcastId = JSON.parseObject(job.getPayload()).getLong("podcastId");
+        Podcast podcast = podcastRepository.findById(podcastId).orElse(null);
+        if (podcast == null
+                || podcast.getStatus() == Podcast.PodcastStatus.COMPLETED
+                || podcast.getStatus() == Podcast.PodcastStatus.FAILED) {
+            return;
+        }
+        podcast.setStatus(Podcast.PodcastStatus.PROCESSING);
+        podcast.setUpdateTime(LocalDateTime.now());
+        podcast = podcastRepository.save(podcast);
 
-            // 5. 混合音频
-            byte[] mixedAudio = mixAudio(audioParts);
+        int failed;
+        if (podcast.getScriptContent() == null && streamingScript) {
+            // 1+2. 边生成脚本边合成
+            failed = streamScriptAndSynthesize(podcast);
+        } else {
+            // 1. 生成对话脚本
+            if (podcast.getScriptContent() == null) {
+                log.info("开始生成播客脚本，podcastId={}", podcastId);
+                podcast.setScriptContent(llmScriptService.generatePodcastScript(podcast.getSourceText()));
+                podcast.setUpdateTime(LocalDateTime.now());
+                podcast = podcastRepository.save(podcast);
+            }
 
-            // 6. 上传存储
-            String audioUrl = storageService.uploadAudio(mixedAudio, "podcast_" + podcast.getId());
+            // 2. 拆分句子并合成
+            if (segmentRepository.countByPodcastId(podcastId) == 0) {
+                ScriptLineParser parser = new ScriptLineParser(podcast);
+                List<PodcastSegment> segments = new ArrayList<>();
+                for (String line : podcast.getScriptContent().split("\n")) {
+                    PodcastSegment segment = parser.parse(line);
+                    if (segment != null) {
+                        segments.add(segment);
+                    }
+                }
+                segmentRepository.saveAll(segments);
+            }
+            failed = synthesizeSegments(podcastId);
+        }
+        if (failed > 0 && job.getAttempts() < job.getMaxAttempts()) {
+            throw new IllegalStateException(failed + "句语音合成失败");
+        }
 
-            // 7. 估算时长
-            int duration = storageService.estimateDuration(mixedAudio);
+        // 3. 拼接、上传
+        assemble(podcast);
+    }
 
-            // 8. 更新记录
-            podcast.setAudioUrl(audioUrl);
-            podcast.setDuration(duration);
-            podcast.setStatus(Podcast.PodcastStatus.COMPLETED);
+    @Override
+    public void onDeadLetter(SynthesisJob job, Throwable lastError) {
+        Long podcastId = JSON.parseObject(job.getPayload()).getLong("podcastId");
+        podcastRepository.findById(podcastId).ifPresent(podcast -> {
+            podcast.setStatus(Podcast.PodcastStatus.FAILED);
+            podcast.setErrorMessage(lastError.getMessage());
             podcast.setUpdateTime(LocalDateTime.now());
             podcastRepository.save(podcast);
+        });
+    }
 
-            log.info("播客生成完成，podcastId={}, duration={}", podcast.getId(), duration);
+    /**
+     * 流式生成脚本，每解析出一句就保存并提交合成，脚本生成完后保存完整脚本
+     * 上次在脚本生成完之前中断时，已拆出的句子无法与新生成的脚本对应，先全部删除
+     * @return 本轮失败的句数
+     */
+    private int streamScriptAndSynthesize(Podcast podcast) throws IOException {
+        Long podcastId = podcast.getId();
+        segmentRepository.deleteByPodcastId(podcastId);
+        log.info("开始流式生成播客脚本，podcastId={}", podcastId);
+        long startTime = System.currentTimeMillis();
 
-            return new PodcastGenerateResponse(
-                    podcast.getId(),
-                    "COMPLETED",
-                    audioUrl,
-                    duration,
-                    scriptContent,
-                    "播客生成成功"
-            );
+        ScriptLineParser parser = new ScriptLineParser(podcast);
+        SynthesisBatch batch = new SynthesisBatch();
+        String script;
+        try {
+            script = llmScriptService.generatePodcastScriptStreaming(podcast.getSourceText(), line -> {
+                PodcastSegment segment = parser.parse(line);
+                if (segment == null) {
+                    return;
+                }
+                if (batch.size() == 0) {
+                    log.info("首句脚本已生成，开始合成，podcastId={}, 耗时{}ms", podcastId, System.currentTimeMillis() - startTime);
+                }
+                batch.submit(segmentRepository.save(segment).getId());
+            });
+        } catch (IOException | RuntimeException e) {
+            batch.cancel();
+            throw e;
+        }
+
+        podcast.setScriptContent(script);
+        podcast.setUpdateTime(LocalDateTime.now());
+        podcastRepository.save(podcast);
+
+        int failed = batch.await();
+        log.info("播客脚本与语音合成完成，podcastId={}, lines={}, failed={}, cost={}ms", podcastId, batch.size(),
+                failed, System.currentTimeMillis() - startTime);
+        return failed;
+    }
 
+    /**
+     * 合成所有未完成的句子
+     * @return 本轮失败的句数
+     */
+    private int synthesizeSegments(Long podcastId) {
+        List<Long> segmentIds = segmentRepository.findUnfinishedIds(podcastId);
+        if (segmentIds.isEmpty()) {
+            return 0;
+        }
+        log.info("开始合成播客语音，podcastId={}, lines={}", podcastId, segmentIds.size());
+        long startTime = System.currentTimeMillis();
+
+        SynthesisBatch batch = new SynthesisBatch();
+        for (Long segmentId : segmentIds) {
+            batch.submit(segmentId);
+        }
+        int failed = batch.await();
+        log.info("播客语音合成完成，podcastId={}, lines={}, failed={}, cost={}ms", podcastId, segmentIds.size(),
+                failed, System.currentTimeMillis() - startTime);
+        return failed;
+    }
+
+    private boolean synthesizeSegment(Long segmentId) {
+        PodcastSegment segment = segmentRepository.findById(segmentId).orElse(null);
+        if (segment == null) {
+            return true;
+        }
+        segment.setAttempts(segment.getAttempts() + 1);
+        segment.setUpdateTime(LocalDateTime.now());
+        try {
+            segment.setAudioData(ttsRouter.generateAudio(segment.getContent(), segment.getVoice()));
+            segment.setStatus(PodcastSegment.SegmentStatus.COMPLETED);
+            segment.setErrorMessage(null);
+            segmentRepository.save(segment);
+            return true;
         } catch (Exception e) {
-            log.error("播客生成失败: {}", e.getMessage(), e);
-            podcast.setStatus(Podcast.PodcastStatus.FAILED);
-            podcast.setErrorMessage(e.getMessage());
-            podcast.setUpdateTime(LocalDateTime.now());
-            podcastRepository.save(podcast);
+            log.warn("语音合成失败: podcastId={}, line={}, error={}", segment.getPodcastId(), segment.getLineIndex(), e.getMessage());
+            segment.setStatus(PodcastSegment.SegmentStatus.FAILED);
+            segment.setErrorMessage(e.getMessage());
+            segmentRepository.save(segment);
+            return false;
+        }
+    }
 
-            return new PodcastGenerateResponse(
-                    podcast.getId(),
-                    "FAILED",
-                    null,
-                    null,
-                    null,
-                    "播客生成失败: " + e.getMessage()
-            );
+    /**
+     * 按脚本顺序逐句读取已合成的音频写入assembler，上传后更新播客记录
+     */
+    private void assemble(Podcast podcast) throws IOException {
+        List<Long> segmentIds = segmentRepository.findIdsByStatus(podcast.getId(), PodcastSegment.SegmentStatus.COMPLETED);
+        if (segmentIds.isEmpty()) {
+            throw BusinessException.ttsFailed();
         }
+
+        Path audioFile = Files.createTempFile("podcast_" + podcast.getId() + "_", ".mp3");
+        String audioUrl;
+        int duration;
+        List<LineMark> timeIndex = new ArrayList<>(segmentIds.size());
+        try {
+            try (Mp3Assembler assembler = new Mp3Assembler(audioFile)) {
+                List<PodcastSegment> assembled = new ArrayList<>(segmentIds.size());
+                String lastSpeaker = null;
+                for (Long segmentId : segmentIds) {
+                    PodcastSegment segment = segmentRepository.findById(segmentId).orElseThrow();
+                    if (lastSpeaker != null) {
+                        assembler.appendSilence(lastSpeaker.equals(segment.getSpeaker()) ? lineGapMs : speakerGapMs);
+                    }
+                    assembler.append(segment.getAudioData());
+                    lastSpeaker = segment.getSpeaker();
+                    segment.setAudioData(null);
+                    assembled.add(segment);
+                }
+                Mp3Assembler.Result result = assembler.finish();
+                duration = (int) Math.max(1, Math.round(result.getDurationMs() / 1000.0));
+                for (int i = 0; i < assembled.size(); i++) {
+                    Mp3Assembler.Mark mark = result.getMarks().get(i);
+                    timeIndex.add(new LineMark(assembled.get(i).getLineIndex(), assembled.get(i).getSpeaker(),
+                            mark.getStartMs(), mark.getOffset()));
+                }
+            }
+
+            try (InputStream input = Files.newInputStream(audioFile)) {
+                audioUrl = storageService.uploadAudioStream(input, "audio/mpeg");
+            }
+        } finally {
+            Files.deleteIfExists(audioFile);
+        }
+
+        podcast.setAudioUrl(audioUrl);
+        podcast.setDuration(duration);
+        podcast.setTimeIndex(JSON.toJSONString(timeIndex));
+        podcast.setStatus(Podcast.PodcastStatus.COMPLETED);
+        podcast.setErrorMessage(null);
+        podcast.setUpdateTime(LocalDateTime.now());
+        podcastRepository.save(podcast);
+        log.info("播客生成完成，podcastId={}, lines={}, duration={}", podcast.getId(), segmentIds.size(), duration);
+    }
+
+    public List<Podcast> getUserPodcasts(String userKey) {
+        SysUser user = userService.getUserByKey(userKey);
+        if (user == null) {
+            return List.of();
+        }
+        return podcastRepository.findByUserIdOrderByCreateTimeDesc(user.getId());
+    }
+
+    public Podcast getPodcast(Long podcastId) {
+        return podcastRepository.findById(podcastId).orElse(null);
     }
 
     /**
-     * 解析脚本并分别合成语音
+     * 已合成完成的单句音频，播客整体完成前即可试听，未完成时返回null
      */
-    private List<byte[]> synthesizeDialogues(String script, String voiceA, String voiceB) {
-        List<byte[]> audioParts = new ArrayList<>();
+    public byte[] getLineAudio(Long podcastId, int lineIndex) {
+        PodcastSegment segment = segmentRepository.findByPodcastIdAndLineIndex(podcastId, lineIndex);
+        if (segment == null || segment.getStatus() != PodcastSegment.SegmentStatus.COMPLETED) {
+            return null;
+        }
+        return segment.getAudioData();
+    }
+
+    /**
+     * 生成进度，从分句表统计，多实例部署时任意实例都能查询
+     */
+    public PodcastProgress getProgress(Long podcastId) {
+        Podcast podcast = podcastRepository.findById(podcastId).orElse(null);
+        if (podcast == null) {
+            return null;
+        }
+        return new PodcastProgress(podcast.getStatus().name(),
+                segmentRepository.countByPodcastId(podcastId),
+                segmentRepository.countByPodcastIdAndStatus(podcastId, PodcastSegment.SegmentStatus.COMPLETED),
+                segmentRepository.countByPodcastIdAndStatus(podcastId, PodcastSegment.SegmentStatus.FAILED));
+    }
+
+    /**
+     * 一个播客的一轮合成：各句提交到共享线程池，最多同时占用 perPodcastConcurrency 个线程，每句完成后立即保存
+     * submit 不阻塞：流式生成脚本时在读取LLM响应的线程上调用，等待名额会拖慢读取，超出并发的句子先排队，有句子完成时再派发
+     */
+    private class SynthesisBatch {
+        private final int concurrency = perPodcastConcurrency;
+        private final Semaphore permits = new Semaphore(concurrency);
+        private final Queue<QueuedLine> queued = new ConcurrentLinkedQueue<>();
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        void submit(Long segmentId) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            futures.add(done);
+            queued.add(new QueuedLine(segmentId, done));
+            dispatch();
+        }
+
+        /**
+         * 有名额就派发排队的句子；先入队再抢名额、先还名额再查队列，入队和完成并发时不会漏派
+         */
+        private void dispatch() {
+            while (!queued.isEmpty() && permits.tryAcquire()) {
+                QueuedLine line = queued.poll();
+                if (line == null || line.done.isDone()) {
+                    // 被其他线程取走，或本轮已取消
+                    permits.release();
+                    continue;
+                }
+                try {
+                    CompletableFuture.runAsync(() -> {
+                        // 等待线程期间本轮已取消
+                        if (line.done.isDone()) {
+                            return;
+                        }
+                        if (!synthesizeSegment(line.segmentId)) {
+                            failed.incrementAndGet();
+                        }
+                    }, lineExecutor).whenComplete((v, e) -> {
+                        permits.release();
+                        if (e != null) {
+                            line.done.completeExceptionally(e);
+                        } else {
+                            line.done.complete(null);
+                        }
+                        dispatch();
+                    });
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                    line.done.completeExceptionally(e);
+                }
+            }
+        }
 
-        String[] lines = script.split("\n");
-        boolean useVoiceA = true;
+        int size() {
+            return futures.size();
+        }
 
-        for (String line : lines) {
+        /**
+         * 等待全部完成，返回失败的句数
+         */
+        int await() {
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            } finally {
+                cancel();
+            }
+            return failed.get();
+        }
+
+        /**
+         * 取消排队中的句子，并等待已派发的句子结束
+         * 已派发的句子不会被中断，若不等待，任务重试时删除句子后它们仍会写回旧句子（唯一键冲突或重新插入）；
+         * 派发中的句子一直持有名额，拿回全部名额即表示都已结束
+         */
+        void cancel() {
+            futures.forEach(f -> f.cancel(true));
+            try {
+                permits.acquire(concurrency);
+                permits.release(concurrency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class QueuedLine {
+        private final Long segmentId;
+        private final CompletableFuture<Void> done;
+
+        QueuedLine(Long segmentId, CompletableFuture<Void> done) {
+            this.segmentId = segmentId;
+            this.done = done;
+        }
+    }
+
+    /**
+     * 逐行解析"主播A：/主播B："，未标注主播的行沿用上一行的主播
+     */
+    private static class ScriptLineParser {
+        private final Podcast podcast;
+        private boolean useVoiceA = true;
+        private int nextIndex;
+
+        ScriptLineParser(Podcast podcast) {
+            this.podcast = podcast;
+        }
+
+        /**
+         * @return 该行对应的句子，空行返回null
+         */
+        PodcastSegment parse(String line) {
             line = line.trim();
-            if (line.isEmpty()) continue;
+            if (line.isEmpty()) {
+                return null;
+            }
 
             // 提取说话内容
             String content = line;
@@ -134,41 +517,41 @@ public class PodcastService {
                 useVoiceA = false;
             }
 
-            if (content.isEmpty()) continue;
-
-            try {
-                String voice = useVoiceA ? voiceA : voiceB;
-                byte[] audio = ttsService.generateAudio(content, voice);
-                audioParts.add(audio);
-            } catch (Exception e) {
-                log.warn("语音合成失败: line={}, error={}", line, e.getMessage());
+            if (content.isEmpty()) {
+                return null;
             }
+            PodcastSegment segment = new PodcastSegment();
+            segment.setPodcastId(podcast.getId());
+            segment.setLineIndex(nextIndex++);
+            segment.setSpeaker(useVoiceA ? "A" : "B");
+            segment.setVoice(useVoiceA ? podcast.getVoiceA() : podcast.getVoiceB());
+            segment.setContent(content);
+            segment.setCreateTime(LocalDateTime.now());
+            return segment;
         }
-
-        return audioParts;
     }
 
     /**
-     * 混合多段音频（简单拼接）
-     * 注意：实际生产中应该使用更专业的音频处理库进行混音
+     * 时间索引：每句在成品音频中的起始时间和字节偏移，用于按句跳转
      */
-    private byte[] mixAudio(List<byte[]> audioParts) throws IOException {
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        for (byte[] part : audioParts) {
-            output.write(part);
-        }
-        return output.toByteArray();
-    }
-
-    public List<Podcast> getUserPodcasts(String userKey) {
-        SysUser user = userService.getUserByKey(userKey);
-        if (user == null) {
-            return List.of();
-        }
-        return podcastRepository.findByUserIdOrderByCreateTimeDesc(user.getId());
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LineMark {
+        // 脚本中的句序号
+        private int line;
+        private String speaker;
+        private long startMs;
+        private long offset;
     }
 
-    public Podcast getPodcast(Long podcastId) {
-        return podcastRepository.findById(podcastId).orElse(null);
+    @Data
+    @AllArgsConstructor
+    public static class PodcastProgress {
+        private String status;
+        // 脚本生成完成前为0
+        private long total;
+        private long completed;
+        private long failed;
     }
 }
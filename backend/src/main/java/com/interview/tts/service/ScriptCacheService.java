@@ -0,0 +1,259 @@
+package com.interview.tts.service;
+
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.interview.tts.entity.ScriptCache;
+import com.interview.tts.repository.ScriptCacheRepository;
+import com.interview.tts.util.SingleFlight;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 播客脚本缓存 - 两级缓存
+ * key = SHA-256(原文SHA-256, 提示词版本, 模型, temperature)，不同用户提交的相同素材共用一份脚本
+ * L1: 进程内LRU，条目自加载起 local-ttl-ms 后过期（命中不续期），过期后从L2重新加载并刷新最近命中时间
+ * L2: script_cache表，超过 ttl-days 未命中的脚本定期删除
+ * 相同key的并发生成请求合并为一次LLM调用
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ScriptCacheService {
+
+    private final ScriptCacheRepository scriptCacheRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${cache.script.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.script.local-capacity:500}")
+    private int localCapacity;
+
+    @Value("${cache.script.local-ttl-ms:3600000}")
+    private long localTtlMs;
+
+    // 数据库中的脚本超过该天数未命中则删除，0表示不删除
+    @Value("${cache.script.ttl-days:30}")
+    private int ttlDays;
+
+    private LRUCache<String, String> localCache;
+    private TransactionTemplate requiresNewTx;
+    private ScheduledExecutorService evictor;
+    private final SingleFlight<String, String> generateFlight = new SingleFlight<>();
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder dbHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder localEvictions = new LongAdder();
+    private final LongAdder dbEvictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadTimeMs = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        localCache = new LRUCache<>(localCapacity, localTtlMs);
+        localCache.setListener((key, script) -> localEvictions.increment());
+
+        requiresNewTx = new TransactionTemplate(transactionManager);
+        requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        if (enabled && ttlDays > 0) {
+            evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "script-cache-evictor");
+                t.setDaemon(true);
+                return t;
+            });
+            evictor.scheduleWithFixedDelay(this::evictExpired, 10, 60, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+    }
+
+    public ScriptKey buildKey(String sourceText, String promptVersion, String modelId, double temperature) {
+        String sourceHash = DigestUtil.sha256Hex(sourceText);
+        String id = DigestUtil.sha256Hex(sourceHash + '\u0000' + promptVersion + '\u0000' + modelId
+                + '\u0000' + temperature);
+        return new ScriptKey(id, sourceHash, promptVersion, modelId, temperature);
+    }
+
+    /**
+     * 查缓存，未命中时调用loader生成；相同key并发调用时只有第一个执行loader，其余等待并共享结果
+     * @param loader 返回LLM生成的脚本，返回null表示生成失败（不缓存，由调用方降级）
+     * @return 缓存或新生成的脚本，loader失败时为null
+     */
+    public String getOrLoad(ScriptKey key, Supplier<String> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        String cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        return generateFlight.execute(key.getId(), () -> {
+            // 等待期间上一个生成者可能刚写入缓存
+            String latest = localCache.get(key.getId(), false);
+            if (latest != null) {
+                return latest;
+            }
+            long start = System.currentTimeMillis();
+            String script = loader.get();
+            loads.increment();
+            loadTimeMs.add(System.currentTimeMillis() - start);
+            if (script != null && !script.isBlank()) {
+                put(key, script);
+                return script;
+            }
+            return null;
+        });
+    }
+
+    public String get(ScriptKey key) {
+        String script = localCache.get(key.getId(), false);
+        if (script != null) {
+            localHits.increment();
+            return script;
+        }
+
+        Optional<ScriptCache> cached = findQuietly(key);
+        if (cached.isPresent()) {
+            dbHits.increment();
+            touchQuietly(cached.get().getId());
+            localCache.put(key.getId(), cached.get().getScriptContent());
+            log.info("脚本缓存命中: key={}, model={}", key.getId(), key.getModelId());
+            return cached.get().getScriptContent();
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    public void put(ScriptKey key, String script) {
+        localCache.put(key.getId(), script);
+        stores.increment();
+
+        ScriptCache cache = new ScriptCache();
+        cache.setCacheKey(key.getId());
+        cache.setSourceHash(key.getSourceHash());
+        cache.setPromptVersion(key.getPromptVersion());
+        cache.setModelId(key.getModelId());
+        cache.setTemperature(key.getTemperature());
+        cache.setScriptContent(script);
+        try {
+            // 依赖唯一索引去重；独立事务避免冲突时把调用方事务标记为回滚
+            requiresNewTx.executeWithoutResult(status -> scriptCacheRepository.save(cache));
+        } catch (DataIntegrityViolationException e) {
+            log.info("脚本缓存已存在，无需重复创建");
+        } catch (Exception e) {
+            // 持久化失败不影响本次结果，仅保留在进程内缓存
+            log.warn("脚本缓存保存失败: key={}, {}", key.getId(), e.getMessage());
+        }
+    }
+
+    public ScriptCacheStats getStats() {
+        ScriptCacheStats stats = new ScriptCacheStats();
+        stats.setEnabled(enabled);
+        stats.setLocalSize(localCache.size());
+        stats.setLocalCapacity(localCapacity);
+        stats.setLocalHits(localHits.sum());
+        stats.setDbHits(dbHits.sum());
+        stats.setMisses(misses.sum());
+        stats.setStores(stores.sum());
+        stats.setLocalEvictions(localEvictions.sum());
+        stats.setDbEvictions(dbEvictions.sum());
+        SingleFlight.Stats flight = generateFlight.getStats();
+        stats.setInFlight(flight.getInFlight());
+        stats.setLlmCalls(loads.sum());
+        stats.setCoalesced(flight.getCoalesced());
+        stats.setAvgLlmMs(loads.sum() == 0 ? 0 : loadTimeMs.sum() / loads.sum());
+        long lookups = stats.getLocalHits() + stats.getDbHits() + stats.getMisses();
+        stats.setHitRate(lookups == 0 ? 0 : (double) (stats.getLocalHits() + stats.getDbHits()) / lookups);
+        return stats;
+    }
+
+    private Optional<ScriptCache> findQuietly(ScriptKey key) {
+        try {
+            return scriptCacheRepository.findByCacheKey(key.getId());
+        } catch (Exception e) {
+            log.warn("脚本缓存查询失败: key={}, {}", key.getId(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void touchQuietly(Long id) {
+        try {
+            requiresNewTx.executeWithoutResult(status -> scriptCacheRepository.touch(id, LocalDateTime.now()));
+        } catch (Exception e) {
+            log.warn("脚本缓存命中时间更新失败: id={}, {}", id, e.getMessage());
+        }
+    }
+
+    private void evictExpired() {
+        try {
+            Integer deleted = requiresNewTx.execute(status ->
+                    scriptCacheRepository.deleteNotHitSince(LocalDateTime.now().minusDays(ttlDays)));
+            if (deleted != null && deleted > 0) {
+                dbEvictions.add(deleted);
+                log.info("清理过期脚本缓存: {}条", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("清理脚本缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存key
+     */
+    @Data
+    public static class ScriptKey {
+        private final String id;
+        private final String sourceHash;
+        private final String promptVersion;
+        private final String modelId;
+        private final double temperature;
+    }
+
+    /**
+     * 脚本缓存统计
+     */
+    @Data
+    public static class ScriptCacheStats {
+        private boolean enabled;
+        private int localSize;
+        private int localCapacity;
+        private long localHits;
+        private long dbHits;
+        private long misses;
+        private long stores;
+        private long localEvictions;
+        private long dbEvictions;
+        private int inFlight;
+        // 实际发起的LLM调用次数及平均耗时
+        private long llmCalls;
+        private long coalesced;
+        private long avgLlmMs;
+        private double hitRate;
+    }
+}
@@ -0,0 +1,110 @@
+package com.interview.tts.service;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 音频分段缓存
+ * key = hash(规范化后的句子, 音色, promptHash)，value = 该句子的MP3
+ * 启用时每个句子单独合成、单独缓存，已缓存的句子直接复用
+ * 按总字节数做LRU淘汰
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SegmentCacheService {
+
+    private final TextPreprocessService textPreprocessService;
+
+    @Value("${cache.segment.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.segment.max-bytes:67108864}")
+    private long maxBytes;
+
+    // access-order，最久未访问的在前
+    private final LinkedHashMap<String, byte[]> segments = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized byte[] get(String sentence, String voiceName) {
+        byte[] audio = segments.get(key(sentence, voiceName));
+        if (audio != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return audio;
+    }
+
+    public synchronized void put(String sentence, String voiceName, byte[] audio) {
+        // 单个分段过大时不缓存，避免挤掉大量常用分段
+        if (audio == null || audio.length == 0 || audio.length > maxBytes / 8) {
+            return;
+        }
+        byte[] previous = segments.put(key(sentence, voiceName), audio);
+        currentBytes += audio.length - (previous != null ? previous.length : 0);
+
+        Iterator<Map.Entry<String, byte[]>> it = segments.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            currentBytes -= it.next().getValue().length;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized SegmentCacheStats getStats() {
+        SegmentCacheStats stats = new SegmentCacheStats();
+        stats.setEnabled(enabled);
+        stats.setSegments(segments.size());
+        stats.setBytes(currentBytes);
+        stats.setMaxBytes(maxBytes);
+        stats.setHits(hits);
+        stats.setMisses(misses);
+        stats.setEvictions(evictions);
+        stats.setHitRate(hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+        return stats;
+    }
+
+    private String key(String sentence, String voiceName) {
+        return DigestUtil.sha256Hex(normalize(sentence) + '\u0000' + voiceName + '\u0000'
+                + textPreprocessService.getPromptHash());
+    }
+
+    /**
+     * 规范化：去首尾空白，连续空白合并为一个空格
+     */
+    private static String normalize(String sentence) {
+        return sentence.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * 分段缓存统计
+     */
+    @Data
+    public static class SegmentCacheStats {
+        private boolean enabled;
+        private int segments;
+        private long bytes;
+        private long maxBytes;
+        private long hits;
+        private long misses;
+        private long evictions;
+        private double hitRate;
+    }
+}
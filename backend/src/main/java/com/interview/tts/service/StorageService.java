@@ -9,12 +9,30 @@ import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.UUID;
 
 @Slf4j
@@ -33,6 +51,13 @@ public class StorageService {
     @Value("${storage.estimated-bitrate-kbps:64}")
     private int estimatedBitrateKbps;
 
+    // 流式上传的分片大小，单次传输占用的内存不超过一个分片 (S3分片最小5MB)
+    @Value("${storage.multipart.part-size-bytes:8388608}")
+    private int partSizeBytes;
+
+    @Value("${storage.multipart.max-part-retries:3}")
+    private int maxPartRetries;
+
     @Value("${r2.access-key-id:}")
     private String r2AccessKeyId;
 
@@ -66,25 +91,39 @@ public class StorageService {
     }
 
     public String uploadAudio(byte[] audioData, String originalFileName) {
+        return upload(UUID.randomUUID().toString() + ".mp3", audioData, "audio/mpeg");
+    }
+
+    /**
+     * 上传与音频同名的附属文件（如字幕），和音频放在同一目录
+     * @param audioUrl uploadAudio返回的URL
+     * @param extension 扩展名，如 vtt
+     */
+    public String uploadSidecar(String audioUrl, byte[] data, String extension, String contentType) {
+        String audioName = audioUrl.substring(audioUrl.lastIndexOf('/') + 1);
+        int dot = audioName.lastIndexOf('.');
+        String baseName = dot > 0 ? audioName.substring(0, dot) : audioName;
+        return upload(baseName + "." + extension, data, contentType);
+    }
+
+    private String upload(String fileName, byte[] data, String contentType) {
         if ("r2".equals(mode) && r2Client != null) {
-            return uploadToR2(audioData);
+            return uploadToR2("audio/" + fileName, data, contentType);
         } else {
-            return uploadToLocal(audioData);
+            return uploadToLocal(fileName, data);
         }
     }
 
-    private String uploadToR2(byte[] audioData) {
+    private String uploadToR2(String key, byte[] data, String contentType) {
         try {
-            String key = "audio/" + UUID.randomUUID().toString() + ".mp3";
-
             PutObjectRequest putRequest = PutObjectRequest.builder()
                     .bucket(r2BucketName)
                     .key(key)
-                    .contentType("audio/mpeg")
-                    .contentLength((long) audioData.length)
+                    .contentType(contentType)
+                    .contentLength((long) data.length)
                     .build();
 
-            r2Client.putObject(putRequest, RequestBody.fromBytes(audioData));
+            r2Client.putObject(putRequest, RequestBody.fromBytes(data));
 
             String url = r2PublicDomain + "/" + key;
             log.info("R2 上传成功: {}", url);
@@ -95,16 +134,15 @@ public class StorageService {
         }
     }
 
-    private String uploadToLocal(byte[] audioData) {
+    private String uploadToLocal(String fileName, byte[] data) {
         try {
             Path dirPath = Paths.get(localDir);
             if (!Files.exists(dirPath)) {
                 Files.createDirectories(dirPath);
             }
 
-            String fileName = UUID.randomUUID().toString() + ".mp3";
             Path filePath = dirPath.resolve(fileName);
-            Files.write(filePath, audioData);
+            Files.write(filePath, data);
 
             String url = publicBaseUrl + "/" + fileName;
             log.info("本地存储成功: {}", url);
@@ -115,6 +153,181 @@ public class StorageService {
         }
     }
 
+    /**
+     * 流式上传音频，不把整个文件读入内存
+     * R2: 按分片大小分段上传(multipart)，每个分片校验MD5与ETag，失败的分片单独重试；不足一个分片时直接PUT
+     * 本地: 经FileChannel写入临时文件，完成后原子重命名
+     */
+    public String uploadAudioStream(InputStream input, String contentType) {
+        String fileName = UUID.randomUUID().toString() + ".mp3";
+        if ("r2".equals(mode) && r2Client != null) {
+            return streamToR2("audio/" + fileName, input, contentType);
+        } else {
+            return streamToLocal(fileName, input);
+        }
+    }
+
+    private String streamToR2(String key, InputStream input, String contentType) {
+        byte[] buffer = new byte[partSizeBytes];
+        String uploadId = null;
+        try {
+            int length = readFully(input, buffer);
+            if (length < buffer.length) {
+                // 不足一个分片，直接PUT
+                PutObjectRequest putRequest = PutObjectRequest.builder()
+                        .bucket(r2BucketName)
+                        .key(key)
+                        .contentType(contentType)
+                        .contentLength((long) length)
+                        .build();
+                PutObjectResponse response = r2Client.putObject(putRequest,
+                        RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length));
+                verifyETag(response.eTag(), buffer, length, 0);
+            } else {
+                uploadId = r2Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                        .bucket(r2BucketName)
+                        .key(key)
+                        .contentType(contentType)
+                        .build()).uploadId();
+
+                List<CompletedPart> parts = new ArrayList<>();
+                long total = 0;
+                while (length > 0) {
+                    int partNumber = parts.size() + 1;
+                    parts.add(CompletedPart.builder()
+                            .partNumber(partNumber)
+                            .eTag(uploadPart(key, uploadId, partNumber, buffer, length))
+                            .build());
+                    total += length;
+                    length = readFully(input, buffer);
+                }
+
+                r2Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(r2BucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                        .build());
+                log.info("R2 分片上传完成: {}个分片, {} bytes", parts.size(), total);
+            }
+
+            String url = r2PublicDomain + "/" + key;
+            log.info("R2 上传成功: {}", url);
+            return url;
+        } catch (Exception e) {
+            log.error("R2 流式上传失败: {}", e.getMessage(), e);
+            if (uploadId != null) {
+                try {
+                    r2Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                            .bucket(r2BucketName)
+                            .key(key)
+                            .uploadId(uploadId)
+                            .build());
+                } catch (Exception abortErr) {
+                    log.warn("取消分片上传失败: {}", abortErr.getMessage());
+                }
+            }
+            throw BusinessException.r2UploadFailed();
+        }
+    }
+
+    private String uploadPart(String key, String uploadId, int partNumber, byte[] buffer, int length) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                UploadPartRequest partRequest = UploadPartRequest.builder()
+                        .bucket(r2BucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength((long) length)
+                        .build();
+                String eTag = r2Client.uploadPart(partRequest,
+                        RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length)).eTag();
+                verifyETag(eTag, buffer, length, partNumber);
+                return eTag;
+            } catch (Exception e) {
+                if (attempt > maxPartRetries) {
+                    throw e;
+                }
+                log.warn("分片{}上传失败，重试第{}次: {}", partNumber, attempt, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 非加密对象的ETag为内容MD5，不一致说明传输中数据损坏
+     */
+    private static void verifyETag(String eTag, byte[] buffer, int length, int partNumber) {
+        if (eTag == null) {
+            return;
+        }
+        String expected;
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            md5.update(buffer, 0, length);
+            expected = HexFormat.of().formatHex(md5.digest());
+        } catch (Exception e) {
+            return;
+        }
+        String actual = eTag.replace("\"", "");
+        if (!actual.equalsIgnoreCase(expected)) {
+            throw new IllegalStateException("分片" + partNumber + "校验失败: ETag=" + actual + ", MD5=" + expected);
+        }
+    }
+
+    private String streamToLocal(String fileName, InputStream input) {
+        Path tempPath = null;
+        try {
+            Path dirPath = Paths.get(localDir);
+            if (!Files.exists(dirPath)) {
+                Files.createDirectories(dirPath);
+            }
+
+            Path filePath = dirPath.resolve(fileName);
+            tempPath = dirPath.resolve(fileName + ".part");
+            long total = 0;
+            try (FileChannel channel = FileChannel.open(tempPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                int n;
+                while ((n = input.read(buffer.array())) != -1) {
+                    buffer.clear().limit(n);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    total += n;
+                }
+                channel.force(false);
+            }
+            Files.move(tempPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            String url = publicBaseUrl + "/" + fileName;
+            log.info("本地存储成功: {}, {} bytes", url, total);
+            return url;
+        } catch (Exception e) {
+            log.error("本地存储失败: {}", e.getMessage(), e);
+            if (tempPath != null) {
+                try {
+                    Files.deleteIfExists(tempPath);
+                } catch (IOException ignored) {
+                }
+            }
+            throw BusinessException.r2UploadFailed();
+        }
+    }
+
+    private static int readFully(InputStream input, byte[] buffer) throws IOException {
+        int length = 0;
+        while (length < buffer.length) {
+            int n = input.read(buffer, length, buffer.length - length);
+            if (n == -1) {
+                break;
+            }
+            length += n;
+        }
+        return length;
+    }
+
     public int estimateDuration(byte[] audioData) {
         // 估算音频时长 (秒)
         long bits = (long) audioData.length * 8;
@@ -0,0 +1,255 @@
+package com.interview.tts.service;
+
+import com.interview.tts.entity.SysUser;
+import com.interview.tts.entity.UserType;
+import com.interview.tts.exception.BusinessException;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 合成调度 - 按用户类型分道的加权公平队列
+ * 同时进行的合成数有全局上限，空出的名额按权重在各用户类型的队列间分配（VIP权重高，负载高时VIP几乎不排队），
+ * 同一用户同时进行的合成数有上限；队列已满时直接返回排队位置，而不是让请求一直等到超时
+ */
+@Slf4j
+@Component
+public class SynthesisScheduler {
+
+    @Value("${synthesis.scheduler.max-concurrent:8}")
+    private int maxConcurrent;
+
+    @Value("${synthesis.scheduler.max-wait-ms:60000}")
+    private long maxWaitMs;
+
+    @Value("${synthesis.scheduler.vip.weight:4}")
+    private int vipWeight;
+
+    @Value("${synthesis.scheduler.vip.per-user-concurrency:3}")
+    private int vipPerUserConcurrency;
+
+    @Value("${synthesis.scheduler.vip.max-queue:200}")
+    private int vipMaxQueue;
+
+    @Value("${synthesis.scheduler.user.weight:1}")
+    private int userWeight;
+
+    @Value("${synthesis.scheduler.user.per-user-concurrency:1}")
+    private int userPerUserConcurrency;
+
+    @Value("${synthesis.scheduler.user.max-queue:50}")
+    private int userMaxQueue;
+
+    private final Map<UserType, Lane> lanes = new EnumMap<>(UserType.class);
+    private final Map<Long, Integer> activeByUser = new HashMap<>();
+    private int active;
+    // 最近一次分配的虚拟时间，空闲后重新排队的队列从这里开始计，避免积攒的份额一次性用掉
+    private double virtualTime;
+
+    @PostConstruct
+    public void init() {
+        lanes.put(UserType.VIP, new Lane(UserType.VIP, vipWeight, vipPerUserConcurrency, vipMaxQueue));
+        lanes.put(UserType.USER, new Lane(UserType.USER, userWeight, userPerUserConcurrency, userMaxQueue));
+    }
+
+    /**
+     * 排队获得名额后执行合成
+     * @throws BusinessException 队列已满（带排队位置）或等待超时
+     */
+    public <T> T run(SysUser user, Supplier<T> task) {
+        Ticket ticket = acquire(user);
+        try {
+            return task.get();
+        } finally {
+            release(ticket);
+        }
+    }
+
+    /**
+     * 仅检查队列是否已满，用于响应开始输出前提前拒绝
+     */
+    public synchronized void checkAdmission(SysUser user) {
+        Lane lane = laneOf(user);
+        if (lane.queue.size() >= lane.maxQueue) {
+            reject(lane, user);
+        }
+    }
+
+    private Ticket acquire(SysUser user) {
+        Lane lane = laneOf(user);
+        Ticket ticket = new Ticket(user.getId(), lane);
+
+        synchronized (this) {
+            if (lane.queue.size() >= lane.maxQueue) {
+                reject(lane, user);
+            }
+            if (lane.queue.isEmpty()) {
+                lane.pass = Math.max(lane.pass, virtualTime);
+            }
+            lane.queue.addLast(ticket);
+            dispatch();
+        }
+
+        try {
+            ticket.granted.get(maxWaitMs, TimeUnit.MILLISECONDS);
+            return ticket;
+        } catch (TimeoutException | InterruptedException | ExecutionException e) {
+            synchronized (this) {
+                if (lane.queue.remove(ticket)) {
+                    lane.timedOut++;
+                    log.warn("合成排队超时: userId={}, userType={}, {}ms", ticket.userId, lane.type, maxWaitMs);
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw BusinessException.synthesisBusy();
+                }
+            }
+            // 超时的同时拿到了名额
+            return ticket;
+        }
+    }
+
+    private Lane laneOf(SysUser user) {
+        return lanes.get(user.getUserType() == UserType.VIP ? UserType.VIP : UserType.USER);
+    }
+
+    private void reject(Lane lane, SysUser user) {
+        lane.rejected++;
+        log.warn("合成排队已满: userId={}, userType={}, queue={}", user.getId(), lane.type, lane.queue.size());
+        throw BusinessException.synthesisQueued(lane.queue.size());
+    }
+
+    private synchronized void release(Ticket ticket) {
+        active--;
+        ticket.lane.active--;
+        activeByUser.computeIfPresent(ticket.userId, (id, count) -> count > 1 ? count - 1 : null);
+        dispatch();
+    }
+
+    /**
+     * 有空闲名额时，在有可执行请求的队列中选虚拟时间最小的，分配后其虚拟时间增加 1/权重
+     * 队列内按先后顺序，跳过已达到个人并发上限的用户
+     */
+    private void dispatch() {
+        while (active < maxConcurrent) {
+            Lane selected = null;
+            Ticket next = null;
+            for (Lane lane : lanes.values()) {
+                Ticket candidate = lane.firstRunnable();
+                if (candidate != null && (selected == null || lane.pass < selected.pass)) {
+                    selected = lane;
+                    next = candidate;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+
+            selected.queue.remove(next);
+            selected.pass += 1.0 / selected.weight;
+            virtualTime = selected.pass;
+            selected.active++;
+            selected.admitted++;
+            long waitMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - next.enqueuedAt);
+            selected.totalWaitMs += waitMs;
+            selected.maxWaitMs = Math.max(selected.maxWaitMs, waitMs);
+            active++;
+            activeByUser.merge(next.userId, 1, Integer::sum);
+            next.granted.complete(null);
+        }
+    }
+
+    public synchronized SchedulerStats getStats() {
+        List<LaneStats> laneStats = new ArrayList<>();
+        for (Lane lane : lanes.values()) {
+            laneStats.add(new LaneStats(lane.type.name(), lane.weight, lane.queue.size(), lane.active,
+                    lane.admitted, lane.rejected, lane.timedOut,
+                    lane.admitted > 0 ? lane.totalWaitMs / lane.admitted : 0, lane.maxWaitMs));
+        }
+        return new SchedulerStats(maxConcurrent, active, laneStats);
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class SchedulerStats {
+        private int maxConcurrent;
+        private int active;
+        private List<LaneStats> lanes;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class LaneStats {
+        private String userType;
+        private int weight;
+        private int queueDepth;
+        private int active;
+        private long admitted;
+        private long rejected;
+        private long timedOut;
+        private long avgWaitMs;
+        private long maxWaitMs;
+    }
+
+    private class Lane {
+        private final UserType type;
+        private final int weight;
+        private final int perUserConcurrency;
+        private final int maxQueue;
+        private final Deque<Ticket> queue = new ArrayDeque<>();
+        private double pass;
+        private int active;
+        private long admitted;
+        private long rejected;
+        private long timedOut;
+        private long totalWaitMs;
+        private long maxWaitMs;
+
+        Lane(UserType type, int weight, int perUserConcurrency, int maxQueue) {
+            this.type = type;
+            this.weight = Math.max(1, weight);
+            this.perUserConcurrency = perUserConcurrency;
+            this.maxQueue = maxQueue;
+        }
+
+        Ticket firstRunnable() {
+            Iterator<Ticket> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                Ticket ticket = iterator.next();
+                if (activeByUser.getOrDefault(ticket.userId, 0) < perUserConcurrency) {
+                    return ticket;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class Ticket {
+        private final Long userId;
+        private final Lane lane;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<Void> granted = new CompletableFuture<>();
+
+        Ticket(Long userId, Lane lane) {
+            this.userId = userId;
+            this.lane = lane;
+        }
+    }
+}
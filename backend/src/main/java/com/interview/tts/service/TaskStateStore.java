@@ -0,0 +1,43 @@
+package com.interview.tts.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 长文本任务状态存储
+ * memory: 进程内，有容量上限和过期时间；jdbc: long_text_task表，多实例共享同一份任务状态
+ */
+public interface TaskStateStore {
+
+    LongTextTaskState get(String taskId);
+
+    /**
+     * 新建任务状态
+     * @return 任务已存在时返回false
+     */
+    boolean create(LongTextTaskState state);
+
+    void update(LongTextTaskState state);
+
+    /**
+     * 接管轮询：仅当最近轮询时间仍为expectedLastPollAt时更新为now，多个实例同时接管只有一个成功
+     */
+    boolean tryClaim(String taskId, long expectedLastPollAt, long now);
+
+    /**
+     * 清理过期的已结束任务
+     */
+    void evictExpired();
+
+    StoreStats getStats();
+
+    @Data
+    @AllArgsConstructor
+    class StoreStats {
+        private String backend;
+        private long size;
+        private long hits;
+        private long misses;
+        private long evictions;
+    }
+}
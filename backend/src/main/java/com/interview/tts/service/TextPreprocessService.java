@@ -1,15 +1,19 @@
 package com.interview.tts.service;
 
 import cn.hutool.crypto.digest.DigestUtil;
+import com.interview.tts.service.upstream.HttpClients;
+import com.interview.tts.service.upstream.UpstreamGateway;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
@@ -23,6 +27,17 @@ public class TextPreprocessService {
 
     private static final String API_ENDPOINT = "https://ark.cn-beijing.volces.com/api/v3/responses";
 
+    private final OkHttpClient httpClient;
+
+    public TextPreprocessService(UpstreamGateway upstreamGateway, HttpClients httpClients) {
+        this.httpClient = httpClients.create("llm", builder -> builder
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                // 预处理是同步请求路径上的短调用，与播客脚本的长时间流式生成分开限流，互不影响并发上限和延迟基线
+                .addInterceptor(upstreamGateway.interceptor("llm-preprocess")));
+    }
+
     private static final String DEFAULT_PROMPT = """
             你是一位专业的AI语音合成文本优化师，专门把面试八股文转化为适合豆包TTS朗读的SSML格式，禁止改变原文核心技术内容。
             请严格按照以下规则处理输入的文本：
@@ -65,19 +80,19 @@ public class TextPreprocessService {
             }
             """, doubaoModelId, prompt.replace("\"", "\\\"").replace("\n", "\\n"));
 
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(API_ENDPOINT))
-                .header("Content-Type", "application/json")
+        Request request = new Request.Builder()
+                .url(API_ENDPOINT)
                 .header("Authorization", "Bearer " + doubaoApiKey)
-                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                .post(RequestBody.create(requestBody, MediaType.get("application/json; charset=utf-8")))
                 .build();
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        log.debug("豆包响应: {}", response.body());
+        String body;
+        try (Response response = httpClient.newCall(request).execute()) {
+            body = response.body() != null ? response.body().string() : "";
+        }
+        log.debug("豆包响应: {}", body);
 
         // 解析 v3/responses 响应格式
-        String body = response.body();
         String content = null;
 
         // 优先尝试从 summary 中提取 (reasoning类型的summary.text)
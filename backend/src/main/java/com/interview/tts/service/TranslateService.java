@@ -4,6 +4,9 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.interview.tts.entity.Translation;
 import com.interview.tts.repository.TranslationRepository;
+import com.interview.tts.service.tts.TtsRouter;
+import com.interview.tts.service.upstream.HttpClients;
+import com.interview.tts.service.upstream.UpstreamGateway;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
@@ -33,21 +36,24 @@ public class TranslateService {
     private String appId;
 
     private final TranslationRepository translationRepository;
-    private final DouyinTtsService ttsService;
+    private final TtsRouter ttsRouter;
     private final StorageService storageService;
 
-    private final OkHttpClient httpClient = new OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(120, TimeUnit.SECONDS)
-            .writeTimeout(60, TimeUnit.SECONDS)
-            .build();
+    private final OkHttpClient httpClient;
 
     public TranslateService(TranslationRepository translationRepository,
-                            DouyinTtsService ttsService,
-                            StorageService storageService) {
+                            TtsRouter ttsRouter,
+                            StorageService storageService,
+                            UpstreamGateway upstreamGateway,
+                            HttpClients httpClients) {
         this.translationRepository = translationRepository;
-        this.ttsService = ttsService;
+        this.ttsRouter = ttsRouter;
         this.storageService = storageService;
+        this.httpClient = httpClients.create("translate", builder -> builder
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(120, TimeUnit.SECONDS)
+                .writeTimeout(60, TimeUnit.SECONDS)
+                .addInterceptor(upstreamGateway.interceptor("translate")));
     }
 
     /**
@@ -100,7 +106,7 @@ public class TranslateService {
             if (voiceName == null) {
                 voiceName = getVoiceForLang(targetLang);
             }
-            byte[] audioData = ttsService.generateAudio(translatedText, voiceName);
+            byte[] audioData = ttsRouter.generateAudio(translatedText, voiceName);
             String translatedAudioUrl = storageService.uploadAudio(audioData, "translate_" + System.currentTimeMillis());
 
             translation.setTranslatedAudioUrl(translatedAudioUrl);
@@ -3,9 +3,14 @@ package com.interview.tts.service;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.interview.tts.entity.ClonedVoice;
+import com.interview.tts.entity.SynthesisJob;
 import com.interview.tts.entity.VoiceSample;
 import com.interview.tts.repository.ClonedVoiceRepository;
 import com.interview.tts.repository.VoiceSampleRepository;
+import com.interview.tts.service.job.JobHandler;
+import com.interview.tts.service.job.JobQueue;
+import com.interview.tts.service.upstream.HttpClients;
+import com.interview.tts.service.upstream.UpstreamGateway;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
@@ -18,17 +23,17 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 声音复刻服务
- * 对接豆包声音复刻2.0 API
+ * 对接豆包声音复刻2.0 API，提交和轮询在持久化任务队列中执行，服务重启后继续
  */
 @Slf4j
 @Service
-public class VoiceCloneService {
+public class VoiceCloneService implements JobHandler {
+
+    public static final String JOB_TYPE = "voice-clone";
 
     private static final String CLONE_API_URL = "https://openspeech.bytedance.com/api/v2/voice_clone";
     private static final String TASK_STATUS_URL = "https://openspeech.bytedance.com/api/v2/voice_clone/task";
@@ -42,22 +47,27 @@ public class VoiceCloneService {
     private final ClonedVoiceRepository clonedVoiceRepository;
     private final VoiceSampleRepository voiceSampleRepository;
     private final StorageService storageService;
+    private final JobQueue jobQueue;
 
-    private final ExecutorService executor = Executors.newCachedThreadPool();
     private final Map<Long, CloneTask> pendingTasks = new ConcurrentHashMap<>();
 
-    private final OkHttpClient httpClient = new OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(120, TimeUnit.SECONDS)
-            .writeTimeout(60, TimeUnit.SECONDS)
-            .build();
+    private final OkHttpClient httpClient;
 
     public VoiceCloneService(ClonedVoiceRepository clonedVoiceRepository,
                              VoiceSampleRepository voiceSampleRepository,
-                             StorageService storageService) {
+                             StorageService storageService,
+                             JobQueue jobQueue,
+                             UpstreamGateway upstreamGateway,
+                             HttpClients httpClients) {
         this.clonedVoiceRepository = clonedVoiceRepository;
         this.voiceSampleRepository = voiceSampleRepository;
         this.storageService = storageService;
+        this.jobQueue = jobQueue;
+        this.httpClient = httpClients.create("voice-clone", builder -> builder
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(120, TimeUnit.SECONDS)
+                .writeTimeout(60, TimeUnit.SECONDS)
+                .addInterceptor(upstreamGateway.interceptor("voice-clone")));
     }
 
     /**
@@ -85,91 +95,120 @@ public class VoiceCloneService {
             voiceSampleRepository.save(sample);
         }
 
-        // 3. 提交异步任务
-        ClonedVoice finalClonedVoice = clonedVoice;
-        executor.submit(() -> submitCloneTask(finalClonedVoice.getId(), sampleUrls));
+        // 3. 提交异步任务（与克隆记录同一事务落库）
+        JSONObject payload = new JSONObject();
+        payload.put("clonedVoiceId", clonedVoice.getId());
+        payload.put("sampleUrls", sampleUrls);
+        jobQueue.enqueue(JOB_TYPE, payload);
 
         return clonedVoice;
     }
 
+    @Override
+    public String type() {
+        return JOB_TYPE;
+    }
+
     /**
-     * 提交克隆任务到豆包API
+     * 执行克隆任务，已提交过的（保存了task_id）只继续轮询，不重复提交
      */
-    private void submitCloneTask(Long clonedVoiceId, List<String> sampleUrls) {
+    @Override
+    public void handle(SynthesisJob job) throws IOException {
+        JSONObject payload = JSON.parseObject(job.getPayload());
+        Long clonedVoiceId = payload.getLong("clonedVoiceId");
         ClonedVoice clonedVoice = clonedVoiceRepository.findById(clonedVoiceId).orElse(null);
-        if (clonedVoice == null) return;
+        if (clonedVoice == null
+                || clonedVoice.getStatus() == ClonedVoice.CloneStatus.COMPLETED
+                || clonedVoice.getStatus() == ClonedVoice.CloneStatus.FAILED) {
+            return;
+        }
+        if (clonedVoice.getStatus() == ClonedVoice.CloneStatus.PROCESSING && clonedVoice.getVoiceId() != null) {
+            log.info("继续轮询声音复刻任务: clonedVoiceId={}, taskId={}", clonedVoiceId, clonedVoice.getVoiceId());
+            pollTaskStatus(clonedVoiceId, clonedVoice.getVoiceId());
+            return;
+        }
+        submitCloneTask(clonedVoice, payload.getJSONArray("sampleUrls").toJavaList(String.class));
+    }
 
-        try {
-            clonedVoice.setStatus(ClonedVoice.CloneStatus.PROCESSING);
+    @Override
+    public void onDeadLetter(SynthesisJob job, Throwable lastError) {
+        Long clonedVoiceId = JSON.parseObject(job.getPayload()).getLong("clonedVoiceId");
+        clonedVoiceRepository.findById(clonedVoiceId).ifPresent(clonedVoice -> {
+            clonedVoice.setStatus(ClonedVoice.CloneStatus.FAILED);
+            clonedVoice.setErrorMessage(lastError.getMessage());
             clonedVoice.setUpdateTime(LocalDateTime.now());
             clonedVoiceRepository.save(clonedVoice);
+        });
+    }
 
-            if (apiKey == null || apiKey.isEmpty()) {
-                log.warn("豆包API未配置，使用模拟结果");
-                // 模拟成功
-                clonedVoice.setVoiceId("mock_voice_" + clonedVoiceId);
-                clonedVoice.setStatus(ClonedVoice.CloneStatus.COMPLETED);
-                clonedVoice.setUpdateTime(LocalDateTime.now());
-                clonedVoiceRepository.save(clonedVoice);
-                return;
-            }
+    /**
+     * 提交克隆任务到豆包API
+     * 网络异常抛出，由任务队列退避重试；API明确拒绝时直接标记失败
+     */
+    private void submitCloneTask(ClonedVoice clonedVoice, List<String> sampleUrls) throws IOException {
+        Long clonedVoiceId = clonedVoice.getId();
+        clonedVoice.setStatus(ClonedVoice.CloneStatus.PROCESSING);
+        clonedVoice.setUpdateTime(LocalDateTime.now());
+        clonedVoiceRepository.save(clonedVoice);
+
+        if (apiKey == null || apiKey.isEmpty()) {
+            log.warn("豆包API未配置，使用模拟结果");
+            // 模拟成功
+            clonedVoice.setVoiceId("mock_voice_" + clonedVoiceId);
+            clonedVoice.setStatus(ClonedVoice.CloneStatus.COMPLETED);
+            clonedVoice.setUpdateTime(LocalDateTime.now());
+            clonedVoiceRepository.save(clonedVoice);
+            return;
+        }
 
-            // 构建请求
-            JSONObject requestBody = new JSONObject();
-            requestBody.put("app", new JSONObject() {{
-                put("appid", appId);
-            }});
-            requestBody.put("audio", new JSONObject() {{
-                put("format", "mp3");
-                put("rate", 16000);
-                put("bits", 16);
-                put("channel", 1);
-            }});
-            requestBody.put("voice", new JSONObject() {{
-                put("clone_type", "instant");
-                put("voice_id", "voice_" + System.currentTimeMillis());
-            }});
-            requestBody.put("samples", sampleUrls);
-
-            RequestBody body = RequestBody.create(
-                    requestBody.toJSONString(),
-                    MediaType.get("application/json; charset=utf-8")
-            );
-
-            Request request = new Request.Builder()
-                    .url(CLONE_API_URL)
-                    .header("Authorization", "Bearer " + apiKey)
-                    .header("Content-Type", "application/json")
-                    .post(body)
-                    .build();
-
-            try (Response response = httpClient.newCall(request).execute()) {
-                String responseBody = response.body() != null ? response.body().string() : "";
-                log.info("声音复刻API响应: {}", responseBody);
-
-                if (response.isSuccessful()) {
-                    JSONObject json = JSON.parseObject(responseBody);
-                    String taskId = json.getString("task_id");
-                    if (taskId != null) {
-                        // 保存任务ID，开始轮询
-                        clonedVoice.setVoiceId(taskId);
-                        clonedVoiceRepository.save(clonedVoice);
-                        pollTaskStatus(clonedVoiceId, taskId);
-                    }
-                } else {
-                    clonedVoice.setStatus(ClonedVoice.CloneStatus.FAILED);
-                    clonedVoice.setErrorMessage("API请求失败: " + response.code());
-                    clonedVoice.setUpdateTime(LocalDateTime.now());
+        // 构建请求
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("app", new JSONObject() {{
+            put("appid", appId);
+        }});
+        requestBody.put("audio", new JSONObject() {{
+            put("format", "mp3");
+            put("rate", 16000);
+            put("bits", 16);
+            put("channel", 1);
+        }});
+        requestBody.put("voice", new JSONObject() {{
+            put("clone_type", "instant");
+            put("voice_id", "voice_" + System.currentTimeMillis());
+        }});
+        requestBody.put("samples", sampleUrls);
+
+        RequestBody body = RequestBody.create(
+                requestBody.toJSONString(),
+                MediaType.get("application/json; charset=utf-8")
+        );
+
+        Request request = new Request.Builder()
+                .url(CLONE_API_URL)
+                .header("Authorization", "Bearer " + apiKey)
+                .header("Content-Type", "application/json")
+                .post(body)
+                .build();
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            String responseBody = response.body() != null ? response.body().string() : "";
+            log.info("声音复刻API响应: {}", responseBody);
+
+            if (response.isSuccessful()) {
+                JSONObject json = JSON.parseObject(responseBody);
+                String taskId = json.getString("task_id");
+                if (taskId != null) {
+                    // 保存任务ID，开始轮询
+                    clonedVoice.setVoiceId(taskId);
                     clonedVoiceRepository.save(clonedVoice);
+                    pollTaskStatus(clonedVoiceId, taskId);
                 }
+            } else {
+                clonedVoice.setStatus(ClonedVoice.CloneStatus.FAILED);
+                clonedVoice.setErrorMessage("API请求失败: " + response.code());
+                clonedVoice.setUpdateTime(LocalDateTime.now());
+                clonedVoiceRepository.save(clonedVoice);
             }
-
-        } catch (Exception e) {
-            log.error("提交克隆任务失败: {}", e.getMessage(), e);
-            clonedVoice.setStatus(ClonedVoice.CloneStatus.FAILED);
-            clonedVoice.setErrorMessage(e.getMessage());
-            clonedVoice.setUpdateTime(LocalDateTime.now());
-            clonedVoiceRepository.save(clonedVoice);
         }
     }
 
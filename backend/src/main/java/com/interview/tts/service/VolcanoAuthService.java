@@ -3,6 +3,7 @@ package com.interview.tts.service;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.interview.tts.exception.BusinessException;
+import com.interview.tts.service.upstream.HttpClients;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.springframework.beans.factory.annotation.Value;
@@ -39,11 +40,10 @@ public class VolcanoAuthService {
 
     private final OkHttpClient httpClient;
 
-    public VolcanoAuthService() {
-        this.httpClient = new OkHttpClient.Builder()
+    public VolcanoAuthService(HttpClients httpClients) {
+        this.httpClient = httpClients.create("auth", builder -> builder
                 .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .build();
+                .readTimeout(30, TimeUnit.SECONDS));
     }
 
     @PostConstruct
@@ -0,0 +1,23 @@
+package com.interview.tts.service.job;
+
+import com.interview.tts.entity.SynthesisJob;
+
+/**
+ * 任务处理器，按type()注册到JobQueue
+ * 同一任务可能因实例崩溃而重复执行，handle需要可重入（根据业务记录的状态跳过已完成的步骤）
+ */
+public interface JobHandler {
+
+    String type();
+
+    /**
+     * 执行任务，抛出异常则按退避重试
+     */
+    void handle(SynthesisJob job) throws Exception;
+
+    /**
+     * 超过最大重试次数进入死信时回调，用于把业务记录标记为失败
+     */
+    default void onDeadLetter(SynthesisJob job, Throwable lastError) {
+    }
+}
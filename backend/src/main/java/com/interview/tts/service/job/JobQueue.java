@@ -0,0 +1,295 @@
+package com.interview.tts.service.job;
+
+import com.alibaba.fastjson.JSON;
+import com.interview.tts.entity.SynthesisJob;
+import com.interview.tts.repository.SynthesisJobRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于synthesis_job表的持久化任务队列
+ * 任务先落库再执行，工作线程按优先级领取并持有租约，执行期间定期续约；
+ * 实例崩溃或重启后租约过期，任务重新排队由任意实例继续执行。
+ * 失败按指数退避重试，超过最大次数进入死信(DEAD)。增加工作线程或实例即可提高吞吐
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JobQueue {
+
+    private final SynthesisJobRepository jobRepository;
+    private final ObjectProvider<JobHandler> handlerProvider;
+
+    @Value("${job-queue.workers:4}")
+    private int workers;
+
+    @Value("${job-queue.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${job-queue.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+
+    @Value("${job-queue.max-attempts:5}")
+    private int defaultMaxAttempts;
+
+    @Value("${job-queue.backoff-base-ms:5000}")
+    private long backoffBaseMs;
+
+    @Value("${job-queue.backoff-max-ms:600000}")
+    private long backoffMaxMs;
+
+    private final String nodeId = resolveNodeId();
+    private final Map<String, JobHandler> handlers = new HashMap<>();
+    // 本实例正在执行的任务，定期续约
+    private final Map<Long, SynthesisJob> running = new ConcurrentHashMap<>();
+    private final Object wakeUp = new Object();
+
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+
+    private ExecutorService workerPool;
+    private ScheduledExecutorService leaseKeeper;
+    private volatile boolean stopped;
+
+    /**
+     * 应用启动完成后开始执行，先回收上次运行遗留的过期租约
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        handlerProvider.orderedStream().forEach(handler -> handlers.put(handler.type(), handler));
+
+        AtomicInteger index = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "job-worker-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        leaseKeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "job-lease-keeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        leaseKeeper.scheduleWithFixedDelay(this::maintainLeases, 0, Math.max(1000, leaseMs / 3), TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < workers; i++) {
+            workerPool.submit(this::workerLoop);
+        }
+        log.info("任务队列启动: node={}, workers={}, handlers={}", nodeId, workers, handlers.keySet());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        if (workerPool != null) {
+            workerPool.shutdownNow();
+        }
+        if (leaseKeeper != null) {
+            leaseKeeper.shutdownNow();
+        }
+    }
+
+    public Long enqueue(String type, Object payload) {
+        return enqueue(type, payload, 0);
+    }
+
+    /**
+     * 提交任务，落库后返回任务ID
+     * @param payload 任务参数，序列化为JSON
+     * @param priority 数值越大越先执行
+     */
+    public Long enqueue(String type, Object payload, int priority) {
+        SynthesisJob job = new SynthesisJob();
+        job.setJobType(type);
+        job.setPayload(payload instanceof String ? (String) payload : JSON.toJSONString(payload));
+        job.setPriority(priority);
+        job.setMaxAttempts(defaultMaxAttempts);
+        job = jobRepository.save(job);
+        log.info("任务入队: id={}, type={}, priority={}", job.getId(), type, priority);
+
+        synchronized (wakeUp) {
+            wakeUp.notifyAll();
+        }
+        return job.getId();
+    }
+
+    private void workerLoop() {
+        while (!stopped && !Thread.currentThread().isInterrupted()) {
+            try {
+                SynthesisJob job = claimNext();
+                if (job == null) {
+                    synchronized (wakeUp) {
+                        wakeUp.wait(pollIntervalMs);
+                    }
+                    continue;
+                }
+                execute(job);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                // Error也不能让工作线程退出，否则线程池里的循环少一个且不会补上
+                log.error("任务队列工作线程异常: {}", e.getMessage(), e);
+                sleepQuietly(pollIntervalMs);
+            }
+        }
+    }
+
+    /**
+     * 按优先级取候选任务，逐个尝试领取，被其他线程/实例抢先的跳过
+     */
+    private SynthesisJob claimNext() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> candidates = jobRepository.findRunnableIds(now, PageRequest.of(0, workers * 2));
+        for (Long id : candidates) {
+            if (jobRepository.claim(id, nodeId, now.plus(Duration.ofMillis(leaseMs)), now) == 1) {
+                SynthesisJob job = jobRepository.findById(id).orElse(null);
+                if (job != null) {
+                    return job;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void execute(SynthesisJob job) {
+        JobHandler handler = handlers.get(job.getJobType());
+        if (handler == null) {
+            deadLetter(job, null, new IllegalStateException("未注册的任务类型: " + job.getJobType()));
+            return;
+        }
+        // 领取时已计入本次执行，超过上限说明前几次执行时实例崩溃
+        if (job.getAttempts() > job.getMaxAttempts()) {
+            deadLetter(job, handler, new IllegalStateException("执行次数超过上限"));
+            return;
+        }
+
+        running.put(job.getId(), job);
+        long startTime = System.currentTimeMillis();
+        try {
+            handler.handle(job);
+            jobRepository.finish(job.getId(), nodeId, SynthesisJob.JobStatus.SUCCEEDED, job.getRunAt(), null, LocalDateTime.now());
+            succeeded.increment();
+            log.info("任务完成: id={}, type={}, 耗时{}ms", job.getId(), job.getJobType(), System.currentTimeMillis() - startTime);
+        } catch (Throwable e) {
+            // 处理器抛出的Error（如StackOverflowError）同样记为失败，否则任务停留在RUNNING直到租约过期
+            if (job.getAttempts() >= job.getMaxAttempts()) {
+                deadLetter(job, handler, e);
+            } else {
+                long delayMs = Math.min(backoffMaxMs, backoffBaseMs << Math.min(job.getAttempts() - 1, 20));
+                jobRepository.finish(job.getId(), nodeId, SynthesisJob.JobStatus.PENDING,
+                        LocalDateTime.now().plus(Duration.ofMillis(delayMs)), truncate(e), LocalDateTime.now());
+                retried.increment();
+                log.warn("任务失败，{}ms后重试: id={}, type={}, 第{}次, {}", delayMs, job.getId(), job.getJobType(),
+                        job.getAttempts(), e.getMessage());
+            }
+        } finally {
+            running.remove(job.getId());
+        }
+    }
+
+    private void deadLetter(SynthesisJob job, JobHandler handler, Throwable error) {
+        jobRepository.finish(job.getId(), nodeId, SynthesisJob.JobStatus.DEAD, job.getRunAt(), truncate(error), LocalDateTime.now());
+        deadLettered.increment();
+        log.error("任务进入死信: id={}, type={}, 执行{}次, {}", job.getId(), job.getJobType(), job.getAttempts(), error.getMessage());
+        if (handler != null) {
+            try {
+                handler.onDeadLetter(job, error);
+            } catch (Exception e) {
+                log.error("死信回调失败: id={}, {}", job.getId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 为本实例执行中的任务续约，并回收其他实例遗留的过期租约
+     */
+    private void maintainLeases() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            if (!running.isEmpty()) {
+                jobRepository.renewLeases(new ArrayList<>(running.keySet()), nodeId, now.plus(Duration.ofMillis(leaseMs)));
+            }
+            int released = jobRepository.releaseExpired(now);
+            if (released > 0) {
+                recovered.add(released);
+                log.warn("回收过期租约的任务: {}个", released);
+                synchronized (wakeUp) {
+                    wakeUp.notifyAll();
+                }
+            }
+        } catch (Exception e) {
+            log.error("任务租约维护失败: {}", e.getMessage());
+        }
+    }
+
+    public QueueStats getStats() {
+        return new QueueStats(nodeId, running.size(),
+                jobRepository.countByStatus(SynthesisJob.JobStatus.PENDING),
+                jobRepository.countByStatus(SynthesisJob.JobStatus.RUNNING),
+                jobRepository.countByStatus(SynthesisJob.JobStatus.DEAD),
+                succeeded.sum(), retried.sum(), deadLettered.sum(), recovered.sum());
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class QueueStats {
+        private String nodeId;
+        private int runningOnThisNode;
+        private long pending;
+        private long running;
+        private long dead;
+        private long succeeded;
+        private long retried;
+        private long deadLettered;
+        private long recovered;
+    }
+
+    private static String truncate(Throwable e) {
+        String message = e.getClass().getSimpleName() + ": " + e.getMessage();
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String resolveNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
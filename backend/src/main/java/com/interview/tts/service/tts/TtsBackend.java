@@ -0,0 +1,52 @@
+package com.interview.tts.service.tts;
+
+import com.interview.tts.service.DouyinTtsService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * 语音合成引擎，由 TtsRouter 按优先级和健康状况选择
+ */
+public interface TtsBackend {
+
+    /**
+     * 引擎名，用于配置优先级和熔断统计
+     */
+    String name();
+
+    boolean isEnabled();
+
+    /**
+     * 本引擎可用的音色
+     */
+    List<Voice> voices();
+
+    /**
+     * 合成文本
+     * @param voice 本引擎的音色ID
+     * @param hedgeUserId 交互式请求的用户ID，支持对冲的引擎可据此对慢请求发起对冲（可为null）
+     * @param partSink 按顺序接收MP3分段，为null时不流式输出
+     * @param progressListener 分段进度回调，不分段的引擎在合成完成时回调一次（可为null）
+     * @param upstreamLatency 每次上游调用的耗时（不含本地排队），熔断器按其中最慢的一次判断慢调用
+     * @return 完整音频 (MP3)
+     */
+    byte[] synthesize(String text, String voice, Long hedgeUserId, Consumer<byte[]> partSink,
+                      DouyinTtsService.ChunkProgressListener progressListener,
+                      LongConsumer upstreamLatency) throws Exception;
+
+    /**
+     * 音色描述，切换引擎时按语言和性别匹配
+     */
+    @Data
+    @AllArgsConstructor
+    class Voice {
+        private String id;
+        private String language;
+        // female / male
+        private String gender;
+    }
+}
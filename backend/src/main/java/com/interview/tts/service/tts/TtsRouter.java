@@ -0,0 +1,273 @@
+package com.interview.tts.service.tts;
+
+import com.interview.tts.config.TtsRouterProperties;
+import com.interview.tts.exception.BusinessException;
+import com.interview.tts.service.DouyinTtsService;
+import com.interview.tts.util.CircuitBreaker;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 合成引擎路由
+ * 按配置的优先级选择引擎，健康分低的排到后面，熔断打开的直接跳过（毫秒级失败，不再等满超时）；
+ * 当前引擎失败时切换到下一个支持该音色（或等价音色）的引擎。流式输出已经发出分段后不再切换，避免音频重复
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TtsRouter {
+
+    private static final double HEALTH_ALPHA = 0.2;
+    // 本地限流拒绝，请求没有发往上游
+    private static final Set<String> LOCAL_REJECTION_CODES = Set.of(
+            BusinessException.UPSTREAM_BUSY, BusinessException.SYNTHESIS_BUSY, BusinessException.SYNTHESIS_QUEUED);
+
+    private final List<TtsBackend> backends;
+    private final TtsRouterProperties properties;
+
+    private final List<BackendState> states = new ArrayList<>();
+    private final LongAdder failovers = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        List<String> order = properties.getOrder();
+        List<TtsBackend> sorted = new ArrayList<>(backends);
+        sorted.sort(Comparator.comparingInt(b -> order.contains(b.name()) ? order.indexOf(b.name()) : order.size()));
+        TtsRouterProperties.Breaker breaker = properties.getBreaker();
+        for (TtsBackend backend : sorted) {
+            states.add(new BackendState(backend, new CircuitBreaker(backend.name(), breaker.getWindowSize(),
+                    breaker.getMinCalls(), breaker.getFailureRateThreshold(), breaker.getSlowCallMs(),
+                    breaker.getOpenMs(), breaker.getHalfOpenCalls())));
+        }
+        log.info("合成引擎路由: {}", states.stream().map(s -> s.backend.name()).toList());
+    }
+
+    public byte[] generateAudio(String text, String voiceName) {
+        return synthesize(text, voiceName, null, null, null);
+    }
+
+    public byte[] synthesize(String text, String voiceName, Long hedgeUserId, Consumer<byte[]> partSink) {
+        return synthesize(text, voiceName, hedgeUserId, partSink, null);
+    }
+
+    /**
+     * @param hedgeUserId 交互式请求的用户ID（可为null）
+     * @param partSink 按顺序接收MP3分段，为null时不流式输出
+     * @param progressListener 分段进度回调，切换引擎后从新引擎的分段重新计数（可为null）
+     */
+    public byte[] synthesize(String text, String voiceName, Long hedgeUserId, Consumer<byte[]> partSink,
+                             DouyinTtsService.ChunkProgressListener progressListener) {
+        AtomicBoolean emitted = new AtomicBoolean(false);
+        Consumer<byte[]> sink = partSink == null ? null : part -> {
+            emitted.set(true);
+            partSink.accept(part);
+        };
+
+        BusinessException lastError = null;
+        String lastBackend = null;
+        for (BackendState state : candidates()) {
+            String voice = resolveVoice(state, voiceName);
+            if (voice == null) {
+                continue;
+            }
+            if (!state.breaker.tryAcquire()) {
+                state.shortCircuited.increment();
+                continue;
+            }
+            if (lastBackend != null) {
+                failovers.increment();
+                log.warn("合成引擎切换: {} -> {}, voice={}", lastBackend, state.backend.name(), voice);
+            }
+            lastBackend = state.backend.name();
+
+            long start = System.nanoTime();
+            AtomicLong slowestCallMs = new AtomicLong();
+            try {
+                byte[] audio = state.backend.synthesize(text, voice, hedgeUserId, sink, progressListener,
+                        callMs -> slowestCallMs.accumulateAndGet(callMs, Math::max));
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                // 慢调用按单次上游调用判断，长文本整体耗时长不代表上游变慢
+                state.breaker.onSuccess(slowestCallMs.get());
+                state.record(true, elapsedMs);
+                return audio;
+            } catch (Exception e) {
+                lastError = e instanceof BusinessException ? (BusinessException) e : BusinessException.ttsFailed();
+                if (isLocalRejection(e)) {
+                    // 本地排队或连接数已满，请求没有到达上游，不影响熔断和健康分，仍可切换到其他引擎
+                    state.breaker.onIgnored();
+                    log.warn("合成引擎本地繁忙: backend={}, {}", state.backend.name(), e.getMessage());
+                } else {
+                    state.breaker.onFailure();
+                    state.record(false, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    log.warn("合成引擎调用失败: backend={}, {}", state.backend.name(), e.getMessage());
+                }
+                if (emitted.get()) {
+                    throw lastError;
+                }
+            }
+        }
+
+        if (lastError != null) {
+            throw lastError;
+        }
+        unavailable.increment();
+        log.error("没有可用的合成引擎: voice={}", voiceName);
+        throw BusinessException.ttsUnavailable();
+    }
+
+    private static boolean isLocalRejection(Exception e) {
+        if (!(e instanceof BusinessException)) {
+            return false;
+        }
+        return LOCAL_REJECTION_CODES.contains(((BusinessException) e).getCode());
+    }
+
+    /**
+     * 启用的引擎，健康的按优先级在前，健康分低的按优先级在后
+     */
+    private List<BackendState> candidates() {
+        List<BackendState> healthy = new ArrayList<>();
+        List<BackendState> degraded = new ArrayList<>();
+        for (BackendState state : states) {
+            if (!state.backend.isEnabled()) {
+                continue;
+            }
+            (state.getHealth(properties.getBreaker().getOpenMs()) >= properties.getMinHealth() ? healthy : degraded).add(state);
+        }
+        healthy.addAll(degraded);
+        return healthy;
+    }
+
+    /**
+     * 该引擎使用的音色：原音色 > 配置的等价音色 > 相同语言和性别的音色；都没有则不使用该引擎
+     * 不在任何引擎音色列表中的音色只交给优先级最高的引擎，由其按自身规则处理
+     */
+    private String resolveVoice(BackendState state, String voiceName) {
+        Set<String> ids = state.voiceIds();
+        if (ids.contains(voiceName)) {
+            return voiceName;
+        }
+        for (Map.Entry<String, String> entry : properties.getVoiceEquivalents().entrySet()) {
+            if (entry.getKey().equals(voiceName) && ids.contains(entry.getValue())) {
+                return entry.getValue();
+            }
+            if (entry.getValue().equals(voiceName) && ids.contains(entry.getKey())) {
+                return entry.getKey();
+            }
+        }
+
+        TtsBackend.Voice source = states.stream()
+                .flatMap(s -> s.backend.voices().stream())
+                .filter(v -> v.getId().equals(voiceName))
+                .findFirst()
+                .orElse(null);
+        if (source == null) {
+            return state == states.get(0) ? voiceName : null;
+        }
+        return state.backend.voices().stream()
+                .filter(v -> Objects.equals(v.getLanguage(), source.getLanguage())
+                        && Objects.equals(v.getGender(), source.getGender()))
+                .map(TtsBackend.Voice::getId)
+                .findFirst()
+                .orElse(null);
+    }
+
+    public RouterStats getStats() {
+        List<BackendStats> backendStats = states.stream()
+                .map(s -> new BackendStats(s.backend.name(), s.backend.isEnabled(), s.breaker.getState().name(),
+                        Math.round(s.getHealth(properties.getBreaker().getOpenMs()) * 100) / 100.0, s.getAvgLatencyMs(),
+                        s.calls.sum(), s.failures.sum(), s.shortCircuited.sum()))
+                .toList();
+        return new RouterStats(failovers.sum(), unavailable.sum(), backendStats);
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class RouterStats {
+        private long failovers;
+        private long unavailable;
+        private List<BackendStats> backends;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class BackendStats {
+        private String name;
+        private boolean enabled;
+        private String breakerState;
+        private double health;
+        private long avgLatencyMs;
+        private long calls;
+        private long failures;
+        private long shortCircuited;
+    }
+
+    private static class BackendState {
+        private final TtsBackend backend;
+        private final CircuitBreaker breaker;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder shortCircuited = new LongAdder();
+        private double health = 1.0;
+        private double avgLatencyMs;
+        private long updatedAt = System.currentTimeMillis();
+        private Set<String> voiceIds;
+
+        BackendState(TtsBackend backend, CircuitBreaker breaker) {
+            this.backend = backend;
+            this.breaker = breaker;
+        }
+
+        Set<String> voiceIds() {
+            if (voiceIds == null) {
+                voiceIds = backend.voices().stream().map(TtsBackend.Voice::getId).collect(Collectors.toSet());
+            }
+            return voiceIds;
+        }
+
+        synchronized void record(boolean success, long elapsedMs) {
+            calls.increment();
+            if (!success) {
+                failures.increment();
+            }
+            health = health * (1 - HEALTH_ALPHA) + (success ? HEALTH_ALPHA : 0);
+            updatedAt = System.currentTimeMillis();
+            if (success) {
+                avgLatencyMs = avgLatencyMs == 0 ? elapsedMs : avgLatencyMs * (1 - HEALTH_ALPHA) + elapsedMs * HEALTH_ALPHA;
+            }
+        }
+
+        /**
+         * 降级后的引擎很少再被调用，健康分按 halfLifeMs 半衰期向 1 恢复，使其能重新排到前面接受试探
+         */
+        synchronized double getHealth(long halfLifeMs) {
+            if (halfLifeMs <= 0) {
+                return health;
+            }
+            double decay = Math.pow(0.5, (double) (System.currentTimeMillis() - updatedAt) / halfLifeMs);
+            return 1 - (1 - health) * decay;
+        }
+
+        synchronized long getAvgLatencyMs() {
+            return (long) avgLatencyMs;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.interview.tts.service.tts;
+
+import com.interview.tts.service.DouyinTtsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * 火山引擎 v1 HTTP 合成（分段并行、分段缓存、对冲）
+ */
+@Component
+@RequiredArgsConstructor
+public class VolcengineV1Backend implements TtsBackend {
+
+    public static final String NAME = "volc-v1";
+
+    private final DouyinTtsService ttsService;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public List<Voice> voices() {
+        return ttsService.listChineseVoices().stream()
+                .map(v -> new Voice(v.getName(), v.getLocale(), v.getGender().toLowerCase(Locale.ROOT)))
+                .toList();
+    }
+
+    /**
+     * 上游耗时按单个分段的HTTP调用计，长文本分段越多总耗时越长，但不代表上游变慢
+     */
+    @Override
+    public byte[] synthesize(String text, String voice, Long hedgeUserId, Consumer<byte[]> partSink,
+                             DouyinTtsService.ChunkProgressListener progressListener,
+                             LongConsumer upstreamLatency) {
+        if (partSink != null) {
+            return ttsService.generateAudioStreaming(text, voice, hedgeUserId, progressListener, upstreamLatency, partSink);
+        }
+        return ttsService.generateAudio(text, voice, progressListener, hedgeUserId, upstreamLatency);
+    }
+}
@@ -0,0 +1,98 @@
+package com.interview.tts.service.tts;
+
+import com.interview.tts.config.TtsV2Properties;
+import com.interview.tts.service.DouyinTtsService;
+import com.interview.tts.service.ttsv2.TtsV2Service;
+import com.interview.tts.service.ttsv2.TtsV2StreamListener;
+import com.interview.tts.service.ttsv2.VoiceInfo;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * 火山引擎 v2 双向流式合成（常驻WebSocket连接池）
+ */
+@Component
+@RequiredArgsConstructor
+public class VolcengineV2Backend implements TtsBackend {
+
+    public static final String NAME = "volc-v2";
+
+    private static final Pattern SSML_TAG = Pattern.compile("<[^>]+>");
+
+    private final TtsV2Service ttsV2Service;
+    private final TtsV2Properties properties;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @Override
+    public List<Voice> voices() {
+        return VoiceInfo.EMOTION_VOICES.stream()
+                .map(v -> new Voice(v.getId(), v.getLanguage(), "男".equals(v.getGender()) ? "male" : "female"))
+                .toList();
+    }
+
+    /**
+     * 一次会话的总时长随文本长度增长，上游耗时按会话开始到首个音频分片计
+     */
+    @Override
+    public byte[] synthesize(String text, String voice, Long hedgeUserId, Consumer<byte[]> partSink,
+                             DouyinTtsService.ChunkProgressListener progressListener,
+                             LongConsumer upstreamLatency) throws Exception {
+        String plainText = toPlainText(text);
+        byte[] audioData = ttsV2Service.synthesizeAudio(plainText, voice, new TtsV2StreamListener() {
+            private long sessionStart;
+
+            @Override
+            public void onSessionStart() {
+                sessionStart = System.nanoTime();
+            }
+
+            @Override
+            public void onAudio(ByteBuffer audio) {
+                if (sessionStart != 0 && upstreamLatency != null) {
+                    upstreamLatency.accept(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sessionStart));
+                    sessionStart = 0;
+                }
+                if (partSink != null) {
+                    partSink.accept(toArray(audio));
+                }
+            }
+        });
+        // 一次会话合成全文，不分段
+        if (progressListener != null) {
+            progressListener.onProgress(1, 1);
+        }
+        return audioData;
+    }
+
+    /**
+     * 双向流式接口按纯文本朗读，SSML 标签去掉，停顿由标点体现
+     */
+    private static String toPlainText(String text) {
+        if (!text.trim().startsWith("<speak")) {
+            return text;
+        }
+        return SSML_TAG.matcher(text).replaceAll("").trim();
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,256 @@
+package com.interview.tts.service.ttsv2;
+
+import com.interview.tts.config.TtsV2Properties;
+import com.interview.tts.exception.BusinessException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TTS v2.0 WebSocket连接池
+ * 连接建立并完成START_CONNECTION后常驻复用，每次合成只需START_SESSION
+ * 心跳断线、空闲超时、超过最长存活时间的连接由后台线程回收
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TtsV2ConnectionPool {
+
+    private final TtsV2Properties properties;
+
+    private final List<TtsV2WebSocketClient> connections = new ArrayList<>();
+    // 正在建立中的连接数，计入最大连接数
+    private int pending;
+
+    private long created;
+    private long reused;
+    private long evicted;
+
+    private ScheduledExecutorService evictor;
+
+    @PostConstruct
+    public void init() {
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ttsv2-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        evictor.scheduleWithFixedDelay(this::evict, 10, 10, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictor.shutdownNow();
+        List<TtsV2WebSocketClient> all;
+        synchronized (this) {
+            all = new ArrayList<>(connections);
+            connections.clear();
+        }
+        all.forEach(TtsV2WebSocketClient::close);
+    }
+
+    /**
+     * 借出一个会话，优先复用已有连接，连接数未满时新建
+     * @param voiceType 音色类型，用于选择resource ID
+     */
+    public TtsV2Session acquire(String voiceType) throws Exception {
+        String resourceId = getResourceIdForVoice(voiceType);
+        TtsV2Properties.Pool config = properties.getPool();
+        long deadline = System.currentTimeMillis() + config.getAcquireTimeoutMs();
+
+        while (true) {
+            TtsV2WebSocketClient toClose = null;
+            synchronized (this) {
+                TtsV2WebSocketClient available = findAvailable(resourceId, config.getMaxSessionsPerConnection());
+                if (available != null) {
+                    reused++;
+                    return borrow(available);
+                }
+                if (connections.size() + pending >= config.getMaxConnections()) {
+                    // 连接数已满时让出一条其他resourceId的空闲连接
+                    toClose = findIdle();
+                    if (toClose == null) {
+                        long wait = deadline - System.currentTimeMillis();
+                        if (wait <= 0) {
+                            // 本地连接数已满，请求没有发往上游，与上游排队超时同样按繁忙处理
+                            log.warn("获取TTSv2连接超时: connections={}, resourceId={}", connections.size(), resourceId);
+                            throw BusinessException.upstreamBusy();
+                        }
+                        wait(wait);
+                        continue;
+                    }
+                    connections.remove(toClose);
+                    evicted++;
+                }
+                pending++;
+            }
+
+            if (toClose != null) {
+                toClose.close();
+            }
+            return openSession(resourceId);
+        }
+    }
+
+    /**
+     * 新建连接并直接占用，加入连接池前先计入活跃会话，避免被其他线程抢先借走
+     */
+    private TtsV2Session openSession(String resourceId) throws Exception {
+        TtsV2WebSocketClient connection = new TtsV2WebSocketClient(resourceId);
+        try {
+            connection.open(properties);
+        } catch (Exception e) {
+            connection.close();
+            synchronized (this) {
+                pending--;
+                notifyAll();
+            }
+            throw e;
+        }
+        log.info("TTSv2连接池新建连接: connectId={}, resourceId={}", connection.getConnectId(), resourceId);
+        synchronized (this) {
+            pending--;
+            connections.add(connection);
+            created++;
+            return borrow(connection);
+        }
+    }
+
+    private synchronized TtsV2Session borrow(TtsV2WebSocketClient connection) {
+        connection.setActiveSessions(connection.getActiveSessions() + 1);
+        connection.setLastUsedAt(System.currentTimeMillis());
+        return new TtsV2Session(this, connection);
+    }
+
+    /**
+     * 归还会话占用的连接
+     * @param reusable 会话是否正常结束，否则关闭该连接
+     */
+    void release(TtsV2WebSocketClient connection, boolean reusable) {
+        boolean close = false;
+        synchronized (this) {
+            connection.setActiveSessions(connection.getActiveSessions() - 1);
+            connection.setLastUsedAt(System.currentTimeMillis());
+            if (!reusable || !connection.isHealthy()) {
+                close = connections.remove(connection);
+                if (close) {
+                    evicted++;
+                }
+            }
+            notifyAll();
+        }
+        if (close) {
+            log.info("TTSv2连接不可复用，关闭: connectId={}", connection.getConnectId());
+            connection.close();
+        }
+    }
+
+    private TtsV2WebSocketClient findAvailable(String resourceId, int maxSessions) {
+        for (TtsV2WebSocketClient connection : connections) {
+            if (connection.getResourceId().equals(resourceId)
+                    && connection.getActiveSessions() < maxSessions
+                    && connection.isHealthy()) {
+                return connection;
+            }
+        }
+        return null;
+    }
+
+    private TtsV2WebSocketClient findIdle() {
+        TtsV2WebSocketClient oldest = null;
+        for (TtsV2WebSocketClient connection : connections) {
+            if (connection.getActiveSessions() == 0
+                    && (oldest == null || connection.getLastUsedAt() < oldest.getLastUsedAt())) {
+                oldest = connection;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * 回收断线、空闲超时和超过最长存活时间的空闲连接
+     */
+    private void evict() {
+        TtsV2Properties.Pool config = properties.getPool();
+        long now = System.currentTimeMillis();
+        List<TtsV2WebSocketClient> expired = new ArrayList<>();
+        synchronized (this) {
+            Iterator<TtsV2WebSocketClient> it = connections.iterator();
+            while (it.hasNext()) {
+                TtsV2WebSocketClient connection = it.next();
+                if (connection.getActiveSessions() > 0) {
+                    continue;
+                }
+                if (!connection.isHealthy()
+                        || now - connection.getLastUsedAt() > config.getIdleTimeoutMs()
+                        || now - connection.getCreatedAt() > config.getMaxLifetimeMs()) {
+                    it.remove();
+                    expired.add(connection);
+                    evicted++;
+                }
+            }
+            if (!expired.isEmpty()) {
+                notifyAll();
+            }
+        }
+        for (TtsV2WebSocketClient connection : expired) {
+            log.info("TTSv2连接池回收连接: connectId={}", connection.getConnectId());
+            connection.close();
+        }
+    }
+
+    /**
+     * 获取Resource ID - 优先使用配置文件的值
+     * 配置文件: volcengine.tts.v2.resource-id
+     */
+    private String getResourceIdForVoice(String voiceType) {
+        String configuredResourceId = properties.getResourceId();
+        if (configuredResourceId != null && !configuredResourceId.isEmpty()) {
+            return configuredResourceId;
+        }
+        // 备用：根据音色选择
+        if (voiceType == null) {
+            return "seed-tts-2.0";
+        }
+        if (voiceType.startsWith("S_")) {
+            return "volc.megatts.default";
+        }
+        return "seed-tts-2.0";
+    }
+
+    public synchronized PoolStats getStats() {
+        PoolStats stats = new PoolStats();
+        stats.setConnections(connections.size());
+        stats.setPending(pending);
+        stats.setActiveSessions(connections.stream().mapToInt(TtsV2WebSocketClient::getActiveSessions).sum());
+        stats.setMaxConnections(properties.getPool().getMaxConnections());
+        stats.setCreated(created);
+        stats.setReused(reused);
+        stats.setEvicted(evicted);
+        return stats;
+    }
+
+    /**
+     * 连接池统计
+     */
+    @Data
+    public static class PoolStats {
+        private int connections;
+        private int pending;
+        private int activeSessions;
+        private int maxConnections;
+        private long created;
+        private long reused;
+        private long evicted;
+    }
+}
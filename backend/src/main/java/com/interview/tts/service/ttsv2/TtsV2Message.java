@@ -3,13 +3,23 @@ package com.interview.tts.service.ttsv2;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 
 /**
  * TTS v2.0 消息格式 (来自官方示例 volcengine_bidirection_demo)
+ *
+ * 帧结构 (大端):
+ * header(headerSize*4字节) | [event] | [sessionId长度+内容] | [connectId长度+内容] | [sequence] | [errorCode] | payload长度+内容
+ * - event: flag为WITH_EVENT时存在
+ * - sessionId: 带event、不是ERROR帧且不是连接级事件时存在（与官方示例的解码一致，ERROR帧带event时也不含sessionId）
+ * - connectId: CONNECTION_STARTED / CONNECTION_FAILED / CONNECTION_FINISHED 时存在
+ * - sequence: flag为POSITIVE_SEQ / NEGATIVE_SEQ时存在
+ * - errorCode: type为ERROR时存在
+ *
+ * 解码时payload是原始缓冲区的切片，不复制；音频帧直接从切片写出
  */
 @Slf4j
 @Data
@@ -19,6 +29,15 @@ public class TtsV2Message {
     // Header大小 (1 = 4字节)
     private static final byte HEADER_SIZE = 1;
 
+    // 编码缓冲区初始大小，文本帧一般在1KB以内
+    private static final int ENCODE_BUFFER_SIZE = 4096;
+    // 超过该大小的帧不放入线程缓冲区，避免长期占用大块直接内存
+    private static final int ENCODE_BUFFER_MAX = 256 * 1024;
+    private static final ThreadLocal<ByteBuffer> ENCODE_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(ENCODE_BUFFER_SIZE));
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
     // 消息类型
     public enum MsgType {
         INVALID((byte) 0),
@@ -70,7 +89,7 @@ public class TtsV2Message {
     private String connectId;
     private int sequence;
     private int errorCode;
-    private byte[] payload;
+    private ByteBuffer payload = EMPTY;
 
     public TtsV2Message(MsgType type, MsgFlag flag) {
         this.type = type;
@@ -81,210 +100,271 @@ public class TtsV2Message {
      * 解码消息
      */
     public static TtsV2Message unmarshal(byte[] data) {
-        if (data == null || data.length < 4) {
-            throw new IllegalArgumentException("消息数据过短: " + (data == null ? 0 : data.length));
+        if (data == null) {
+            throw new IllegalArgumentException("消息数据过短: 0");
         }
+        return unmarshal(ByteBuffer.wrap(data));
+    }
 
-        // Debug: 打印原始字节
-        StringBuilder hex = new StringBuilder();
-        for (int i = 0; i < Math.min(data.length, 20); i++) {
-            hex.append(String.format("%02X ", data[i]));
+    /**
+     * 解码消息，payload为data的切片 (不复制)
+     * 调用方需保证data解码后不再被改写；Java-WebSocket每个帧的ByteBuffer都是新分配的，可以直接使用
+     */
+    public static TtsV2Message unmarshal(ByteBuffer data) {
+        int start = data.position();
+        int end = data.limit();
+        if (end - start < 4) {
+            throw new IllegalArgumentException("消息数据过短: " + (end - start));
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("原始消息: {}", hexDump(data, start, Math.min(end - start, 20)));
         }
-        log.debug("原始消息: {}", hex);
-
-        ByteBuffer buffer = ByteBuffer.wrap(data);
-
-        // 解析第一个字节: version + headerSize
-        int versionAndHeaderSize = buffer.get() & 0xFF;
-        byte version = (byte) ((versionAndHeaderSize >> 4) & 0x0F);
-        byte headerSize = (byte) (versionAndHeaderSize & 0x0F);
-
-        // 解析第二个字节: type + flag
-        int typeAndFlag = data[1] & 0xFF;
-        MsgType type = MsgType.fromValue((typeAndFlag >> 4) & 0x0F);
-        MsgFlag flag = MsgFlag.fromValue(typeAndFlag & 0x0F);
-
-        // 第三个字节: serialization + compression (跳过)
-        // buffer.get();
 
-        // 跳过padding字节到第4字节位置
-        int headerSizeInt = 4 * headerSize;  // 4
-        int paddingSize = headerSizeInt - 3;  // 1
-        for (int i = 0; i < paddingSize; i++) {
-            buffer.get();
+        int versionAndHeaderSize = data.get(start) & 0xFF;
+        int typeAndFlag = data.get(start + 1) & 0xFF;
+        int serializationAndCompression = data.get(start + 2) & 0xFF;
+
+        TtsV2Message message = new TtsV2Message(
+                MsgType.fromValue((typeAndFlag >> 4) & 0x0F), MsgFlag.fromValue(typeAndFlag & 0x0F));
+        message.setVersion((byte) ((versionAndHeaderSize >> 4) & 0x0F));
+        message.setHeaderSize((byte) (versionAndHeaderSize & 0x0F));
+        message.setSerialization((byte) ((serializationAndCompression >> 4) & 0x0F));
+        message.setCompression((byte) (serializationAndCompression & 0x0F));
+
+        int pos = start + 4 * message.getHeaderSize();
+
+        if (message.getFlag() == MsgFlag.WITH_EVENT) {
+            message.setEvent(TtsV2EventType.fromValue(readInt(data, pos, end)));
+            pos += 4;
+            if (hasSessionId(message.getType(), message.getEvent())) {
+                int length = readInt(data, pos, end);
+                message.setSessionId(readString(data, pos + 4, length, end));
+                pos += 4 + length;
+            }
+            if (hasConnectId(message.getEvent())) {
+                int length = readInt(data, pos, end);
+                message.setConnectId(readString(data, pos + 4, length, end));
+                pos += 4 + length;
+            }
+        } else if (hasSequence(message.getFlag())) {
+            message.setSequence(readInt(data, pos, end));
+            pos += 4;
         }
 
-        TtsV2Message message = new TtsV2Message(type, flag);
-        message.setVersion(version);
-        message.setHeaderSize(headerSize);
+        if (message.getType() == MsgType.ERROR) {
+            message.setErrorCode(readInt(data, pos, end));
+            pos += 4;
+        }
 
-        log.debug("解析: type={}, flag={}, remaining={}", type, flag, buffer.remaining());
+        if (end - pos >= 4) {
+            int length = readInt(data, pos, end);
+            checkBounds(pos + 4, length, end);
+            message.payload = data.slice(pos + 4, length);
+        }
+        return message;
+    }
 
-        // ERROR类型消息的特殊处理
-        if (type == MsgType.ERROR) {
-            // 读取错误码 (4字节)
-            if (data.length >= 8) {
-                int errorCode = ((data[4] & 0xFF) << 24)
-                             | ((data[5] & 0xFF) << 16)
-                             | ((data[6] & 0xFF) << 8)
-                             | (data[7] & 0xFF);
-                message.setErrorCode(errorCode);
-                log.debug("错误码: {}", errorCode);
-            }
+    /**
+     * 编码为新分配的字节数组
+     */
+    public byte[] marshal() {
+        byte[] bytes = new byte[encodedLength()];
+        encodeTo(ByteBuffer.wrap(bytes));
+        return bytes;
+    }
 
-            // 读取payload
-            if (data.length > 12) {
-                int payloadLength = ((data[8] & 0xFF) << 24)
-                                 | ((data[9] & 0xFF) << 16)
-                                 | ((data[10] & 0xFF) << 8)
-                                 | (data[11] & 0xFF);
-                log.debug("ERROR payloadLength: {}", payloadLength);
-                if (payloadLength > 0 && data.length >= 12 + payloadLength) {
-                    byte[] payload = new byte[payloadLength];
-                    System.arraycopy(data, 12, payload, 0, payloadLength);
-                    message.setPayload(payload);
-                }
-            }
-            return message;
+    /**
+     * 编码到当前线程复用的直接缓冲区
+     * 返回的缓冲区在同一线程下次调用前有效；WebSocketClient.send在返回前已把数据复制到发送帧，可直接传入
+     */
+    public ByteBuffer marshalPooled() {
+        int length = encodedLength();
+        if (length > ENCODE_BUFFER_MAX) {
+            return ByteBuffer.wrap(marshal());
         }
+        ByteBuffer buffer = ENCODE_BUFFER.get();
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocateDirect(Math.max(length, buffer.capacity() * 2));
+            ENCODE_BUFFER.set(buffer);
+        }
+        buffer.clear();
+        encodeTo(buffer);
+        buffer.flip();
+        return buffer;
+    }
 
-        // 读取event (如果flag包含WITH_EVENT) - event在byte[4-7]
+    /**
+     * 编码后的字节数
+     */
+    public int encodedLength() {
+        int length = 4 * headerSize;
         if (flag == MsgFlag.WITH_EVENT) {
-            // 直接从byte[4]读取event
-            if (data.length >= 8) {
-                int eventValue = ((data[4] & 0xFF) << 24)
-                                | ((data[5] & 0xFF) << 16)
-                                | ((data[6] & 0xFF) << 8)
-                                | (data[7] & 0xFF);
-                log.debug("event值: {}", eventValue);
-                message.setEvent(TtsV2EventType.fromValue(eventValue));
+            length += 4;
+            if (hasSessionId(type, event)) {
+                length += 4 + utf8Length(sessionId);
             }
-
-            // 如果不是连接相关事件，读取sessionId - 从byte[8]开始是sessionId length
-            if (message.getEvent() != TtsV2EventType.CONNECTION_STARTED &&
-                message.getEvent() != TtsV2EventType.CONNECTION_FAILED &&
-                message.getEvent() != TtsV2EventType.CONNECTION_FINISHED) {
-                if (data.length >= 12) {
-                    int sessionIdLength = ((data[8] & 0xFF) << 24)
-                                        | ((data[9] & 0xFF) << 16)
-                                        | ((data[10] & 0xFF) << 8)
-                                        | (data[11] & 0xFF);
-                    log.debug("sessionIdLength: {}", sessionIdLength);
-                    if (sessionIdLength > 0 && data.length >= 12 + sessionIdLength) {
-                        byte[] sessionIdBytes = new byte[sessionIdLength];
-                        System.arraycopy(data, 12, sessionIdBytes, 0, sessionIdLength);
-                        message.setSessionId(new String(sessionIdBytes, StandardCharsets.UTF_8));
-                    }
-                }
-            } else {
-                // 连接相关事件 - 读取connectId
-                if (data.length >= 12) {
-                    int connectIdLength = ((data[8] & 0xFF) << 24)
-                                        | ((data[9] & 0xFF) << 16)
-                                        | ((data[10] & 0xFF) << 8)
-                                        | (data[11] & 0xFF);
-                    log.debug("connectIdLength: {}", connectIdLength);
-                    if (connectIdLength > 0 && data.length >= 12 + connectIdLength) {
-                        byte[] connectIdBytes = new byte[connectIdLength];
-                        System.arraycopy(data, 12, connectIdBytes, 0, connectIdLength);
-                        message.setConnectId(new String(connectIdBytes, StandardCharsets.UTF_8));
-                    }
-                }
+            if (hasConnectId(event)) {
+                length += 4 + utf8Length(connectId);
             }
+        } else if (hasSequence(flag)) {
+            length += 4;
+        }
+        if (type == MsgType.ERROR) {
+            length += 4;
+        }
+        return length + 4 + payload.remaining();
+    }
 
-            // 读取payload - 找payload length的位置
-            int payloadStart = 12;
-            if (message.getSessionId() != null) {
-                payloadStart = 12 + message.getSessionId().length();
-            } else if (message.getConnectId() != null) {
-                payloadStart = 12 + message.getConnectId().length();
+    private void encodeTo(ByteBuffer buffer) {
+        // Header: version + headerSize | type + flag | serialization + compression | padding
+        buffer.put((byte) (((version & 0x0F) << 4) | (headerSize & 0x0F)));
+        buffer.put((byte) (((type.getValue() & 0x0F) << 4) | (flag.getValue() & 0x0F)));
+        buffer.put((byte) (((serialization & 0x0F) << 4) | (compression & 0x0F)));
+        for (int i = 3; i < 4 * headerSize; i++) {
+            buffer.put((byte) 0);
+        }
+
+        if (flag == MsgFlag.WITH_EVENT) {
+            buffer.putInt(event != null ? event.getValue() : 0);
+            if (hasSessionId(type, event)) {
+                putString(buffer, sessionId);
             }
-            // 对齐到4字节
-            while (payloadStart % 4 != 0) payloadStart++;
-
-            if (data.length > payloadStart + 4) {
-                int payloadLength = ((data[payloadStart] & 0xFF) << 24)
-                                  | ((data[payloadStart + 1] & 0xFF) << 16)
-                                  | ((data[payloadStart + 2] & 0xFF) << 8)
-                                  | (data[payloadStart + 3] & 0xFF);
-                log.debug("payloadLength: {}", payloadLength);
-                if (payloadLength > 0 && data.length >= payloadStart + 4 + payloadLength) {
-                    byte[] payload = new byte[payloadLength];
-                    System.arraycopy(data, payloadStart + 4, payload, 0, payloadLength);
-                    message.setPayload(payload);
-                }
+            if (hasConnectId(event)) {
+                putString(buffer, connectId);
             }
+        } else if (hasSequence(flag)) {
+            buffer.putInt(sequence);
+        }
 
-            return message;
+        if (type == MsgType.ERROR) {
+            buffer.putInt(errorCode);
         }
 
-        // 不带event的消息
-        return message;
+        buffer.putInt(payload.remaining());
+        buffer.put(payload.duplicate());
     }
 
     /**
-     * 编码消息
+     * payload内容 (复制)；音频数据请用writePayloadTo避免复制
      */
-    public byte[] marshal() throws Exception {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-
-        // Header: version + headerSize
-        buffer.write(((version & 0x0F) << 4) | (headerSize & 0x0F));
-        // Header: type + flag
-        buffer.write(((type.getValue() & 0x0F) << 4) | (flag.getValue() & 0x0F));
-        // Header: serialization + compression
-        buffer.write(((serialization & 0x0F) << 4) | (compression & 0x0F));
-
-        // Padding to headerSize * 4 bytes
-        int headerSizeInt = 4 * headerSize;
-        int padding = headerSizeInt - buffer.size();
-        while (padding > 0) {
-            buffer.write(0);
-            padding--;
+    public byte[] getPayload() {
+        if (!payload.hasRemaining()) {
+            return null;
         }
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return bytes;
+    }
 
-        // Event (4 bytes)
-        if (event != null) {
-            byte[] eventBytes = ByteBuffer.allocate(4).putInt(event.getValue()).array();
-            buffer.write(eventBytes);
-        }
+    public void setPayload(byte[] payload) {
+        this.payload = payload != null ? ByteBuffer.wrap(payload) : EMPTY;
+    }
+
+    /**
+     * payload的只读视图 (不复制)
+     */
+    public ByteBuffer getPayloadBuffer() {
+        return payload.asReadOnlyBuffer();
+    }
 
-        // SessionId (length + data)
-        if (sessionId != null) {
-            byte[] sessionIdBytes = sessionId.getBytes(StandardCharsets.UTF_8);
-            buffer.write(ByteBuffer.allocate(4).putInt(sessionIdBytes.length).array());
-            buffer.write(sessionIdBytes);
+    public int getPayloadSize() {
+        return payload.remaining();
+    }
+
+    /**
+     * 将payload写入输出流，堆内缓冲区直接写出底层数组
+     */
+    public void writePayloadTo(OutputStream out) throws IOException {
+        if (payload.hasArray()) {
+            out.write(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+        } else {
+            byte[] bytes = getPayload();
+            if (bytes != null) {
+                out.write(bytes);
+            }
         }
+    }
+
+    /**
+     * payload按UTF-8解码为字符串
+     */
+    public String getPayloadAsString() {
+        return StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
+    }
+
+    /**
+     * 连接级事件不带sessionId
+     */
+    private static boolean hasSessionId(MsgType type, TtsV2EventType event) {
+        return type != MsgType.ERROR
+                && event != TtsV2EventType.START_CONNECTION
+                && event != TtsV2EventType.FINISH_CONNECTION
+                && !hasConnectId(event);
+    }
+
+    private static boolean hasConnectId(TtsV2EventType event) {
+        return event == TtsV2EventType.CONNECTION_STARTED
+                || event == TtsV2EventType.CONNECTION_FAILED
+                || event == TtsV2EventType.CONNECTION_FINISHED;
+    }
+
+    private static boolean hasSequence(MsgFlag flag) {
+        return flag == MsgFlag.POSITIVE_SEQ || flag == MsgFlag.NEGATIVE_SEQ;
+    }
 
-        // ConnectId (length + data)
-        if (connectId != null) {
-            byte[] connectIdBytes = connectId.getBytes(StandardCharsets.UTF_8);
-            buffer.write(ByteBuffer.allocate(4).putInt(connectIdBytes.length).array());
-            buffer.write(connectIdBytes);
+    private static int readInt(ByteBuffer data, int pos, int end) {
+        checkBounds(pos, 4, end);
+        return data.getInt(pos);
+    }
+
+    private static String readString(ByteBuffer data, int pos, int length, int end) {
+        checkBounds(pos, length, end);
+        if (data.hasArray()) {
+            return new String(data.array(), data.arrayOffset() + pos, length, StandardCharsets.UTF_8);
         }
+        return StandardCharsets.UTF_8.decode(data.slice(pos, length)).toString();
+    }
 
-        // Sequence (4 bytes)
-        if (sequence != 0) {
-            buffer.write(ByteBuffer.allocate(4).putInt(sequence).array());
+    private static void checkBounds(int pos, int length, int end) {
+        if (length < 0 || pos + length > end) {
+            throw new IllegalArgumentException("消息数据不完整: pos=" + pos + ", length=" + length + ", limit=" + end);
         }
+    }
 
-        // ErrorCode (4 bytes)
-        if (errorCode != 0) {
-            buffer.write(ByteBuffer.allocate(4).putInt(errorCode).array());
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null || value.isEmpty()) {
+            buffer.putInt(0);
+            return;
         }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
 
-        // Payload (length + data)
-        if (payload != null && payload.length > 0) {
-            buffer.write(ByteBuffer.allocate(4).putInt(payload.length).array());
-            buffer.write(payload);
+    private static int utf8Length(String value) {
+        if (value == null) {
+            return 0;
         }
+        // sessionId/connectId为UUID，纯ASCII时无需编码即可得到长度
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return value.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        return value.length();
+    }
 
-        return buffer.toByteArray();
+    private static String hexDump(ByteBuffer data, int start, int length) {
+        StringBuilder hex = new StringBuilder(length * 3);
+        for (int i = 0; i < length; i++) {
+            hex.append(String.format("%02X ", data.get(start + i)));
+        }
+        return hex.toString();
     }
 
     @Override
     public String toString() {
         return String.format("TtsV2Message{type=%s, event=%s, sessionId=%s, payloadSize=%d}",
-            type, event, sessionId, payload != null ? payload.length : 0);
+            type, event, sessionId, payload.remaining());
     }
 }
@@ -21,6 +21,11 @@ public class TtsV2Response {
      */
     private String audioUrl;
 
+    /**
+     * WebVTT字幕文件URL (与音频同目录)
+     */
+    private String subtitleUrl;
+
     /**
      * 音频时长(秒)
      */
@@ -53,5 +58,31 @@ public class TtsV2Response {
          * 结束时间(毫秒)
          */
         private Long endTime;
+
+        /**
+         * 字级时间戳 (开启enable_timestamp且服务端返回时存在)
+         */
+        private List<Word> words;
+    }
+
+    /**
+     * 字级时间戳
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Word {
+        private String text;
+
+        /**
+         * 开始时间(毫秒，相对整段音频)
+         */
+        private Long startTime;
+
+        /**
+         * 结束时间(毫秒，相对整段音频)
+         */
+        private Long endTime;
     }
 }
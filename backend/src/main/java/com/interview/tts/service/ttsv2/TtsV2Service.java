@@ -2,9 +2,17 @@ package com.interview.tts.service.ttsv2;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.interview.tts.config.TtsV2Properties;
+import com.interview.tts.exception.BusinessException;
 import com.interview.tts.service.StorageService;
+import com.interview.tts.service.upstream.HttpClients;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -14,6 +22,12 @@ import com.interview.tts.service.ttsv2.TtsV2Message.MsgType;
 import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -31,10 +45,32 @@ public class TtsV2Service {
     private StorageService storageService;
 
     @Autowired
-    private TtsV2WebSocketClient webSocketClient;
+    private TtsV2ConnectionPool connectionPool;
+
+    @Autowired
+    private HttpClients httpClients;
+
+    // 下载已归档的音频，与其他上游调用共用连接池
+    private OkHttpClient downloadClient;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // 流式合成后的音频归档线程，停机时等待已提交的归档完成
+    private static final long ARCHIVE_SHUTDOWN_TIMEOUT_SECONDS = 30;
+    private final AtomicInteger archiveThreadCount = new AtomicInteger();
+    private final ExecutorService archiveExecutor = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "ttsv2-archive-" + archiveThreadCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    public void init() {
+        downloadClient = httpClients.create("download", builder -> builder
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS));
+    }
+
     /**
      * 简化版合成 - 直接传入文本和音色
      */
@@ -77,16 +113,67 @@ public class TtsV2Service {
             return java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(path));
         }
         // 远程URL需要下载
-        java.net.URL urlObj = new java.net.URL(url);
-        try (java.io.InputStream is = urlObj.openStream()) {
-            return is.readAllBytes();
+        Request request = new Request.Builder().url(url).get().build();
+        try (Response response = downloadClient.newCall(request).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new RuntimeException("音频下载失败: " + response.code());
+            }
+            return response.body().bytes();
         }
     }
 
     /**
-     * 合成语音
+     * 只合成不归档，直接返回完整音频，音频分片到达时回调listener
+     */
+    public byte[] synthesizeAudio(String text, String voiceId, TtsV2StreamListener listener) throws Exception {
+        TtsV2Request request = new TtsV2Request();
+        request.setText(text);
+        request.setVoiceType(voiceId);
+        return runSession(request, listener).getAudioData();
+    }
+
+    /**
+     * 合成语音，等待音频上传完成后返回URL
      */
     public TtsV2Response synthesize(TtsV2Request request) throws Exception {
+        SessionResult result = runSession(request, TtsV2StreamListener.NONE);
+        return archive(result);
+    }
+
+    /**
+     * 流式合成：音频分片和句子事件到达时立即回调listener，完整音频在后台上传
+     * @return 上传完成后的响应（含音频URL和字幕）
+     */
+    public CompletableFuture<TtsV2Response> synthesizeStreaming(TtsV2Request request, TtsV2StreamListener listener) throws Exception {
+        SessionResult result = runSession(request, listener);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return archive(result);
+            } catch (Exception e) {
+                log.error("TTSv2音频归档失败", e);
+                throw new CompletionException(e);
+            }
+        }, archiveExecutor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        archiveExecutor.shutdown();
+        try {
+            if (!archiveExecutor.awaitTermination(ARCHIVE_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                List<Runnable> dropped = archiveExecutor.shutdownNow();
+                log.warn("TTSv2音频归档未在{}秒内完成，放弃{}个任务", ARCHIVE_SHUTDOWN_TIMEOUT_SECONDS, dropped.size());
+            }
+        } catch (InterruptedException e) {
+            archiveExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 执行一次合成会话，边接收边回调listener，同时缓存完整音频和字幕
+     */
+    private SessionResult runSession(TtsV2Request request, TtsV2StreamListener listener) throws Exception {
         log.info("开始TTSv2合成, voiceType={}, textLength={}", request.getVoiceType(), request.getText().length());
 
         // 1. 解析指令和标签
@@ -98,25 +185,15 @@ public class TtsV2Service {
         // 打印完整请求参数
         try {
             String reqParamsJson = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(reqParams);
-            log.info("=== 完整请求参数 ===\n{}", reqParamsJson);
+            log.debug("=== 完整请求参数 ===\n{}", reqParamsJson);
         } catch (Exception e) {
-            log.info("请求参数: {}", reqParams);
+            log.debug("请求参数: {}", reqParams);
         }
 
-        // 3. 创建WebSocket客户端并连接
-        TtsV2WebSocketClient client = webSocketClient;
+        // 3. 从连接池借出会话 (连接已完成START_CONNECTION，根据音色选择resource ID)
+        TtsV2Session session = connectionPool.acquire(request.getVoiceType());
         try {
-            // 根据音色选择正确的resource ID
-            client.connect(request.getVoiceType());
-
-            // 4. 发送连接开始
-            client.sendStartConnection();
-            client.waitForEvent(TtsV2EventType.CONNECTION_STARTED.getValue());
-
-            // 5. 生成会话ID并发送会话开始 (使用官方demo格式)
-            String sessionId = UUID.randomUUID().toString();
-
-            // 构建START_SESSION请求 (与官方demo一致)
+            // 4. 发送会话开始 - 构建START_SESSION请求 (与官方demo一致)
             Map<String, Object> startSessionRequest = new HashMap<>();
             startSessionRequest.put("user", reqParams.get("user"));
             startSessionRequest.put("namespace", reqParams.get("namespace"));
@@ -124,55 +201,37 @@ public class TtsV2Service {
             startSessionRequest.put("event", TtsV2EventType.START_SESSION.getValue());
 
             String startSessionJson = objectMapper.writeValueAsString(startSessionRequest);
-            log.info("=== START_SESSION ===\n{}", startSessionJson);
-            client.sendStartSession(sessionId, startSessionJson.getBytes(StandardCharsets.UTF_8));
-            client.waitForEvent(TtsV2EventType.SESSION_STARTED.getValue());
-
-            // 6. 发送文本 (使用官方示例格式 - 字符逐个发送)
-            String textToSynthesize = parsed.getCleanText();
-
-            // 构建TASK_REQUEST请求 - 逐字符发送
-            for (char c : textToSynthesize.toCharArray()) {
-                // 复制基础req_params并添加text
-                @SuppressWarnings("unchecked")
-                Map<String, Object> baseReqParams = (Map<String, Object>) reqParams.get("req_params");
-                Map<String, Object> currentReqParams = new HashMap<>(baseReqParams);
-                currentReqParams.put("text", String.valueOf(c));
-
-                // 构建完整的TASK_REQUEST
-                Map<String, Object> taskRequest = new HashMap<>();
-                taskRequest.put("user", reqParams.get("user"));
-                taskRequest.put("namespace", reqParams.get("namespace"));
-                taskRequest.put("req_params", currentReqParams);
-                taskRequest.put("event", TtsV2EventType.TASK_REQUEST.getValue());
-
-                String taskJson = objectMapper.writeValueAsString(taskRequest);
-                log.info("=== TASK_REQUEST (char: {}) ===\n{}", c, taskJson);
-                client.sendTaskRequest(sessionId, taskJson.getBytes(StandardCharsets.UTF_8));
-            }
+            log.debug("=== START_SESSION ===\n{}", startSessionJson);
+            session.start(startSessionJson.getBytes(StandardCharsets.UTF_8));
+            listener.onSessionStart();
 
-            // 7. 发送FINISH_SESSION
-            client.sendFinishSession(sessionId);
+            // 5. 发送文本 - 按句子合并成帧，复用预先序列化的TASK_REQUEST模板
+            TtsV2TextFeeder feeder = TtsV2TextFeeder.create(objectMapper, reqParams, properties.getFeeder(), session::sendText);
+            feeder.feedAll(parsed.getCleanText());
+            log.info("TASK_REQUEST发送完成, frames={}, chars={}", feeder.getFrameCount(), feeder.getCharCount());
 
-            // 8. 接收音频流和字幕
+            // 6. 发送FINISH_SESSION
+            session.finish();
+
+            // 7. 接收音频流和字幕，时间轴取音频播放位置而不是消息到达时间
             ByteArrayOutputStream audioStream = new ByteArrayOutputStream();
-            List<TtsV2Response.Subtitle> subtitles = new ArrayList<>();
-            long startTime = System.currentTimeMillis();
-            String currentSentence = "";
-            long sentenceStartTime = 0;
+            TtsV2SubtitleTracker subtitleTracker = new TtsV2SubtitleTracker(objectMapper);
 
             while (true) {
-                TtsV2Message message = client.waitForAnyMessage(30000);
+                TtsV2Message message = session.poll(30000);
                 if (message == null) {
-                    break;
+                    // 超时或连接断开，会话状态未知，连接不再复用；已收到的音频不完整，不能当作合成结果返回和归档
+                    log.error("TTSv2接收超时或连接断开, receivedBytes={}", audioStream.size());
+                    session.markBroken();
+                    throw BusinessException.ttsFailed();
                 }
 
                 // 检查是否是错误消息
                 if (message.getType() == MsgType.ERROR) {
                     String errorMsg = "未知错误";
                     int errorCode = message.getErrorCode();
-                    if (message.getPayload() != null) {
-                        errorMsg = new String(message.getPayload(), StandardCharsets.UTF_8);
+                    if (message.getPayloadSize() > 0) {
+                        errorMsg = message.getPayloadAsString();
                     }
                     log.error("TTSv2服务返回错误: errorCode={}, errorMsg={}", errorCode, errorMsg);
                     throw new RuntimeException("TTSv2服务返回错误: " + errorCode + " - " + errorMsg);
@@ -182,66 +241,83 @@ public class TtsV2Service {
 
                 // 句子开始
                 if (event == TtsV2EventType.TTS_SENTENCE_START) {
-                    if (message.getPayload() != null) {
-                        currentSentence = new String(message.getPayload(), StandardCharsets.UTF_8);
-                        sentenceStartTime = System.currentTimeMillis() - startTime;
+                    String sentence = subtitleTracker.onSentenceStart(message.getPayloadAsString());
+                    if (sentence != null && !sentence.isEmpty()) {
+                        listener.onSentenceStart(sentence);
                     }
                 }
                 // 句子结束
                 else if (event == TtsV2EventType.TTS_SENTENCE_END) {
-                    long sentenceEndTime = System.currentTimeMillis() - startTime;
-                    if (!currentSentence.isEmpty()) {
-                        subtitles.add(TtsV2Response.Subtitle.builder()
-                            .text(currentSentence)
-                            .startTime(sentenceStartTime)
-                            .endTime(sentenceEndTime)
-                            .build());
+                    String sentence = subtitleTracker.onSentenceEnd(message.getPayloadAsString());
+                    if (sentence != null) {
+                        listener.onSentenceEnd(sentence);
                     }
-                    currentSentence = "";
                 }
                 // 音频数据
                 else if (event == TtsV2EventType.TTS_RESPONSE) {
-                    if (message.getPayload() != null) {
-                        audioStream.write(message.getPayload());
+                    if (message.getPayloadSize() > 0) {
+                        message.writePayloadTo(audioStream);
+                        subtitleTracker.onAudio(message.getPayloadBuffer());
+                        listener.onAudio(message.getPayloadBuffer());
                     }
                 }
                 // 会话结束
                 else if (event == TtsV2EventType.SESSION_FINISHED) {
                     break;
                 }
+                // 会话失败
+                else if (event == TtsV2EventType.SESSION_FAILED) {
+                    String errorMsg = message.getPayloadSize() > 0 ? message.getPayloadAsString() : "未知错误";
+                    throw new RuntimeException("TTSv2会话失败: " + errorMsg);
+                }
             }
 
             // 注意：收到SESSION_FINISHED后，不需要再发送FINISH_SESSION
-            // 服务端已经处理完session，直接发送FINISH_CONNECTION即可
+            // 服务端已经处理完session，连接保留在连接池中供下次复用
+            session.close();
 
-            // 9. 计算时长
-            int duration = (int) ((System.currentTimeMillis() - startTime) / 1000);
-
-            // 10. 上传到R2
             byte[] audioData = audioStream.toByteArray();
             if (audioData.length == 0) {
                 throw new RuntimeException("未收到音频数据");
             }
+            // 8. 时长取解析出的音频帧总时长
+            int duration = (int) Math.max(1, Math.round(subtitleTracker.getDurationMs() / 1000.0));
+            return new SessionResult(audioData, duration, subtitleTracker.getSubtitles());
 
-            String fileName = "ttsv2_" + System.currentTimeMillis() + ".mp3";
-            String r2Url = storageService.uploadAudio(audioData, fileName);
-
-            log.info("TTSv2合成完成, audioSize={}, duration={}", audioData.length, duration);
+        } catch (Exception e) {
+            session.markBroken();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
 
-            return TtsV2Response.builder()
-                .audioUrl(r2Url)
-                .duration(duration)
-                .subtitles(subtitles)
-                .build();
+    /**
+     * 上传音频到R2，字幕以WebVTT格式存放在音频旁边
+     */
+    private TtsV2Response archive(SessionResult result) throws Exception {
+        String fileName = "ttsv2_" + System.currentTimeMillis() + ".mp3";
+        String r2Url = storageService.uploadAudio(result.getAudioData(), fileName);
 
-        } finally {
+        String subtitleUrl = null;
+        if (!result.getSubtitles().isEmpty()) {
             try {
-                client.sendFinishConnection();
+                byte[] vtt = TtsV2SubtitleTracker.toWebVtt(result.getSubtitles()).getBytes(StandardCharsets.UTF_8);
+                subtitleUrl = storageService.uploadSidecar(r2Url, vtt, "vtt", "text/vtt; charset=utf-8");
             } catch (Exception e) {
-                log.warn("发送连接关闭失败", e);
+                // 字幕上传失败不影响音频，响应中仍带字幕列表
+                log.warn("TTSv2字幕上传失败: {}", e.getMessage());
             }
-            client.close();
         }
+
+        log.info("TTSv2合成完成, audioSize={}, duration={}", result.getAudioData().length, result.getDuration());
+
+        return TtsV2Response.builder()
+            .audioUrl(r2Url)
+            .subtitleUrl(subtitleUrl)
+            .duration(result.getDuration())
+            .subtitles(result.getSubtitles())
+            .build();
     }
 
     /**
@@ -351,4 +427,15 @@ public class TtsV2Service {
         private List<String> commands;  // #指令
         private List<String> tags;      // 【标签】
     }
+
+    /**
+     * 一次会话的合成结果
+     */
+    @Data
+    @AllArgsConstructor
+    private static class SessionResult {
+        private byte[] audioData;
+        private int duration;
+        private List<TtsV2Response.Subtitle> subtitles;
+    }
 }
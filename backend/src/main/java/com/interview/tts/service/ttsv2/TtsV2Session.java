@@ -0,0 +1,70 @@
+package com.interview.tts.service.ttsv2;
+
+import java.util.UUID;
+
+/**
+ * 从连接池借出的一个合成会话
+ * 用完必须close()归还；会话异常结束时先markBroken()，连接将被关闭而不是复用
+ */
+public class TtsV2Session implements AutoCloseable {
+
+    private final TtsV2ConnectionPool pool;
+    private final TtsV2WebSocketClient connection;
+    private final String sessionId = UUID.randomUUID().toString();
+    private boolean broken;
+    private boolean closed;
+
+    TtsV2Session(TtsV2ConnectionPool pool, TtsV2WebSocketClient connection) {
+        this.pool = pool;
+        this.connection = connection;
+        connection.registerSession(sessionId);
+    }
+
+    /**
+     * 发送START_SESSION并等待SESSION_STARTED
+     */
+    public void start(byte[] payload) throws Exception {
+        connection.sendStartSession(sessionId, payload);
+        connection.waitForEvent(sessionId, TtsV2EventType.SESSION_STARTED);
+    }
+
+    public void sendText(byte[] payload) throws Exception {
+        connection.sendTaskRequest(sessionId, payload);
+    }
+
+    public void finish() throws Exception {
+        connection.sendFinishSession(sessionId);
+    }
+
+    /**
+     * 接收本会话的下一条消息，超时或连接断开返回null
+     */
+    public TtsV2Message poll(long timeoutMs) throws InterruptedException {
+        return connection.poll(sessionId, timeoutMs);
+    }
+
+    /**
+     * 标记会话异常（超时、服务端错误等），连接状态不确定，归还时关闭
+     */
+    public void markBroken() {
+        this.broken = true;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getConnectId() {
+        return connection.getConnectId();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        connection.unregisterSession(sessionId);
+        pool.release(connection, !broken);
+    }
+}
@@ -0,0 +1,37 @@
+package com.interview.tts.service.ttsv2;
+
+import java.nio.ByteBuffer;
+
+/**
+ * TTS v2.0 流式合成回调，在合成线程上按服务端下发顺序调用
+ */
+public interface TtsV2StreamListener {
+
+    TtsV2StreamListener NONE = audio -> {
+    };
+
+    /**
+     * 已借到连接并发出START_SESSION，此后的等待都在上游
+     */
+    default void onSessionStart() throws Exception {
+    }
+
+    /**
+     * 句子开始
+     * @param sentence 服务端返回的句子信息
+     */
+    default void onSentenceStart(String sentence) throws Exception {
+    }
+
+    /**
+     * 音频分片 (MP3)
+     * @param audio 只读视图，引用的数据不会被复用，可以异步发送
+     */
+    void onAudio(ByteBuffer audio) throws Exception;
+
+    /**
+     * 句子结束
+     */
+    default void onSentenceEnd(String sentence) throws Exception {
+    }
+}
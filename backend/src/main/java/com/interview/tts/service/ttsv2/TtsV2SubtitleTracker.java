@@ -0,0 +1,132 @@
+package com.interview.tts.service.ttsv2;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.interview.tts.util.Mp3FrameCounter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 字幕时间轴
+ * 句子的开始/结束时间取事件到达时已收到音频的播放位置（按MP3帧解析），与网络快慢无关；
+ * 服务端返回字级时间戳(enable_timestamp)时，按句子开始位置换算成整段音频的时间
+ */
+@Slf4j
+class TtsV2SubtitleTracker {
+
+    private final ObjectMapper objectMapper;
+    private final Mp3FrameCounter audioPosition = new Mp3FrameCounter();
+    private final List<TtsV2Response.Subtitle> subtitles = new ArrayList<>();
+
+    private String currentSentence;
+    private long sentenceStartMs;
+
+    TtsV2SubtitleTracker(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 句子开始
+     * @return 句子文本
+     */
+    String onSentenceStart(String payload) {
+        currentSentence = parse(payload).text;
+        sentenceStartMs = audioPosition.getDurationMs();
+        return currentSentence;
+    }
+
+    void onAudio(ByteBuffer audio) {
+        audioPosition.feed(audio);
+    }
+
+    /**
+     * 句子结束
+     * @return 句子文本，没有对应的句子时返回null
+     */
+    String onSentenceEnd(String payload) {
+        SentencePayload parsed = parse(payload);
+        String text = currentSentence != null && !currentSentence.isEmpty() ? currentSentence : parsed.text;
+        currentSentence = null;
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        subtitles.add(TtsV2Response.Subtitle.builder()
+            .text(text)
+            .startTime(sentenceStartMs)
+            .endTime(audioPosition.getDurationMs())
+            .words(parsed.words)
+            .build());
+        return text;
+    }
+
+    List<TtsV2Response.Subtitle> getSubtitles() {
+        return subtitles;
+    }
+
+    long getDurationMs() {
+        return audioPosition.getDurationMs();
+    }
+
+    /**
+     * 解析句子事件的payload: {"text": "...", "words": [{"word": "...", "startTime": 0.12, "endTime": 0.3}]}
+     * 字级时间单位为秒、相对本句开始；payload不是JSON时整体作为句子文本
+     */
+    private SentencePayload parse(String payload) {
+        SentencePayload result = new SentencePayload();
+        if (payload == null || !payload.trim().startsWith("{")) {
+            result.text = payload;
+            return result;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(payload);
+            result.text = node.path("text").asText(null);
+            JsonNode words = node.path("words");
+            if (words.isArray() && !words.isEmpty()) {
+                result.words = new ArrayList<>();
+                for (JsonNode word : words) {
+                    result.words.add(TtsV2Response.Word.builder()
+                        .text(word.path("word").asText())
+                        .startTime(sentenceStartMs + seconds(word, "startTime", "start_time"))
+                        .endTime(sentenceStartMs + seconds(word, "endTime", "end_time"))
+                        .build());
+                }
+            }
+        } catch (Exception e) {
+            log.debug("句子事件payload解析失败: {}", payload);
+            result.text = payload;
+        }
+        return result;
+    }
+
+    private static long seconds(JsonNode word, String name, String alternative) {
+        JsonNode value = word.has(name) ? word.get(name) : word.path(alternative);
+        return Math.round(value.asDouble() * 1000);
+    }
+
+    /**
+     * 生成WebVTT字幕，每句一条带序号的cue，可按句跳转
+     */
+    static String toWebVtt(List<TtsV2Response.Subtitle> subtitles) {
+        StringBuilder vtt = new StringBuilder("WEBVTT\n\n");
+        int index = 1;
+        for (TtsV2Response.Subtitle subtitle : subtitles) {
+            vtt.append(index++).append('\n')
+                .append(timestamp(subtitle.getStartTime())).append(" --> ").append(timestamp(subtitle.getEndTime())).append('\n')
+                // 空行会结束cue，文本中的换行替换为空格
+                .append(subtitle.getText().replaceAll("\\s*\\n\\s*", " ")).append("\n\n");
+        }
+        return vtt.toString();
+    }
+
+    private static String timestamp(long ms) {
+        return String.format("%02d:%02d:%02d.%03d", ms / 3_600_000, ms / 60_000 % 60, ms / 1000 % 60, ms % 1000);
+    }
+
+    private static class SentencePayload {
+        private String text;
+        private List<TtsV2Response.Word> words;
+    }
+}
@@ -0,0 +1,238 @@
+package com.interview.tts.service.ttsv2;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.interview.tts.config.TtsV2Properties;
+import com.interview.tts.util.TextChunker;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TASK_REQUEST文本发送器
+ * 按句子/长度把文本合并成帧发送，帧内容由预先序列化好的JSON模板拼接文本得到，不再每帧构建Map和序列化
+ *
+ * 两种用法:
+ * 1. 整段文本: feedAll(text)，首句单独成帧尽快出声，其余句子合并到maxFrameChars
+ * 2. 增量文本(如LLM逐token输出): append(token)，遇到句末标点、超过maxFrameChars或缓冲超过flushIntervalMs时发送，
+ *    最后调用finish()发送剩余文本
+ */
+@Slf4j
+public class TtsV2TextFeeder {
+
+    private static final String TEXT_PLACEHOLDER = "__TTSV2_TEXT__";
+
+    // 增量模式的定时刷新计时线程，所有发送器共享，只负责到点后把刷新交给发送线程
+    private static final ScheduledExecutorService FLUSH_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ttsv2-feeder-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    // 定时刷新的发送线程：发送可能阻塞，不能占用共享的计时线程拖慢其他会话；每个发送器同时最多一个待执行的刷新
+    private static final AtomicInteger FLUSH_THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService FLUSH_SENDER = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ttsv2-feeder-flush-" + FLUSH_THREAD_COUNT.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 帧发送目标，一般为TtsV2Session::sendText
+     */
+    @FunctionalInterface
+    public interface FrameSink {
+        void send(byte[] frame) throws Exception;
+    }
+
+    private final byte[] prefix;
+    private final byte[] suffix;
+    private final FrameSink sink;
+    private final int maxFrameChars;
+    private final long flushIntervalMs;
+
+    private final StringBuilder buffer = new StringBuilder();
+    private ScheduledFuture<?> pendingFlush;
+    // 每次安排或取消定时刷新时递增，已交给发送线程但随后被取消的刷新据此跳过
+    private long flushGeneration;
+    // 定时刷新时发送失败，留到下次调用时抛出
+    private Exception asyncFailure;
+    private int frameCount;
+    private int charCount;
+
+    private TtsV2TextFeeder(byte[] prefix, byte[] suffix, FrameSink sink, TtsV2Properties.Feeder config) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.sink = sink;
+        this.maxFrameChars = config.getMaxFrameChars();
+        this.flushIntervalMs = config.getFlushIntervalMs();
+    }
+
+    /**
+     * 根据请求参数创建发送器，TASK_REQUEST的JSON只序列化一次
+     * @param reqParams buildRequestParams构建的参数 (user, namespace, req_params)
+     */
+    public static TtsV2TextFeeder create(ObjectMapper objectMapper, Map<String, Object> reqParams,
+                                         TtsV2Properties.Feeder config, FrameSink sink) throws JsonProcessingException {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> currentReqParams = new HashMap<>((Map<String, Object>) reqParams.get("req_params"));
+        currentReqParams.put("text", TEXT_PLACEHOLDER);
+
+        Map<String, Object> taskRequest = new HashMap<>();
+        taskRequest.put("user", reqParams.get("user"));
+        taskRequest.put("namespace", reqParams.get("namespace"));
+        taskRequest.put("req_params", currentReqParams);
+        taskRequest.put("event", TtsV2EventType.TASK_REQUEST.getValue());
+
+        String template = objectMapper.writeValueAsString(taskRequest);
+        log.debug("=== TASK_REQUEST 模板 ===\n{}", template);
+        int index = template.indexOf(TEXT_PLACEHOLDER);
+        return new TtsV2TextFeeder(
+                template.substring(0, index).getBytes(StandardCharsets.UTF_8),
+                template.substring(index + TEXT_PLACEHOLDER.length()).getBytes(StandardCharsets.UTF_8),
+                sink, config);
+    }
+
+    /**
+     * 发送整段文本
+     */
+    public void feedAll(String text) throws Exception {
+        for (String frame : TextChunker.splitForStreaming(text, maxFrameChars)) {
+            sendFrame(frame);
+        }
+    }
+
+    /**
+     * 增量追加文本，遇到句末标点或超长时发送已完整的部分
+     */
+    public synchronized void append(CharSequence text) throws Exception {
+        throwAsyncFailure();
+        buffer.append(text);
+
+        int end;
+        while ((end = TextChunker.lastSentenceEnd(buffer)) > 0) {
+            flush(Math.min(end, maxFrameChars));
+        }
+        while (buffer.length() >= maxFrameChars) {
+            flush(maxFrameChars);
+        }
+        if (buffer.length() > 0 && pendingFlush == null) {
+            long generation = ++flushGeneration;
+            pendingFlush = FLUSH_TIMER.schedule(() -> FLUSH_SENDER.execute(() -> flushOnTimer(generation)),
+                    flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 发送缓冲中剩余的文本并停止定时刷新
+     */
+    public synchronized void finish() throws Exception {
+        throwAsyncFailure();
+        if (buffer.length() > 0) {
+            flush(buffer.length());
+        }
+        cancelPendingFlush();
+    }
+
+    public synchronized int getFrameCount() {
+        return frameCount;
+    }
+
+    public synchronized int getCharCount() {
+        return charCount;
+    }
+
+    /**
+     * 在发送线程上执行，持有发送器的锁发送，与append/finish的发送保持顺序
+     */
+    private synchronized void flushOnTimer(long generation) {
+        if (generation != flushGeneration) {
+            return;
+        }
+        pendingFlush = null;
+        if (buffer.length() == 0 || asyncFailure != null) {
+            return;
+        }
+        try {
+            flush(buffer.length());
+        } catch (Exception e) {
+            asyncFailure = e;
+        }
+    }
+
+    private void flush(int length) throws Exception {
+        String frame = buffer.substring(0, length);
+        buffer.delete(0, length);
+        if (buffer.length() == 0) {
+            cancelPendingFlush();
+        }
+        if (!frame.isBlank()) {
+            sendFrame(frame);
+        }
+    }
+
+    private void cancelPendingFlush() {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+            flushGeneration++;
+        }
+    }
+
+    private void throwAsyncFailure() throws Exception {
+        if (asyncFailure != null) {
+            throw asyncFailure;
+        }
+    }
+
+    private synchronized void sendFrame(String text) throws Exception {
+        byte[] escaped = escapeJson(text).getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[prefix.length + escaped.length + suffix.length];
+        System.arraycopy(prefix, 0, frame, 0, prefix.length);
+        System.arraycopy(escaped, 0, frame, prefix.length, escaped.length);
+        System.arraycopy(suffix, 0, frame, prefix.length + escaped.length, suffix.length);
+        sink.send(frame);
+        frameCount++;
+        charCount += text.length();
+        log.debug("TASK_REQUEST: frame={}, chars={}", frameCount, text.length());
+    }
+
+    /**
+     * JSON字符串转义（不含两侧引号）
+     */
+    static String escapeJson(String text) {
+        StringBuilder sb = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String replacement = switch (c) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                case '\b' -> "\\b";
+                case '\f' -> "\\f";
+                default -> c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+            };
+            if (replacement == null) {
+                if (sb != null) {
+                    sb.append(c);
+                }
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(text.length() + 16);
+                sb.append(text, 0, i);
+            }
+            sb.append(replacement);
+        }
+        return sb == null ? text : sb.toString();
+    }
+}
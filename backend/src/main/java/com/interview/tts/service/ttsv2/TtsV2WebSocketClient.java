@@ -5,73 +5,48 @@ import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
 
-import jakarta.annotation.PostConstruct;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
- * TTS v2.0 双向流式WebSocket客户端 (来自官方示例)
+ * TTS v2.0 双向流式WebSocket连接 (协议来自官方示例)
+ * 一个实例对应一条物理连接，由TtsV2ConnectionPool创建和复用
+ * 收到的消息按sessionId分发到各会话的队列，连接级事件进入连接队列
  */
 @Slf4j
-@Component
 public class TtsV2WebSocketClient {
 
-    @Autowired
-    private TtsV2Properties properties;
+    private final String connectId = UUID.randomUUID().toString();
+    private final String resourceId;
+    private final long createdAt = System.currentTimeMillis();
+
+    private final BlockingQueue<TtsV2Message> connectionQueue = new LinkedBlockingQueue<>();
+    private final Map<String, BlockingQueue<TtsV2Message>> sessionQueues = new ConcurrentHashMap<>();
 
-    private BlockingQueue<TtsV2Message> messageQueue = new LinkedBlockingQueue<>();
     private WebSocketClient webSocketClient;
-    private String connectId;
-    private boolean connected = false;
-    private String appId;
-    private String accessToken;
+    private volatile boolean connected = false;
 
-    @PostConstruct
-    public void init() {
-        this.appId = properties.getAppId();
-        this.accessToken = properties.getAccessToken();
-    }
+    // 以下字段由连接池在持锁时读写
+    private int activeSessions;
+    private long lastUsedAt = createdAt;
 
-    /**
-     * 获取Resource ID - 优先使用配置文件的值
-     * 配置文件: volcengine.tts.v2.resource-id
-     */
-    private String getResourceIdForVoice(String voiceType) {
-        // 打印配置文件中的resourceId
-        String configuredResourceId = properties.getResourceId();
-        log.info("配置文件中的resourceId: [{}]", configuredResourceId);
-
-        if (configuredResourceId != null && !configuredResourceId.isEmpty()) {
-            return configuredResourceId;
-        }
-        // 备用：根据音色选择
-        if (voiceType == null) {
-            return "seed-tts-2.0";
-        }
-        if (voiceType.startsWith("S_")) {
-            return "volc.megatts.default";
-        }
-        return "seed-tts-2.0";
+    TtsV2WebSocketClient(String resourceId) {
+        this.resourceId = resourceId;
     }
 
     /**
-     * 创建并连接WebSocket
-     * @param voiceType 音色类型，用于选择正确的resource ID
+     * 建立WebSocket连接并完成START_CONNECTION握手
      */
-    public void connect(String voiceType) throws Exception {
-        this.connectId = UUID.randomUUID().toString();
-
-        // 优先使用配置文件的resourceId
-        String resourceId = getResourceIdForVoice(voiceType);
-
+    void open(TtsV2Properties properties) throws Exception {
+        String appId = properties.getAppId();
+        String accessToken = properties.getAccessToken();
         Map<String, String> headers = Map.of(
             "X-Api-App-Key", appId != null ? appId : "",
             "X-Api-Access-Key", accessToken != null ? accessToken : "",
@@ -79,18 +54,11 @@ public class TtsV2WebSocketClient {
             "X-Api-Connect-Id", connectId
         );
 
-        log.info("=== WebSocket请求头 ===");
-        log.info("X-Api-App-Key: [{}]", appId);
-        log.info("X-Api-Access-Key: [{}]", accessToken);
-        log.info("X-Api-Resource-Id: [{}]", resourceId);
-        log.info("X-Api-Connect-Id: [{}]", connectId);
-        log.info("voiceType: [{}]", voiceType);
-
         webSocketClient = new WebSocketClient(new URI(properties.getWsUrl()), headers) {
             @Override
             public void onOpen(ServerHandshake handshakedata) {
                 connected = true;
-                log.info("TTSv2 WebSocket连接建立成功, ConnectId: {}", connectId);
+                log.info("TTSv2 WebSocket连接建立成功, ConnectId: {}, resourceId: {}", connectId, resourceId);
             }
 
             @Override
@@ -101,9 +69,7 @@ public class TtsV2WebSocketClient {
             @Override
             public void onMessage(ByteBuffer bytes) {
                 try {
-                    TtsV2Message message = TtsV2Message.unmarshal(bytes.array());
-                    log.debug("收到消息: {}", message);
-                    messageQueue.offer(message);
+                    dispatch(TtsV2Message.unmarshal(bytes));
                 } catch (Exception e) {
                     log.error("解析消息失败", e);
                 }
@@ -112,69 +78,111 @@ public class TtsV2WebSocketClient {
             @Override
             public void onClose(int code, String reason, boolean remote) {
                 connected = false;
-                log.info("TTSv2 WebSocket连接关闭: code={}, reason={}", code, reason);
+                log.info("TTSv2 WebSocket连接关闭: connectId={}, code={}, reason={}", connectId, code, reason);
             }
 
             @Override
             public void onError(Exception ex) {
-                log.error("TTSv2 WebSocket错误", ex);
+                log.error("TTSv2 WebSocket错误: connectId={}", connectId, ex);
             }
         };
+        // 内置ping/pong心跳，超过2个间隔无响应自动断开，连接池据此剔除
+        webSocketClient.setConnectionLostTimeout(properties.getPool().getHeartbeatIntervalSeconds());
 
         webSocketClient.connectBlocking(10, TimeUnit.SECONDS);
         if (!connected) {
             throw new RuntimeException("WebSocket连接超时");
         }
+
+        sendStartConnection();
+        waitForConnectionEvent(TtsV2EventType.CONNECTION_STARTED);
     }
 
     /**
-     * 关闭连接
+     * 按sessionId分发消息
      */
-    public void close() {
-        if (webSocketClient != null) {
-            webSocketClient.close();
-            connected = false;
+    private void dispatch(TtsV2Message message) {
+        log.debug("收到消息: {}", message);
+        String sessionId = message.getSessionId();
+        BlockingQueue<TtsV2Message> queue = sessionId != null ? sessionQueues.get(sessionId) : null;
+        if (queue != null) {
+            queue.offer(message);
+            return;
+        }
+        // 不带sessionId的错误消息无法归属，通知所有会话
+        if (message.getType() == TtsV2Message.MsgType.ERROR) {
+            sessionQueues.values().forEach(q -> q.offer(message));
         }
+        connectionQueue.offer(message);
+    }
+
+    /**
+     * 关闭连接，尽量先发送FINISH_CONNECTION
+     */
+    void close() {
+        if (webSocketClient == null) {
+            return;
+        }
+        if (connected) {
+            try {
+                sendFinishConnection();
+            } catch (Exception e) {
+                log.warn("发送连接关闭失败: connectId={}", connectId, e);
+            }
+        }
+        webSocketClient.close();
+        connected = false;
+    }
+
+    /**
+     * 注册会话队列，之后该sessionId的消息进入独立队列
+     */
+    void registerSession(String sessionId) {
+        sessionQueues.put(sessionId, new LinkedBlockingQueue<>());
+    }
+
+    void unregisterSession(String sessionId) {
+        sessionQueues.remove(sessionId);
     }
 
     /**
      * 发送连接开始消息
      */
-    public void sendStartConnection() throws Exception {
+    private void sendStartConnection() throws Exception {
         TtsV2Message message = new TtsV2Message(TtsV2Message.MsgType.FULL_CLIENT_REQUEST, TtsV2Message.MsgFlag.WITH_EVENT);
         message.setEvent(TtsV2EventType.START_CONNECTION);
         message.setPayload("{}".getBytes());
         sendMessage(message);
-        log.info("发送: START_CONNECTION");
+        log.info("发送: START_CONNECTION, connectId={}", connectId);
     }
 
     /**
      * 发送连接关闭消息
      */
-    public void sendFinishConnection() throws Exception {
+    private void sendFinishConnection() throws Exception {
         TtsV2Message message = new TtsV2Message(TtsV2Message.MsgType.FULL_CLIENT_REQUEST, TtsV2Message.MsgFlag.WITH_EVENT);
         message.setEvent(TtsV2EventType.FINISH_CONNECTION);
         message.setPayload("{}".getBytes());
         sendMessage(message);
-        log.info("发送: FINISH_CONNECTION");
+        log.info("发送: FINISH_CONNECTION, connectId={}", connectId);
     }
 
     /**
      * 发送会话开始消息
      */
-    public void sendStartSession(String sessionId, byte[] payload) throws Exception {
+    void sendStartSession(String sessionId, byte[] payload) throws Exception {
         TtsV2Message message = new TtsV2Message(TtsV2Message.MsgType.FULL_CLIENT_REQUEST, TtsV2Message.MsgFlag.WITH_EVENT);
         message.setEvent(TtsV2EventType.START_SESSION);
         message.setSessionId(sessionId);
         message.setPayload(payload);
         sendMessage(message);
-        log.info("发送: START_SESSION, sessionId={}", sessionId);
+        log.info("发送: START_SESSION, sessionId={}, connectId={}", sessionId, connectId);
     }
 
     /**
      * 发送会话结束消息
      */
-    public void sendFinishSession(String sessionId) throws Exception {
+    void sendFinishSession(String sessionId) throws Exception {
         TtsV2Message message = new TtsV2Message(TtsV2Message.MsgType.FULL_CLIENT_REQUEST, TtsV2Message.MsgFlag.WITH_EVENT);
         message.setEvent(TtsV2EventType.FINISH_SESSION);
         message.setSessionId(sessionId);
@@ -186,7 +194,7 @@ public class TtsV2WebSocketClient {
     /**
      * 发送文本请求消息
      */
-    public void sendTaskRequest(String sessionId, byte[] payload) throws Exception {
+    void sendTaskRequest(String sessionId, byte[] payload) throws Exception {
         TtsV2Message message = new TtsV2Message(TtsV2Message.MsgType.FULL_CLIENT_REQUEST, TtsV2Message.MsgFlag.WITH_EVENT);
         message.setEvent(TtsV2EventType.TASK_REQUEST);
         message.setSessionId(sessionId);
@@ -199,33 +207,43 @@ public class TtsV2WebSocketClient {
      */
     private void sendMessage(TtsV2Message message) throws Exception {
         log.debug("发送消息: {}", message);
-        webSocketClient.send(message.marshal());
+        webSocketClient.send(message.marshalPooled());
     }
 
     /**
-     * 接收消息(阻塞)
+     * 等待连接级事件
      */
-    public TtsV2Message receiveMessage() throws InterruptedException {
-        return messageQueue.take();
+    private void waitForConnectionEvent(TtsV2EventType expected) throws InterruptedException {
+        while (true) {
+            TtsV2Message message = connectionQueue.poll(30, TimeUnit.SECONDS);
+            if (message == null) {
+                throw new RuntimeException("等待消息超时");
+            }
+            if (message.getEvent() == expected) {
+                return;
+            }
+            if (message.getEvent() == TtsV2EventType.CONNECTION_FAILED || message.getType() == TtsV2Message.MsgType.ERROR) {
+                throw new RuntimeException("服务返回错误: " + message.getEvent());
+            }
+        }
     }
 
     /**
-     * 等待指定事件
+     * 等待指定会话的事件
      */
-    public TtsV2Message waitForEvent(int expectedEvent) throws InterruptedException {
+    TtsV2Message waitForEvent(String sessionId, TtsV2EventType expected) throws InterruptedException {
         while (true) {
-            TtsV2Message message = messageQueue.poll(30, TimeUnit.SECONDS);
+            TtsV2Message message = poll(sessionId, 30000);
             if (message == null) {
                 throw new RuntimeException("等待消息超时");
             }
 
-            log.debug("收到消息事件: {} (期望: {})", message.getEvent(), expectedEvent);
+            log.debug("收到消息事件: {} (期望: {})", message.getEvent(), expected);
 
-            if (message.getEvent() != null && message.getEvent().getValue() == expectedEvent) {
+            if (message.getEvent() == expected) {
                 return message;
-            } else if (message.getEvent() != null && (
-                       message.getEvent() == TtsV2EventType.CONNECTION_FAILED ||
-                       message.getEvent() == TtsV2EventType.SESSION_FAILED)) {
+            } else if (message.getEvent() == TtsV2EventType.SESSION_FAILED
+                    || message.getType() == TtsV2Message.MsgType.ERROR) {
                 throw new RuntimeException("服务返回错误: " + message.getEvent());
             }
 
@@ -234,14 +252,54 @@ public class TtsV2WebSocketClient {
     }
 
     /**
-     * 等待任意消息(带超时)
+     * 等待指定会话的任意消息(带超时)，连接断开时返回null
      */
-    public TtsV2Message waitForAnyMessage(long timeoutMs) throws InterruptedException {
-        return messageQueue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    TtsV2Message poll(String sessionId, long timeoutMs) throws InterruptedException {
+        BlockingQueue<TtsV2Message> queue = sessionQueues.get(sessionId);
+        if (queue == null) {
+            throw new IllegalStateException("会话未注册: " + sessionId);
+        }
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            // 分段等待，连接中途断开时不必等满超时
+            long remaining = deadline - System.currentTimeMillis();
+            TtsV2Message message = queue.poll(Math.min(remaining, 1000), TimeUnit.MILLISECONDS);
+            if (message != null || !isHealthy() || remaining <= 1000) {
+                return message;
+            }
+        }
+    }
+
+    public boolean isHealthy() {
+        return connected && webSocketClient != null && webSocketClient.isOpen();
+    }
+
+    public String getConnectId() {
+        return connectId;
+    }
+
+    public String getResourceId() {
+        return resourceId;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    int getActiveSessions() {
+        return activeSessions;
+    }
+
+    void setActiveSessions(int activeSessions) {
+        this.activeSessions = activeSessions;
+    }
+
+    long getLastUsedAt() {
+        return lastUsedAt;
     }
 
-    public boolean isConnected() {
-        return connected;
+    void setLastUsedAt(long lastUsedAt) {
+        this.lastUsedAt = lastUsedAt;
     }
 
     @Data
@@ -0,0 +1,209 @@
+package com.interview.tts.service.upstream;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个上游接口的自适应并发限制
+ * 加性增：并发用满且成功时，每轮（约limit个请求）上限+1；
+ * 乘性减：被上游限流、超时或连接失败时上限乘以backoffRatio；
+ * 延迟信号：响应时间超过基线（最近一个窗口内的最小响应时间）的tolerance倍时视为上游开始排队，上限小幅下调。
+ * 一个冷却期（约一个平均响应时间）内最多下调一次，避免同一批失败把上限连续压到底。
+ * 超出上限的请求按先后顺序排队，队列已满或等待超时则拒绝
+ */
+@Slf4j
+public class AdaptiveLimiter {
+
+    public enum Outcome {
+        SUCCESS,
+        // 上游明确限流（429/503或限流错误码）
+        THROTTLED,
+        // 超时、连接失败等
+        DROPPED,
+        // 调用方主动取消（如对冲落选），与上游状态无关，只归还名额
+        CANCELLED
+    }
+
+    private static final int BASELINE_WINDOW = 100;
+    private static final double LATENCY_DECREASE_RATIO = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitMs;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+
+    private double limit;
+    private int inflight;
+    private final Deque<Object> waiting = new ArrayDeque<>();
+
+    private long baselineNanos = Long.MAX_VALUE;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private double smoothedNanos;
+    private long lastDecreaseAt;
+
+    private long succeeded;
+    private long throttled;
+    private long dropped;
+    private long cancelled;
+    private long rejected;
+    private long totalWaitMs;
+    private long waited;
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, int maxQueue,
+                           long maxWaitMs, double backoffRatio, double latencyTolerance) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxQueue = maxQueue;
+        this.maxWaitMs = maxWaitMs;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * 获取一个并发名额，必要时排队
+     * @return 开始时间（纳秒），release时传回
+     */
+    public synchronized long acquire() throws UpstreamRejectedException, InterruptedIOException {
+        if (waiting.isEmpty() && inflight < (int) limit) {
+            inflight++;
+            return System.nanoTime();
+        }
+        if (waiting.size() >= maxQueue) {
+            rejected++;
+            throw new UpstreamRejectedException(name, "上游并发已满，排队请求过多: " + name);
+        }
+
+        Object token = new Object();
+        waiting.addLast(token);
+        long enqueuedAt = System.nanoTime();
+        long deadline = enqueuedAt + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        boolean acquired = false;
+        try {
+            while (waiting.peekFirst() != token || inflight >= (int) limit) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    rejected++;
+                    throw new UpstreamRejectedException(name, "上游并发已满，排队超时: " + name);
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            acquired = true;
+            inflight++;
+            waited++;
+            long now = System.nanoTime();
+            totalWaitMs += TimeUnit.NANOSECONDS.toMillis(now - enqueuedAt);
+            return now;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待上游并发名额时被中断");
+        } finally {
+            waiting.remove(token);
+            if (!acquired) {
+                // 队首放弃后轮到下一个
+                notifyAll();
+            } else if (inflight < (int) limit) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 并发已用满或有请求在排队
+     */
+    public synchronized boolean isSaturated() {
+        return !waiting.isEmpty() || inflight >= (int) limit;
+    }
+
+    public synchronized void release(long startNanos, Outcome outcome) {
+        boolean saturated = inflight >= (int) limit;
+        inflight--;
+        long now = System.nanoTime();
+        long rtt = now - startNanos;
+
+        switch (outcome) {
+            case SUCCESS -> {
+                succeeded++;
+                updateLatency(rtt);
+                if (latencyTolerance > 0 && baselineNanos != Long.MAX_VALUE
+                        && rtt > baselineNanos * latencyTolerance) {
+                    decrease(now, LATENCY_DECREASE_RATIO, "响应变慢");
+                } else if (saturated && limit < maxLimit) {
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            case THROTTLED -> {
+                throttled++;
+                decrease(now, backoffRatio, "上游限流");
+            }
+            case DROPPED -> {
+                dropped++;
+                decrease(now, backoffRatio, "请求失败");
+            }
+            case CANCELLED -> cancelled++;
+        }
+        notifyAll();
+    }
+
+    private void updateLatency(long rtt) {
+        smoothedNanos = smoothedNanos == 0 ? rtt : smoothedNanos * 0.9 + rtt * 0.1;
+        windowMinNanos = Math.min(windowMinNanos, rtt);
+        if (baselineNanos == Long.MAX_VALUE) {
+            baselineNanos = rtt;
+        }
+        // 基线按窗口更新，上游整体变慢（如文本变长）后不会一直沿用旧的最小值
+        if (++windowSamples >= BASELINE_WINDOW) {
+            baselineNanos = windowMinNanos;
+            windowMinNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+    }
+
+    private void decrease(long now, double ratio, String reason) {
+        long cooldown = Math.max(TimeUnit.MILLISECONDS.toNanos(200), (long) smoothedNanos);
+        if (lastDecreaseAt != 0 && now - lastDecreaseAt < cooldown) {
+            return;
+        }
+        lastDecreaseAt = now;
+        double previous = limit;
+        limit = Math.max(minLimit, limit * ratio);
+        if ((int) previous != (int) limit) {
+            log.warn("上游并发上限下调({}): api={}, {} -> {}", reason, name, (int) previous, (int) limit);
+        }
+    }
+
+    public synchronized LimiterStats getStats() {
+        return new LimiterStats(name, (int) limit, inflight, waiting.size(),
+                baselineNanos == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(baselineNanos),
+                TimeUnit.NANOSECONDS.toMillis((long) smoothedNanos),
+                succeeded, throttled, dropped, cancelled, rejected, waited > 0 ? totalWaitMs / waited : 0);
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class LimiterStats {
+        private String api;
+        private int limit;
+        private int inflight;
+        private int queued;
+        private long baselineLatencyMs;
+        private long avgLatencyMs;
+        private long succeeded;
+        private long throttled;
+        private long dropped;
+        private long cancelled;
+        private long rejected;
+        private long avgQueueWaitMs;
+    }
+}
@@ -0,0 +1,199 @@
+package com.interview.tts.service.upstream;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 按调用目标派生HTTP客户端
+ * 派生的客户端共用 HttpClientConfig 的连接池和调度器，超时可按目标在 http-client.targets.{target}.* 覆盖，
+ * 每次调用的耗时、收发字节数、新建连接/TLS握手次数按目标统计
+ */
+@Component
+@RequiredArgsConstructor
+public class HttpClients {
+
+    private final OkHttpClient sharedHttpClient;
+    private final Environment environment;
+
+    private final Map<String, TargetMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * @param target 调用目标，如 tts / llm / download
+     * @param customizer 服务自身的默认配置（超时、拦截器），配置文件中的超时优先
+     */
+    public OkHttpClient create(String target, Consumer<OkHttpClient.Builder> customizer) {
+        TargetMetrics targetMetrics = metrics.computeIfAbsent(target, TargetMetrics::new);
+        OkHttpClient.Builder builder = sharedHttpClient.newBuilder()
+                .eventListenerFactory(call -> new MetricsListener(targetMetrics));
+        customizer.accept(builder);
+
+        String prefix = "http-client.targets." + target + ".";
+        Long connectTimeoutMs = environment.getProperty(prefix + "connect-timeout-ms", Long.class);
+        if (connectTimeoutMs != null) {
+            builder.connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+        Long readTimeoutMs = environment.getProperty(prefix + "read-timeout-ms", Long.class);
+        if (readTimeoutMs != null) {
+            builder.readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+        Long writeTimeoutMs = environment.getProperty(prefix + "write-timeout-ms", Long.class);
+        if (writeTimeoutMs != null) {
+            builder.writeTimeout(writeTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+        Long callTimeoutMs = environment.getProperty(prefix + "call-timeout-ms", Long.class);
+        if (callTimeoutMs != null) {
+            builder.callTimeout(callTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+        return builder.build();
+    }
+
+    public HttpClientStats getStats() {
+        List<TargetStats> targets = new ArrayList<>();
+        metrics.values().forEach(m -> targets.add(m.snapshot()));
+        return new HttpClientStats(
+                sharedHttpClient.connectionPool().connectionCount(),
+                sharedHttpClient.connectionPool().idleConnectionCount(),
+                sharedHttpClient.dispatcher().runningCallsCount(),
+                sharedHttpClient.dispatcher().queuedCallsCount(),
+                targets);
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class HttpClientStats {
+        private int connections;
+        private int idleConnections;
+        private int runningAsyncCalls;
+        private int queuedAsyncCalls;
+        private List<TargetStats> targets;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class TargetStats {
+        private String target;
+        private long calls;
+        private long failures;
+        private long avgLatencyMs;
+        private long maxLatencyMs;
+        private long bytesSent;
+        private long bytesReceived;
+        private long connectionsOpened;
+        private long tlsHandshakes;
+        private long http2Calls;
+    }
+
+    private static class TargetMetrics {
+        private final String target;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalLatencyMs = new LongAdder();
+        private volatile long maxLatencyMs;
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LongAdder connectionsOpened = new LongAdder();
+        private final LongAdder tlsHandshakes = new LongAdder();
+        private final LongAdder http2Calls = new LongAdder();
+
+        TargetMetrics(String target) {
+            this.target = target;
+        }
+
+        void recordCall(long latencyMs, boolean failed) {
+            calls.increment();
+            totalLatencyMs.add(latencyMs);
+            if (failed) {
+                failures.increment();
+            }
+            if (latencyMs > maxLatencyMs) {
+                maxLatencyMs = latencyMs;
+            }
+        }
+
+        TargetStats snapshot() {
+            long count = calls.sum();
+            return new TargetStats(target, count, failures.sum(),
+                    count > 0 ? totalLatencyMs.sum() / count : 0, maxLatencyMs,
+                    bytesSent.sum(), bytesReceived.sum(), connectionsOpened.sum(),
+                    tlsHandshakes.sum(), http2Calls.sum());
+        }
+    }
+
+    /**
+     * 单次调用的事件监听，OkHttp为每个Call创建一个实例
+     */
+    private static class MetricsListener extends EventListener {
+        private final TargetMetrics metrics;
+        private long startNanos;
+
+        MetricsListener(TargetMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void callStart(Call call) {
+            startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            metrics.connectionsOpened.increment();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            metrics.tlsHandshakes.increment();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            if (connection.protocol() == Protocol.HTTP_2) {
+                metrics.http2Calls.increment();
+            }
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            metrics.bytesSent.add(byteCount);
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            metrics.bytesReceived.add(byteCount);
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            metrics.recordCall(elapsedMs(), false);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            metrics.recordCall(elapsedMs(), true);
+        }
+
+        private long elapsedMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.interview.tts.service.upstream;
+
+import cn.hutool.cache.impl.LRUCache;
+import com.interview.tts.util.LatencyTracker;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 对冲请求
+ * 请求超过近期p95延迟仍未返回时，再发一个相同请求，取先成功的结果并取消另一个。
+ * 对冲有成本上限：每个用户按令牌桶计费（每次请求积累 budgetRatio 个令牌，对冲消耗1个，最多积累 budgetBurst 个），
+ * 全局同时进行的对冲数有上限，上游并发已满（有请求在排队）时不对冲，避免在上游过载时放大压力
+ */
+@Slf4j
+public class RequestHedger {
+
+    /**
+     * 可对冲的调用，通过 onCancel 注册取消动作（如 OkHttp Call::cancel），落选时被调用
+     */
+    @FunctionalInterface
+    public interface HedgeableCall<T> {
+        T execute(Consumer<Runnable> onCancel) throws Exception;
+    }
+
+    private static final int MIN_SAMPLES = 20;
+
+    private final String name;
+    private final LatencyTracker latency;
+    private final long defaultDelayMs;
+    private final long minDelayMs;
+    private final double budgetRatio;
+    private final double budgetBurst;
+    private final Semaphore hedgePermits;
+    private final AdaptiveLimiter limiter;
+    private final ExecutorService executor;
+    private final LRUCache<Long, Budget> budgets = new LRUCache<>(10000);
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * @param limiter 对应上游接口的并发限制，可为null
+     */
+    public RequestHedger(String name, double percentile, long defaultDelayMs, long minDelayMs,
+                         double budgetRatio, double budgetBurst, int maxConcurrentHedges, AdaptiveLimiter limiter) {
+        this.name = name;
+        this.latency = new LatencyTracker(512, percentile);
+        this.defaultDelayMs = defaultDelayMs;
+        this.minDelayMs = minDelayMs;
+        this.budgetRatio = budgetRatio;
+        this.budgetBurst = budgetBurst;
+        this.hedgePermits = new Semaphore(maxConcurrentHedges);
+        this.limiter = limiter;
+        AtomicInteger index = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, name + "-hedge-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 不对冲，仅记录延迟用于估计p95
+     */
+    public <T> T execute(HedgeableCall<T> call) throws Exception {
+        long start = System.nanoTime();
+        T result = call.execute(cancel -> { });
+        latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+
+    /**
+     * @param userId 计费用户
+     */
+    public <T> T execute(Long userId, HedgeableCall<T> call) throws Exception {
+        requests.increment();
+        Budget budget;
+        synchronized (budgets) {
+            budget = budgets.get(userId);
+            if (budget == null) {
+                budget = new Budget(budgetBurst);
+                budgets.put(userId, budget);
+            }
+        }
+        budget.earn(budgetRatio, budgetBurst);
+
+        Attempt<T> primary = start(call);
+        try {
+            return primary.future.get(hedgeDelayMs(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (TimeoutException e) {
+            // 超过p95未返回，考虑对冲
+        }
+
+        if (limiter != null && limiter.isSaturated()) {
+            skipped.increment();
+            return await(primary.future);
+        }
+        if (!budget.trySpend()) {
+            overBudget.increment();
+            return await(primary.future);
+        }
+        if (!hedgePermits.tryAcquire()) {
+            budget.refund();
+            skipped.increment();
+            return await(primary.future);
+        }
+
+        hedged.increment();
+        Attempt<T> hedge = start(call);
+        hedge.future.whenComplete((v, e) -> hedgePermits.release());
+
+        CompletableFuture<Attempt<T>> first = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (Attempt<T> attempt : List.of(primary, hedge)) {
+            attempt.future.whenComplete((v, e) -> {
+                if (e == null) {
+                    first.complete(attempt);
+                } else if (failures.incrementAndGet() == 2) {
+                    first.completeExceptionally(e);
+                }
+            });
+        }
+
+        Attempt<T> winner = await(first);
+        Attempt<T> loser = winner == primary ? hedge : primary;
+        loser.cancel();
+        if (winner == hedge) {
+            // 落选的首个请求被取消，不会记录延迟；按已等待时间记录，避免分位数只统计到快请求而偏低
+            latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - primary.startNanos));
+            hedgeWins.increment();
+            log.debug("对冲请求先返回: {}", name);
+        }
+        return winner.future.join();
+    }
+
+    private long hedgeDelayMs() {
+        if (latency.getCount() < MIN_SAMPLES) {
+            return defaultDelayMs;
+        }
+        return Math.max(minDelayMs, latency.getPercentile());
+    }
+
+    private <T> Attempt<T> start(HedgeableCall<T> call) {
+        Attempt<T> attempt = new Attempt<>();
+        executor.execute(() -> {
+            try {
+                T result = call.execute(attempt::onCancel);
+                latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - attempt.startNanos));
+                attempt.future.complete(result);
+            } catch (Throwable e) {
+                attempt.future.completeExceptionally(e);
+            }
+        });
+        return attempt;
+    }
+
+    private static <V> V await(CompletableFuture<V> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return e;
+    }
+
+    public HedgeStats getStats() {
+        return new HedgeStats(name, latency.getPercentile(), hedgeDelayMs(), requests.sum(), hedged.sum(),
+                hedgeWins.sum(), overBudget.sum(), skipped.sum());
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class HedgeStats {
+        private String name;
+        private long percentileLatencyMs;
+        private long hedgeDelayMs;
+        private long requests;
+        private long hedged;
+        private long hedgeWins;
+        private long overBudget;
+        private long skipped;
+    }
+
+    private static class Attempt<T> {
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long startNanos = System.nanoTime();
+        private volatile Runnable canceller;
+        private volatile boolean cancelled;
+
+        void onCancel(Runnable action) {
+            canceller = action;
+            if (cancelled) {
+                action.run();
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            Runnable action = canceller;
+            if (action != null) {
+                action.run();
+            }
+        }
+    }
+
+    private static class Budget {
+        private double tokens;
+
+        Budget(double tokens) {
+            this.tokens = tokens;
+        }
+
+        synchronized void earn(double amount, double max) {
+            tokens = Math.min(max, tokens + amount);
+        }
+
+        synchronized boolean trySpend() {
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        synchronized void refund() {
+            tokens += 1;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.interview.tts.service.upstream;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 上游接口统一出口
+ * 各服务的OkHttpClient加上 interceptor(api) 后，同一上游接口的所有请求共用一个自适应并发限制，
+ * 突发流量在本地排队，而不是一起打到上游触发限流
+ * 配置：upstream.default.* 为默认值，upstream.apis.{api}.* 按接口覆盖
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UpstreamGateway {
+
+    // 响应体开头的业务错误码，火山引擎接口限流时HTTP状态仍为200
+    private static final Pattern CODE_PATTERN = Pattern.compile("\"code\"\\s*:\\s*(\\d+)");
+    private static final long CODE_PEEK_BYTES = 512;
+
+    private final Environment environment;
+
+    @Value("${upstream.throttle-codes:3003,3005}")
+    private String throttleCodesConfig;
+
+    private final Map<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+    private volatile Set<Integer> throttleCodes;
+
+    /**
+     * 指定上游接口的限流拦截器
+     * 并发名额持有到响应体读完或关闭：流式响应（SSE、分段音频）读取期间仍占用上游，耗时也按读完时刻计算
+     * @param api 接口名，如 tts / llm / translate / voice-clone
+     */
+    public Interceptor interceptor(String api) {
+        return chain -> {
+            Permit permit = new Permit(limiter(api), chain.call(), chain.request().tag(CallListener.class));
+            Response response;
+            AdaptiveLimiter.Outcome outcome;
+            try {
+                response = chain.proceed(chain.request());
+            } catch (IOException | RuntimeException e) {
+                permit.release(AdaptiveLimiter.Outcome.DROPPED);
+                throw e;
+            }
+            try {
+                outcome = classify(response);
+            } catch (IOException e) {
+                response.close();
+                permit.release(AdaptiveLimiter.Outcome.DROPPED);
+                throw e;
+            }
+            ResponseBody body = response.body();
+            if (body == null) {
+                permit.release(outcome);
+                return response;
+            }
+            return response.newBuilder().body(new PermitBody(body, permit, outcome)).build();
+        };
+    }
+
+    /**
+     * 单次上游调用结束时的回调，通过 Request.tag(UpstreamGateway.CallListener.class, ...) 传入
+     * 耗时从取得并发名额开始到响应体读完为止，不含本地排队；被调用方取消的请求不回调
+     */
+    @FunctionalInterface
+    public interface CallListener {
+        void onComplete(long elapsedMs);
+    }
+
+    public AdaptiveLimiter limiter(String api) {
+        return limiters.computeIfAbsent(api, this::createLimiter);
+    }
+
+    private AdaptiveLimiter.Outcome classify(Response response) throws IOException {
+        int status = response.code();
+        if (status == 429 || status == 503) {
+            return AdaptiveLimiter.Outcome.THROTTLED;
+        }
+        if (status >= 500) {
+            return AdaptiveLimiter.Outcome.DROPPED;
+        }
+        MediaType contentType = response.body() != null ? response.body().contentType() : null;
+        if (contentType != null && "json".equals(contentType.subtype())) {
+            Matcher matcher = CODE_PATTERN.matcher(response.peekBody(CODE_PEEK_BYTES).string());
+            if (matcher.find() && throttleCodes().contains(Integer.parseInt(matcher.group(1)))) {
+                return AdaptiveLimiter.Outcome.THROTTLED;
+            }
+        }
+        return AdaptiveLimiter.Outcome.SUCCESS;
+    }
+
+    private Set<Integer> throttleCodes() {
+        if (throttleCodes == null) {
+            throttleCodes = Arrays.stream(throttleCodesConfig.split(","))
+                    .map(String::trim)
+                    .filter(s -> !s.isEmpty())
+                    .map(Integer::valueOf)
+                    .collect(Collectors.toSet());
+        }
+        return throttleCodes;
+    }
+
+    private AdaptiveLimiter createLimiter(String api) {
+        int initialLimit = property(api, "initial-limit", Integer.class, 8);
+        int minLimit = property(api, "min-limit", Integer.class, 1);
+        int maxLimit = property(api, "max-limit", Integer.class, 32);
+        int maxQueue = property(api, "max-queue", Integer.class, 100);
+        long maxWaitMs = property(api, "max-wait-ms", Long.class, 30000L);
+        double backoffRatio = property(api, "backoff-ratio", Double.class, 0.5);
+        double latencyTolerance = property(api, "latency-tolerance", Double.class, 0.0);
+        log.info("上游并发限制: api={}, initial={}, min={}, max={}, maxQueue={}, maxWait={}ms",
+                api, initialLimit, minLimit, maxLimit, maxQueue, maxWaitMs);
+        return new AdaptiveLimiter(api, initialLimit, minLimit, maxLimit, maxQueue, maxWaitMs,
+                backoffRatio, latencyTolerance);
+    }
+
+    private <T> T property(String api, String key, Class<T> type, T defaultValue) {
+        T value = environment.getProperty("upstream.apis." + api + "." + key, type);
+        if (value != null) {
+            return value;
+        }
+        return environment.getProperty("upstream.default." + key, type, defaultValue);
+    }
+
+    public List<AdaptiveLimiter.LimiterStats> getStats() {
+        List<AdaptiveLimiter.LimiterStats> stats = new ArrayList<>();
+        limiters.values().forEach(limiter -> stats.add(limiter.getStats()));
+        return stats;
+    }
+
+    /**
+     * 一次请求占用的并发名额，只归还一次
+     * 请求已被调用方取消（如对冲落选）时，随之而来的IOException不代表上游失败，不下调上限
+     */
+    private static class Permit {
+        private final AdaptiveLimiter limiter;
+        private final Call call;
+        private final CallListener listener;
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(AdaptiveLimiter limiter, Call call, CallListener listener) throws IOException {
+            this.limiter = limiter;
+            this.call = call;
+            this.listener = listener;
+            this.start = limiter.acquire();
+        }
+
+        void release(AdaptiveLimiter.Outcome outcome) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            if (call.isCanceled()) {
+                limiter.release(start, AdaptiveLimiter.Outcome.CANCELLED);
+                return;
+            }
+            limiter.release(start, outcome);
+            if (listener != null) {
+                try {
+                    listener.onComplete(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                } catch (RuntimeException e) {
+                    log.warn("上游调用回调失败: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 读到末尾或关闭时归还名额，读取中途出错（如读超时）按失败归还
+     */
+    private static class PermitBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        PermitBody(ResponseBody delegate, Permit permit, AdaptiveLimiter.Outcome outcome) {
+            this.delegate = delegate;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read;
+                    try {
+                        read = super.read(sink, byteCount);
+                    } catch (IOException e) {
+                        permit.release(AdaptiveLimiter.Outcome.DROPPED);
+                        throw e;
+                    }
+                    if (read == -1) {
+                        permit.release(outcome);
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        permit.release(outcome);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.interview.tts.service.upstream;
+
+import java.io.IOException;
+
+/**
+ * 上游并发已满且排队等待失败，请求未发往上游
+ * 继承IOException，从OkHttp拦截器抛出后由Call.execute()原样抛给调用方
+ */
+public class UpstreamRejectedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String api;
+
+    public UpstreamRejectedException(String api, String message) {
+        super(message);
+        this.api = api;
+    }
+
+    public String getApi() {
+        return api;
+    }
+}
@@ -0,0 +1,34 @@
+package com.interview.tts.stub;
+
+/**
+ * stub用静音MP3生成
+ */
+final class StubAudio {
+
+    // MPEG-2 Layer III, 32kbps, 24kHz, 单声道; 每帧576个采样 = 24ms
+    private static final byte[] SILENT_FRAME_HEADER = {(byte) 0xFF, (byte) 0xF3, (byte) 0x44, (byte) 0xC0};
+    private static final int SILENT_FRAME_LENGTH = 96;
+    static final int FRAME_DURATION_MS = 24;
+    // 估算语速: 每秒5个字
+    static final int MS_PER_CHAR = 200;
+
+    private StubAudio() {
+    }
+
+    /**
+     * 按文本长度生成静音
+     */
+    static byte[] forText(String text) {
+        return silence(text.length() * MS_PER_CHAR);
+    }
+
+    static byte[] silence(int durationMs) {
+        int frames = Math.max(1, durationMs / FRAME_DURATION_MS);
+        byte[] audio = new byte[frames * SILENT_FRAME_LENGTH];
+        for (int i = 0; i < frames; i++) {
+            // 帧头之后的边信息和主数据全部为0，解码即为静音
+            System.arraycopy(SILENT_FRAME_HEADER, 0, audio, i * SILENT_FRAME_LENGTH, SILENT_FRAME_HEADER.length);
+        }
+        return audio;
+    }
+}
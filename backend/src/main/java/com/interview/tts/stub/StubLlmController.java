@@ -0,0 +1,119 @@
+package com.interview.tts.stub;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 豆包对话补全离线stub (仅stub profile启用)
+ *
+ * 使用方式 (application.yml):
+ * spring.profiles.active: stub
+ * doubao:
+ *   api-key: stub
+ *   chat-url: http://localhost:8080/stub/api/v3/chat/completions
+ *
+ * 把提示词中的原文按句交替分给主播A/B作为脚本；stream=true 时按SSE逐段返回，可配置首字延迟和每段间隔，
+ * 用于验证流式脚本生成与逐句合成的重叠
+ */
+@Profile("stub")
+@RestController
+@RequestMapping("/stub")
+public class StubLlmController {
+
+    private static final String SOURCE_MARKER = "原文内容：";
+
+    @Value("${stub.llm.first-token-ms:500}")
+    private long firstTokenMs;
+
+    @Value("${stub.llm.token-interval-ms:30}")
+    private long tokenIntervalMs;
+
+    // 每个SSE事件携带的字符数
+    @Value("${stub.llm.chars-per-token:4}")
+    private int charsPerToken;
+
+    @PostMapping("/api/v3/chat/completions")
+    public ResponseEntity<?> complete(@RequestBody String body) {
+        JSONObject request = JSON.parseObject(body);
+        JSONArray messages = request.getJSONArray("messages");
+        String prompt = messages.getJSONObject(messages.size() - 1).getString("content");
+        String script = buildScript(prompt);
+
+        if (!request.getBooleanValue("stream")) {
+            JSONObject message = new JSONObject();
+            message.put("role", "assistant");
+            message.put("content", script);
+            JSONObject choice = new JSONObject();
+            choice.put("index", 0);
+            choice.put("message", message);
+            JSONArray choices = new JSONArray();
+            choices.add(choice);
+            JSONObject response = new JSONObject();
+            response.put("choices", choices);
+            return ResponseEntity.ok(response.toJSONString());
+        }
+
+        StreamingResponseBody stream = out -> {
+            try {
+                Thread.sleep(firstTokenMs);
+                for (int i = 0; i < script.length(); i += charsPerToken) {
+                    writeEvent(out, chunk(script.substring(i, Math.min(script.length(), i + charsPerToken))));
+                    Thread.sleep(tokenIntervalMs);
+                }
+                writeEvent(out, "[DONE]");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(stream);
+    }
+
+    private static String buildScript(String prompt) {
+        int start = prompt.indexOf(SOURCE_MARKER);
+        String source = start >= 0 ? prompt.substring(start + SOURCE_MARKER.length()) : prompt;
+        StringBuilder script = new StringBuilder("主播A：大家好，欢迎收听今天的节目！\n");
+        boolean isA = false;
+        for (String sentence : source.split("[。！？\\n]+")) {
+            sentence = sentence.trim();
+            if (sentence.length() < 5 || sentence.startsWith("请直接输出")) {
+                continue;
+            }
+            script.append(isA ? "主播A：" : "主播B：").append(sentence).append("。\n");
+            isA = !isA;
+        }
+        script.append("主播A：感谢大家的收听，我们下期再见！\n");
+        return script.toString();
+    }
+
+    private static String chunk(String content) {
+        JSONObject delta = new JSONObject();
+        delta.put("content", content);
+        JSONObject choice = new JSONObject();
+        choice.put("index", 0);
+        choice.put("delta", delta);
+        JSONArray choices = new JSONArray();
+        choices.add(choice);
+        JSONObject event = new JSONObject();
+        event.put("choices", choices);
+        return event.toJSONString();
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
@@ -0,0 +1,63 @@
+package com.interview.tts.stub;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 豆包TTS离线stub (仅stub profile启用)
+ *
+ * 使用方式 (application.yml):
+ * spring.profiles.active: stub
+ * volcengine:
+ *   tts:
+ *     app-id: stub
+ *     access-token: stub
+ *     api-url: http://localhost:8080/stub/api/v1/tts
+ *
+ * 按文本长度返回静音MP3，可配置延迟和失败率，用于分段并行合成的离线验证
+ */
+@Slf4j
+@Profile("stub")
+@RestController
+@RequestMapping("/stub")
+public class StubTtsController {
+
+    @Value("${stub.tts.latency-ms:200}")
+    private long latencyMs;
+
+    @Value("${stub.tts.latency-per-char-ms:2}")
+    private long latencyPerCharMs;
+
+    @Value("${stub.tts.failure-rate:0}")
+    private double failureRate;
+
+    @PostMapping("/api/v1/tts")
+    public String synthesize(@RequestBody String body) throws InterruptedException {
+        JSONObject request = JSON.parseObject(body);
+        String text = request.getJSONObject("request").getString("text");
+        Thread.sleep(latencyMs + latencyPerCharMs * text.length());
+
+        JSONObject response = new JSONObject();
+        if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+            log.info("stub TTS 注入失败: textLength={}", text.length());
+            response.put("code", 3031);
+            response.put("message", "stub injected failure");
+            return response.toJSONString();
+        }
+
+        response.put("code", 3000);
+        response.put("message", "Success");
+        response.put("data", Base64.getEncoder().encodeToString(StubAudio.forText(text)));
+        return response.toJSONString();
+    }
+}
@@ -0,0 +1,198 @@
+package com.interview.tts.stub;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.interview.tts.service.ttsv2.TtsV2EventType;
+import com.interview.tts.service.ttsv2.TtsV2Message;
+import com.interview.tts.util.TextChunker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * TTS v2.0 双向流式WebSocket离线stub (仅stub profile启用)
+ *
+ * 使用方式 (application.yml):
+ * spring.profiles.active: stub
+ * volcengine:
+ *   tts:
+ *     v2:
+ *       ws-url: ws://localhost:8091
+ *
+ * 按TtsV2Message二进制协议应答连接/会话事件，FINISH_SESSION后按句返回静音MP3，
+ * 可配置首包延迟和会话失败率，用于连接池复用和异常剔除的离线验证
+ */
+@Slf4j
+@Profile("stub")
+@Component
+public class StubTtsV2Server {
+
+    // 每个音频包的大小，模拟服务端分包下发
+    private static final int AUDIO_PACKET_SIZE = 4096;
+
+    @Value("${stub.tts-v2.port:8091}")
+    private int port;
+
+    @Value("${stub.tts-v2.latency-ms:100}")
+    private long latencyMs;
+
+    @Value("${stub.tts-v2.failure-rate:0}")
+    private double failureRate;
+
+    // sessionId -> 已收到的文本
+    private final Map<String, StringBuilder> sessionTexts = new ConcurrentHashMap<>();
+    private ExecutorService sessionExecutor;
+    private WebSocketServer server;
+
+    @PostConstruct
+    public void start() {
+        sessionExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-ttsv2-session");
+            t.setDaemon(true);
+            return t;
+        });
+        server = new WebSocketServer(new InetSocketAddress(port)) {
+            @Override
+            public void onOpen(WebSocket conn, ClientHandshake handshake) {
+                log.info("stub TTSv2 连接建立: connectId={}, resourceId={}",
+                        handshake.getFieldValue("X-Api-Connect-Id"), handshake.getFieldValue("X-Api-Resource-Id"));
+            }
+
+            @Override
+            public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+                log.info("stub TTSv2 连接关闭: code={}", code);
+            }
+
+            @Override
+            public void onMessage(WebSocket conn, String message) {
+                log.warn("stub TTSv2 收到文本消息: {}", message);
+            }
+
+            @Override
+            public void onMessage(WebSocket conn, ByteBuffer bytes) {
+                handle(conn, TtsV2Message.unmarshal(bytes));
+            }
+
+            @Override
+            public void onError(WebSocket conn, Exception ex) {
+                log.error("stub TTSv2 错误", ex);
+            }
+
+            @Override
+            public void onStart() {
+                log.info("stub TTSv2 服务启动: ws://localhost:{}", port);
+            }
+        };
+        server.setReuseAddr(true);
+        server.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        server.stop(1000);
+        sessionExecutor.shutdownNow();
+    }
+
+    private void handle(WebSocket conn, TtsV2Message request) {
+        TtsV2EventType event = request.getEvent();
+        String sessionId = request.getSessionId();
+        switch (event) {
+            case START_CONNECTION -> {
+                TtsV2Message response = response(TtsV2EventType.CONNECTION_STARTED, null, "{}");
+                response.setConnectId(UUID.randomUUID().toString());
+                send(conn, response);
+            }
+            case FINISH_CONNECTION -> {
+                TtsV2Message response = response(TtsV2EventType.CONNECTION_FINISHED, null, "{}");
+                response.setConnectId(UUID.randomUUID().toString());
+                send(conn, response);
+                conn.close();
+            }
+            case START_SESSION -> {
+                sessionTexts.put(sessionId, new StringBuilder());
+                send(conn, response(TtsV2EventType.SESSION_STARTED, sessionId, "{}"));
+            }
+            case TASK_REQUEST -> {
+                StringBuilder text = sessionTexts.get(sessionId);
+                if (text != null && request.getPayloadSize() > 0) {
+                    JSONObject payload = JSON.parseObject(request.getPayloadAsString());
+                    text.append(payload.getJSONObject("req_params").getString("text"));
+                }
+            }
+            case FINISH_SESSION -> {
+                StringBuilder text = sessionTexts.remove(sessionId);
+                // 合成放到独立线程，避免阻塞服务端的消息处理
+                sessionExecutor.execute(() -> synthesize(conn, sessionId, text != null ? text.toString() : ""));
+            }
+            case CANCEL_SESSION -> {
+                sessionTexts.remove(sessionId);
+                send(conn, response(TtsV2EventType.SESSION_CANCELED, sessionId, "{}"));
+            }
+            default -> log.warn("stub TTSv2 未处理的事件: {}", event);
+        }
+    }
+
+    private void synthesize(WebSocket conn, String sessionId, String text) {
+        try {
+            Thread.sleep(latencyMs);
+            if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+                log.info("stub TTSv2 注入失败: sessionId={}", sessionId);
+                send(conn, response(TtsV2EventType.SESSION_FAILED, sessionId,
+                        "{\"status_code\":55000000,\"message\":\"stub injected failure\"}"));
+                return;
+            }
+            for (String sentence : TextChunker.splitSentences(text, 300)) {
+                String sentencePayload = new JSONObject().fluentPut("text", sentence).toJSONString();
+                send(conn, response(TtsV2EventType.TTS_SENTENCE_START, sessionId, sentencePayload));
+                byte[] audio = StubAudio.forText(sentence);
+                for (int offset = 0; offset < audio.length; offset += AUDIO_PACKET_SIZE) {
+                    TtsV2Message packet = new TtsV2Message(TtsV2Message.MsgType.AUDIO_ONLY_SERVER, TtsV2Message.MsgFlag.WITH_EVENT);
+                    packet.setEvent(TtsV2EventType.TTS_RESPONSE);
+                    packet.setSessionId(sessionId);
+                    packet.setPayload(Arrays.copyOfRange(audio, offset, Math.min(audio.length, offset + AUDIO_PACKET_SIZE)));
+                    send(conn, packet);
+                }
+                send(conn, response(TtsV2EventType.TTS_SENTENCE_END, sessionId, sentencePayload));
+            }
+            send(conn, response(TtsV2EventType.SESSION_FINISHED, sessionId, "{\"status_code\":20000000}"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static TtsV2Message response(TtsV2EventType event, String sessionId, String payload) {
+        TtsV2Message message = new TtsV2Message(TtsV2Message.MsgType.FULL_SERVER_RESPONSE, TtsV2Message.MsgFlag.WITH_EVENT);
+        message.setEvent(event);
+        message.setSessionId(sessionId);
+        message.setPayload(payload.getBytes(StandardCharsets.UTF_8));
+        return message;
+    }
+
+    private static void send(WebSocket conn, TtsV2Message message) {
+        if (!conn.isOpen()) {
+            return;
+        }
+        try {
+            conn.send(message.marshal());
+        } catch (Exception e) {
+            log.warn("stub TTSv2 发送失败: {}", message, e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.interview.tts.util;
+
+import java.util.Arrays;
+
+/**
+ * 滑动窗口延迟分位数
+ * 保留最近 windowSize 个样本，分位数每记录 recomputeEvery 个样本重新排序计算一次
+ */
+public class LatencyTracker {
+
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final long[] samples;
+    private final double percentile;
+    private int count;
+    private int next;
+    private int sinceRecompute;
+    private long cached = -1;
+
+    /**
+     * @param windowSize 窗口大小
+     * @param percentile 分位数，如0.95
+     */
+    public LatencyTracker(int windowSize, double percentile) {
+        this.samples = new long[windowSize];
+        this.percentile = percentile;
+    }
+
+    public synchronized void record(long latencyMs) {
+        samples[next] = latencyMs;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+        if (++sinceRecompute >= RECOMPUTE_EVERY) {
+            cached = -1;
+        }
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return 分位数延迟(ms)，没有样本时为-1
+     */
+    public synchronized long getPercentile() {
+        if (count == 0) {
+            return -1;
+        }
+        if (cached < 0) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            cached = sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+            sinceRecompute = 0;
+        }
+        return cached;
+    }
+}
@@ -0,0 +1,300 @@
+package com.interview.tts.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MP3拼接
+ * 逐帧解析各段MP3，去掉每段的ID3v2/ID3v1标签和Xing/Info/VBRI头，只把音频帧顺序写入文件；
+ * 段间可插入静音帧，结束时在文件开头写入覆盖全部帧的Xing头（帧数、字节数、100点TOC），播放器据此显示正确时长并精确拖动。
+ * 音频帧边解析边写文件，TOC在结束时重新扫描文件得到，内存占用与总时长无关
+ */
+@Slf4j
+public class Mp3Assembler implements Closeable {
+
+    // "Xing" + 标志 + 帧数 + 字节数 + TOC(100)
+    private static final int XING_SIZE = 4 + 4 + 4 + 4 + 100;
+    private static final int XING_FLAGS = 0x01 | 0x02 | 0x04;
+
+    private final FileChannel channel;
+    private final OutputStream output;
+
+    // 第一个音频帧的帧头，静音帧和Xing帧按它的格式生成
+    private byte[] format;
+    private boolean layer3;
+    private int xingFrameLength;
+    private byte[] silenceFrame;
+    private long pendingSilenceMs;
+    private boolean formatWarned;
+
+    private long frames;
+    private long audioBytes;
+    private long totalNanos;
+    private final List<Mark> marks = new ArrayList<>();
+
+    public Mp3Assembler(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ, StandardOpenOption.TRUNCATE_EXISTING);
+        this.output = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+    }
+
+    /**
+     * 追加一段MP3，记录该段在成品中的起始时间和字节偏移
+     */
+    public void append(byte[] part) throws IOException {
+        int pos = id3v2Length(part);
+        int end = part.length;
+        if (end - pos >= 128 && part[end - 128] == 'T' && part[end - 127] == 'A' && part[end - 126] == 'G') {
+            end -= 128;
+        }
+
+        flushSilence();
+        Mark mark = new Mark(getDurationMs(), audioBytes);
+        boolean firstFrame = true;
+        while (pos + 4 <= end) {
+            int length = Mp3FrameCounter.frameLength(part[pos], part[pos + 1], part[pos + 2]);
+            if (length <= 0) {
+                // 不是帧头，后移一个字节重新同步
+                pos++;
+                continue;
+            }
+            if (pos + length > end) {
+                // 末尾不完整的帧
+                break;
+            }
+            if (!(firstFrame && isInfoFrame(part, pos, length))) {
+                writeFrame(part, pos, length);
+            }
+            firstFrame = false;
+            pos += length;
+        }
+        marks.add(mark);
+    }
+
+    /**
+     * 插入静音，在下一段音频之前按其格式生成静音帧
+     */
+    public void appendSilence(long ms) {
+        if (ms > 0) {
+            pendingSilenceMs += ms;
+        }
+    }
+
+    /**
+     * 写入Xing头并返回成品信息，之后不能再追加
+     */
+    public Result finish() throws IOException {
+        output.flush();
+        if (xingFrameLength > 0) {
+            long fileBytes = xingFrameLength + audioBytes;
+            byte[] toc = buildToc(fileBytes);
+            channel.write(ByteBuffer.wrap(buildXingFrame(fileBytes, toc)), 0);
+        }
+        channel.force(false);
+
+        List<Mark> result = new ArrayList<>(marks.size());
+        for (Mark mark : marks) {
+            result.add(new Mark(mark.getStartMs(), xingFrameLength + mark.getOffset()));
+        }
+        return new Result(frames, xingFrameLength + audioBytes, getDurationMs(), result);
+    }
+
+    public long getDurationMs() {
+        return totalNanos / 1_000_000;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void writeFrame(byte[] data, int offset, int length) throws IOException {
+        if (format == null) {
+            initFormat(data, offset);
+        } else if (!sameFormat(data, offset) && !formatWarned) {
+            formatWarned = true;
+            log.warn("MP3拼接: 分段格式不一致（采样率/声道），部分播放器可能无法正确播放");
+        }
+        output.write(data, offset, length);
+        frames++;
+        audioBytes += length;
+        totalNanos += Mp3FrameCounter.samplesPerFrame(data[offset + 1]) * 1_000_000_000L
+                / Mp3FrameCounter.sampleRate(data[offset + 1], data[offset + 2]);
+    }
+
+    private void initFormat(byte[] data, int offset) throws IOException {
+        format = new byte[]{data[offset], data[offset + 1], data[offset + 2], data[offset + 3]};
+        layer3 = ((format[1] >> 1) & 0x03) == 1;
+        if (!layer3) {
+            log.warn("MP3拼接: 非Layer III音频，不写Xing头也不插入静音");
+            return;
+        }
+        int sideInfo = sideInfoLength(format);
+        silenceFrame = buildFrame(4 + sideInfo);
+        byte[] placeholder = buildFrame(4 + sideInfo + XING_SIZE);
+        xingFrameLength = placeholder.length;
+        output.write(placeholder);
+    }
+
+    private void flushSilence() throws IOException {
+        if (pendingSilenceMs <= 0 || format == null) {
+            return;
+        }
+        if (layer3) {
+            long frameNanos = Mp3FrameCounter.samplesPerFrame(silenceFrame[1]) * 1_000_000_000L
+                    / Mp3FrameCounter.sampleRate(silenceFrame[1], silenceFrame[2]);
+            long count = (pendingSilenceMs * 1_000_000 + frameNanos - 1) / frameNanos;
+            for (long i = 0; i < count; i++) {
+                writeFrame(silenceFrame, 0, silenceFrame.length);
+            }
+        }
+        pendingSilenceMs = 0;
+    }
+
+    /**
+     * 按首帧格式生成长度不小于minLength的空帧（取最低可用码率，无CRC、无填充）
+     * 边信息全为0时 part2_3_length 为0，解码结果为静音
+     */
+    private byte[] buildFrame(int minLength) {
+        byte b1 = (byte) (format[1] | 0x01);
+        for (int bitrateIndex = 1; bitrateIndex < 15; bitrateIndex++) {
+            byte b2 = (byte) ((format[2] & 0x0D) | (bitrateIndex << 4));
+            int length = Mp3FrameCounter.frameLength(format[0], b1, b2);
+            if (length >= minLength) {
+                byte[] frame = new byte[length];
+                frame[0] = format[0];
+                frame[1] = b1;
+                frame[2] = b2;
+                frame[3] = format[3];
+                return frame;
+            }
+        }
+        throw new IllegalStateException("无法生成长度为" + minLength + "的MP3帧");
+    }
+
+    private byte[] buildXingFrame(long fileBytes, byte[] toc) {
+        byte[] frame = buildFrame(4 + sideInfoLength(format) + XING_SIZE);
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        buffer.position(4 + sideInfoLength(format));
+        buffer.put(new byte[]{'X', 'i', 'n', 'g'});
+        buffer.putInt(XING_FLAGS);
+        buffer.putInt((int) frames);
+        buffer.putInt((int) fileBytes);
+        buffer.put(toc);
+        return frame;
+    }
+
+    /**
+     * TOC[i] 为播放到 i% 时长处的帧在文件中的位置（按文件大小的 1/256 计）
+     * 重新顺序扫描已写入的音频帧得到，不在内存中保存逐帧偏移
+     */
+    private byte[] buildToc(long fileBytes) throws IOException {
+        byte[] toc = new byte[100];
+        int next = 0;
+        long nanos = 0;
+        long offset = xingFrameLength;
+        byte[] header = new byte[4];
+        channel.position(xingFrameLength);
+        InputStream input = new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024);
+        while (next < 100 && offset < fileBytes) {
+            if (input.readNBytes(header, 0, 4) < 4) {
+                break;
+            }
+            while (next < 100 && nanos >= totalNanos * next / 100) {
+                toc[next++] = (byte) Math.min(255, offset * 256 / fileBytes);
+            }
+            int length = Mp3FrameCounter.frameLength(header[0], header[1], header[2]);
+            if (length <= 0) {
+                break;
+            }
+            input.skipNBytes(length - 4);
+            nanos += Mp3FrameCounter.samplesPerFrame(header[1]) * 1_000_000_000L
+                    / Mp3FrameCounter.sampleRate(header[1], header[2]);
+            offset += length;
+        }
+        while (next < 100) {
+            toc[next++] = (byte) 255;
+        }
+        return toc;
+    }
+
+    private boolean sameFormat(byte[] data, int offset) {
+        // 版本、层、采样率、声道模式一致
+        return (data[offset + 1] & 0x1E) == (format[1] & 0x1E)
+                && (data[offset + 2] & 0x0C) == (format[2] & 0x0C)
+                && (data[offset + 3] & 0xC0) == (format[3] & 0xC0);
+    }
+
+    /**
+     * 编码器写在第一帧的 Xing/Info（LAME）或 VBRI 头，只描述该段自身，需要丢弃
+     */
+    private static boolean isInfoFrame(byte[] data, int offset, int length) {
+        byte[] header = {data[offset], data[offset + 1], data[offset + 2], data[offset + 3]};
+        int crc = (header[1] & 0x01) == 0 ? 2 : 0;
+        int xing = offset + 4 + crc + sideInfoLength(header);
+        if (xing + 4 <= offset + length) {
+            String tag = new String(data, xing, 4, StandardCharsets.ISO_8859_1);
+            if ("Xing".equals(tag) || "Info".equals(tag)) {
+                return true;
+            }
+        }
+        int vbri = offset + 4 + 32;
+        return vbri + 4 <= offset + length && data[vbri] == 'V' && data[vbri + 1] == 'B'
+                && data[vbri + 2] == 'R' && data[vbri + 3] == 'I';
+    }
+
+    private static int sideInfoLength(byte[] header) {
+        boolean mpeg1 = ((header[1] >> 3) & 0x03) == 3;
+        boolean mono = ((header[3] >> 6) & 0x03) == 3;
+        if (mpeg1) {
+            return mono ? 17 : 32;
+        }
+        return mono ? 9 : 17;
+    }
+
+    private static int id3v2Length(byte[] data) {
+        if (data.length < 10 || data[0] != 'I' || data[1] != 'D' || data[2] != '3') {
+            return 0;
+        }
+        int size = ((data[6] & 0x7F) << 21) | ((data[7] & 0x7F) << 14)
+                | ((data[8] & 0x7F) << 7) | (data[9] & 0x7F);
+        int footer = (data[5] & 0x10) != 0 ? 10 : 0;
+        return Math.min(data.length, 10 + size + footer);
+    }
+
+    /**
+     * 分段在成品中的位置
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Mark {
+        private long startMs;
+        // 在成品文件中的字节偏移
+        private long offset;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+        private long frames;
+        private long bytes;
+        private long durationMs;
+        private List<Mark> marks;
+    }
+}
@@ -0,0 +1,158 @@
+package com.interview.tts.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * MP3流时长计算
+ * 逐帧解析帧头（版本/层/码率/采样率），按每帧采样数累加得到精确的音频时长，
+ * 支持分片输入（帧头或帧体跨分片），用于把"已收到多少字节"换算成"音频播放到哪里"
+ */
+public class Mp3FrameCounter {
+
+    // 码率表(kbps): [MPEG1 L1, MPEG1 L2, MPEG1 L3, MPEG2/2.5 L1, MPEG2/2.5 L2&L3]
+    private static final int[][] BITRATES = {
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+    };
+    // 采样率表: [MPEG2.5, 保留, MPEG2, MPEG1]
+    private static final int[][] SAMPLE_RATES = {
+            {11025, 12000, 8000},
+            {0, 0, 0},
+            {22050, 24000, 16000},
+            {44100, 48000, 32000}
+    };
+
+    private static final int ID3V2_HEADER_SIZE = 10;
+
+    // 跨分片的帧头字节
+    private final byte[] pending = new byte[ID3V2_HEADER_SIZE];
+    private int pendingLength;
+    // 当前帧(或ID3标签)剩余待跳过的字节
+    private long skip;
+    private boolean atStart = true;
+
+    private long frames;
+    private long totalNanos;
+    private int sampleRate;
+
+    /**
+     * 输入一段MP3数据
+     */
+    public void feed(ByteBuffer data) {
+        ByteBuffer buffer = data.duplicate();
+        while (buffer.hasRemaining()) {
+            if (skip > 0) {
+                int n = (int) Math.min(skip, buffer.remaining());
+                buffer.position(buffer.position() + n);
+                skip -= n;
+                continue;
+            }
+            int needed = atStart ? ID3V2_HEADER_SIZE : 4;
+            while (pendingLength < needed && buffer.hasRemaining()) {
+                pending[pendingLength++] = buffer.get();
+            }
+            if (pendingLength < needed) {
+                return;
+            }
+            parsePending();
+        }
+    }
+
+    public void feed(byte[] data) {
+        feed(ByteBuffer.wrap(data));
+    }
+
+    private void parsePending() {
+        if (atStart) {
+            atStart = false;
+            // 流开头的ID3v2标签: "ID3" + 版本(2) + 标志(1) + 同步安全整数长度(4)
+            if (pending[0] == 'I' && pending[1] == 'D' && pending[2] == '3') {
+                long size = ((pending[6] & 0x7F) << 21) | ((pending[7] & 0x7F) << 14)
+                        | ((pending[8] & 0x7F) << 7) | (pending[9] & 0x7F);
+                skip = size;
+                pendingLength = 0;
+                return;
+            }
+        }
+
+        int frameLength = frameLength(pending[0], pending[1], pending[2]);
+        if (frameLength <= 0) {
+            // 不是帧头，后移一个字节重新同步
+            System.arraycopy(pending, 1, pending, 0, pendingLength - 1);
+            pendingLength--;
+            return;
+        }
+
+        int rate = sampleRate(pending[1], pending[2]);
+        int samples = samplesPerFrame(pending[1]);
+        frames++;
+        totalNanos += samples * 1_000_000_000L / rate;
+        sampleRate = rate;
+
+        // 已读入的字节中超出帧头的部分属于帧体
+        skip = frameLength - pendingLength;
+        pendingLength = 0;
+    }
+
+    /**
+     * 解析帧头得到帧长度，不是合法帧头时返回-1
+     */
+    public static int frameLength(byte b0, byte b1, byte b2) {
+        if ((b0 & 0xFF) != 0xFF || (b1 & 0xE0) != 0xE0) {
+            return -1;
+        }
+        int version = (b1 >> 3) & 0x03;
+        int layer = (b1 >> 1) & 0x03;
+        int bitrateIndex = (b2 >> 4) & 0x0F;
+        int sampleRateIndex = (b2 >> 2) & 0x03;
+        if (version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return -1;
+        }
+        int padding = (b2 >> 1) & 0x01;
+        boolean mpeg1 = version == 3;
+        int table = mpeg1 ? 3 - layer : (layer == 3 ? 3 : 4);
+        int bitrate = BITRATES[table][bitrateIndex] * 1000;
+        int rate = SAMPLE_RATES[version][sampleRateIndex];
+
+        if (layer == 3) {
+            // Layer I: 4字节槽
+            return (12 * bitrate / rate + padding) * 4;
+        }
+        int coefficient = layer == 1 && !mpeg1 ? 72 : 144;
+        return coefficient * bitrate / rate + padding;
+    }
+
+    /**
+     * 帧头对应的采样率，调用前需确认是合法帧头
+     */
+    public static int sampleRate(byte b1, byte b2) {
+        return SAMPLE_RATES[(b1 >> 3) & 0x03][(b2 >> 2) & 0x03];
+    }
+
+    /**
+     * 每帧采样数: Layer I 384, Layer II 1152, Layer III MPEG1 1152 / MPEG2、2.5 576
+     */
+    public static int samplesPerFrame(byte b1) {
+        int version = (b1 >> 3) & 0x03;
+        int layer = (b1 >> 1) & 0x03;
+        return layer == 3 ? 384 : (layer == 1 && version != 3 ? 576 : 1152);
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * 已解析音频的时长(毫秒)
+     */
+    public long getDurationMs() {
+        return totalNanos / 1_000_000;
+    }
+}
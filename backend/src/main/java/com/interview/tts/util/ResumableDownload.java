@@ -0,0 +1,127 @@
+package com.interview.tts.util;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 可续传的HTTP下载流
+ * 读取过程中连接中断时，按已读取的字节数以 Range: bytes=N- 重新请求并继续读取，
+ * 服务端返回Content-Length时在结束时校验总长度，调用方看到的是一个连续完整的流
+ */
+@Slf4j
+public class ResumableDownload extends InputStream {
+
+    private final OkHttpClient httpClient;
+    private final String url;
+    private final int maxRetries;
+
+    private Response response;
+    private InputStream body;
+    private long position;
+    private long contentLength = -1;
+    private int retries;
+
+    public ResumableDownload(OkHttpClient httpClient, String url, int maxRetries) throws IOException {
+        this.httpClient = httpClient;
+        this.url = url;
+        this.maxRetries = maxRetries;
+        open();
+    }
+
+    /**
+     * 文件总长度，服务端未返回时为-1
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        while (true) {
+            try {
+                int n = body.read(buffer, offset, length);
+                if (n == -1) {
+                    if (contentLength >= 0 && position < contentLength) {
+                        throw new IOException("连接提前结束: " + position + "/" + contentLength);
+                    }
+                    return -1;
+                }
+                position += n;
+                return n;
+            } catch (IOException e) {
+                resume(e);
+            }
+        }
+    }
+
+    private void resume(IOException cause) throws IOException {
+        while (true) {
+            if (retries >= maxRetries) {
+                throw cause;
+            }
+            retries++;
+            log.warn("下载中断，从{}字节处续传(第{}次): {}", position, retries, cause.getMessage());
+            closeResponse();
+            try {
+                Thread.sleep(500L * retries);
+                open();
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("下载被中断", e);
+            } catch (IOException e) {
+                cause = e;
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        Request.Builder builder = new Request.Builder().url(url).get();
+        if (position > 0) {
+            builder.header("Range", "bytes=" + position + "-");
+        }
+        response = httpClient.newCall(builder.build()).execute();
+        if (!response.isSuccessful() || response.body() == null) {
+            int code = response.code();
+            closeResponse();
+            throw new IOException("下载失败: " + code);
+        }
+        if (position > 0 && response.code() != 206) {
+            // 服务端不支持Range，无法续传
+            closeResponse();
+            throw new IOException("服务端不支持断点续传");
+        }
+        if (position == 0) {
+            contentLength = response.body().contentLength();
+        }
+        body = response.body().byteStream();
+    }
+
+    private void closeResponse() {
+        if (response != null) {
+            response.close();
+            response = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closeResponse();
+    }
+}
@@ -0,0 +1,81 @@
+package com.interview.tts.util;
+
+import lombok.Data;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并 (single-flight)
+ * 同一key的并发调用只执行一次，其余调用等待并共享同一结果（包括异常）
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * 执行或加入进行中的调用
+     * @param key 合并key
+     * @param supplier 实际执行逻辑，仅由第一个到达的调用执行
+     * @return 执行结果
+     */
+    public V execute(K key, Supplier<V> supplier) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+
+        executions.increment();
+        try {
+            V value = supplier.get();
+            created.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // Error 也要完成共享结果，否则等待中的调用会永远阻塞
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    public Stats getStats() {
+        Stats stats = new Stats();
+        stats.setInFlight(inFlight.size());
+        stats.setExecutions(executions.sum());
+        stats.setCoalesced(coalesced.sum());
+        return stats;
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 合并统计
+     */
+    @Data
+    public static class Stats {
+        private int inFlight;
+        private long executions;
+        private long coalesced;
+    }
+}
@@ -0,0 +1,148 @@
+package com.interview.tts.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文本分段工具
+ * 按句子/分句边界切分文本，用于分段并行合成
+ */
+public class TextChunker {
+
+    // 句末标点
+    private static final String SENTENCE_END = "。！？!?；;…\n";
+    // 分句标点（句子超长时使用）
+    private static final String CLAUSE_END = "，,、：:";
+
+    private TextChunker() {
+    }
+
+    /**
+     * 切分文本并将相邻句子合并为不超过maxChars的分段
+     * @param text 文本
+     * @param maxChars 每段最大字符数
+     * @return 分段列表（按原文顺序）
+     */
+    public static List<String> split(String text, int maxChars) {
+        return pack(splitSentences(text, maxChars), maxChars);
+    }
+
+    private static List<String> pack(List<String> sentences, int maxChars) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String sentence : sentences) {
+            // 英文句子之间补回空格，合并后的长度也计入空格
+            boolean space = current.length() > 0 && sentence.charAt(0) < 0x80;
+            if (current.length() > 0 && current.length() + (space ? 1 : 0) + sentence.length() > maxChars) {
+                chunks.add(current.toString());
+                current.setLength(0);
+                space = false;
+            }
+            if (space) {
+                current.append(' ');
+            }
+            current.append(sentence);
+        }
+        if (current.length() > 0) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+
+    /**
+     * 流式合成用切分：首句单独成段以尽快出声，其余句子按maxChars合并
+     * @param text 文本
+     * @param maxChars 每段最大字符数
+     * @return 分段列表（按原文顺序）
+     */
+    public static List<String> splitForStreaming(String text, int maxChars) {
+        List<String> sentences = splitSentences(text, maxChars);
+        if (sentences.size() <= 1) {
+            return sentences;
+        }
+        List<String> chunks = new ArrayList<>();
+        chunks.add(sentences.get(0));
+        chunks.addAll(pack(sentences.subList(1, sentences.size()), maxChars));
+        return chunks;
+    }
+
+    /**
+     * 按句子切分文本，超长句子再按分句标点切分，仍超长则按长度硬切
+     * @param text 文本
+     * @param maxChars 每段最大字符数
+     * @return 句子列表（已去除首尾空白，不含空句）
+     */
+    public static List<String> splitSentences(String text, int maxChars) {
+        List<String> sentences = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return sentences;
+        }
+        for (String sentence : splitAt(text, SENTENCE_END, true)) {
+            if (sentence.length() <= maxChars) {
+                sentences.add(sentence);
+                continue;
+            }
+            StringBuilder current = new StringBuilder();
+            for (String clause : splitAt(sentence, CLAUSE_END, false)) {
+                if (current.length() > 0 && current.length() + clause.length() > maxChars) {
+                    sentences.add(current.toString());
+                    current.setLength(0);
+                }
+                current.append(clause);
+                while (current.length() > maxChars) {
+                    sentences.add(current.substring(0, maxChars));
+                    current.delete(0, maxChars);
+                }
+            }
+            if (current.length() > 0) {
+                sentences.add(current.toString());
+            }
+        }
+        return sentences;
+    }
+
+    /**
+     * 查找最后一个句末标点
+     * @param text 文本
+     * @return 最后一个句末标点之后的位置，没有则返回-1
+     */
+    public static int lastSentenceEnd(CharSequence text) {
+        for (int i = text.length() - 1; i >= 0; i--) {
+            char c = text.charAt(i);
+            if (SENTENCE_END.indexOf(c) >= 0
+                    || (c == '.' && i + 1 < text.length() && Character.isWhitespace(text.charAt(i + 1)))) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 在指定标点之后切开，标点保留在前一段末尾
+     */
+    private static List<String> splitAt(String text, String delimiters, boolean englishPeriod) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean boundary = delimiters.indexOf(c) >= 0
+                    // 英文句号后跟空白才算句末，避免切开小数和缩写
+                    || (englishPeriod && c == '.' && i + 1 < text.length() && Character.isWhitespace(text.charAt(i + 1)));
+            if (boundary) {
+                addTrimmed(parts, text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            addTrimmed(parts, text.substring(start));
+        }
+        return parts;
+    }
+
+    private static void addTrimmed(List<String> parts, String part) {
+        String trimmed = part.trim();
+        if (!trimmed.isEmpty()) {
+            parts.add(trimmed);
+        }
+    }
+}
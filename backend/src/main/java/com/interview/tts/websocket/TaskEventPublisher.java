@@ -0,0 +1,33 @@
+package com.interview.tts.websocket;
+
+import com.interview.tts.dto.TaskEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * 异步任务状态推送
+ * 通过STOMP发送给任务所属用户，客户端订阅 /user/queue/tasks 即可收到自己任务的事件
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskEventPublisher {
+
+    public static final String TASK_QUEUE = "/queue/tasks";
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public void publish(Long userId, TaskEvent event) {
+        if (userId == null) {
+            return;
+        }
+        try {
+            messagingTemplate.convertAndSendToUser(String.valueOf(userId), TASK_QUEUE, event);
+        } catch (Exception e) {
+            // 推送失败不影响任务本身，客户端仍可查询状态接口
+            log.warn("任务事件推送失败: taskId={}, stage={}, {}", event.getTaskId(), event.getStage(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.interview.tts.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.interview.tts.config.TtsV2Properties;
+import com.interview.tts.entity.SysUser;
+import com.interview.tts.entity.UserType;
+import com.interview.tts.exception.BusinessException;
+import com.interview.tts.interceptor.PermissionInterceptor;
+import com.interview.tts.interceptor.UserKeyInterceptor;
+import com.interview.tts.interceptor.WebSocketAuthInterceptor;
+import com.interview.tts.repository.SysUserRepository;
+import com.interview.tts.service.RateLimitService;
+import com.interview.tts.service.ttsv2.TtsV2Request;
+import com.interview.tts.service.ttsv2.TtsV2Response;
+import com.interview.tts.service.ttsv2.TtsV2Service;
+import com.interview.tts.service.ttsv2.TtsV2StreamListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TTS v2.0 实时音频转发
+ * 上游双向流每收到一个音频分片就以二进制消息转发给浏览器，句子开始/结束以文本消息通知，完整音频后台归档
+ *
+ * 客户端 -> 服务端 (文本):
+ *   {"type":"synthesize","text":"...","voiceType":"...","contextText":"...","mode":"default"}
+ *   {"type":"cancel"}
+ * 服务端 -> 客户端:
+ *   文本 {"type":"sentence_start","text":"..."} / {"type":"sentence_end","text":"..."}
+ *   二进制 MP3分片，按顺序拼接即可播放
+ *   文本 {"type":"done"}，归档完成后 {"type":"archived","audioUrl":"...","subtitleUrl":"...","duration":N,"subtitles":[...]}
+ *   文本 {"type":"error","message":"..."}
+ * 握手只校验登录，每次合成前按 /api/tts/v2/synthesize 的规则检查权限、字数限额和每日次数
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TtsV2StreamHandler extends AbstractWebSocketHandler {
+
+    // 客户端接收过慢时的发送超时和缓冲上限，超过后断开连接
+    private static final int SEND_TIME_LIMIT_MS = 10000;
+    private static final int SEND_BUFFER_LIMIT = 1024 * 1024;
+
+    private final TtsV2Service ttsV2Service;
+    private final TtsV2Properties properties;
+    private final PermissionInterceptor permissionInterceptor;
+    private final RateLimitService rateLimitService;
+    private final SysUserRepository userRepository;
+
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Future<?>> running = new ConcurrentHashMap<>();
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        TtsV2Properties.Stream stream = properties.getStream();
+        executor = new ThreadPoolExecutor(stream.getMaxConcurrent(), stream.getMaxConcurrent(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(stream.getQueueCapacity()), r -> {
+                    Thread t = new Thread(r, "ttsv2-stream-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        // 合成线程和归档回调都会发送消息，装饰后发送是线程安全的
+        WebSocketSession concurrent = new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT);
+        sessions.put(session.getId(), concurrent);
+        log.info("TTSv2流式连接建立: {}", session.getId());
+
+        JSONObject response = new JSONObject();
+        response.put("type", "connected");
+        sendMessage(concurrent, response);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        WebSocketSession concurrent = sessions.get(session.getId());
+        try {
+            JSONObject request = JSON.parseObject(message.getPayload());
+            String type = request.getString("type");
+            switch (type) {
+                case "synthesize":
+                    handleSynthesize(concurrent, request);
+                    break;
+                case "cancel":
+                    cancel(session.getId());
+                    break;
+                default:
+                    log.warn("未知消息类型: {}", type);
+            }
+        } catch (BusinessException e) {
+            sendError(concurrent, e.getMessage());
+        } catch (Exception e) {
+            log.error("处理消息失败: {}", e.getMessage(), e);
+            sendError(concurrent, e.getMessage());
+        }
+    }
+
+    private void handleSynthesize(WebSocketSession session, JSONObject json) {
+        TtsV2Request request = new TtsV2Request();
+        request.setText(json.getString("text"));
+        request.setVoiceType(json.getString("voiceType"));
+        request.setContextText(json.getString("contextText"));
+        if (json.getString("mode") != null) {
+            request.setMode(json.getString("mode"));
+        }
+        request.setUserKey(resolveUserKey(session));
+
+        if (request.getText() == null || request.getText().isBlank()) {
+            sendError(session, "文本不能为空");
+            return;
+        }
+        Future<?> previous = running.get(session.getId());
+        if (previous != null && !previous.isDone()) {
+            sendError(session, "上一次合成尚未完成");
+            return;
+        }
+        String denied = checkPermission(session);
+        if (denied != null) {
+            sendError(session, denied);
+            return;
+        }
+        rateLimitService.checkTextLength(request.getText());
+        rateLimitService.checkAndIncrement(request.getUserKey());
+
+        log.info("收到TTSv2流式合成请求, voiceType={}, textLength={}", request.getVoiceType(), request.getText().length());
+        try {
+            running.put(session.getId(), executor.submit(() -> stream(session, request)));
+        } catch (RejectedExecutionException e) {
+            log.warn("TTSv2流式合成排队已满: active={}, queued={}", executor.getActiveCount(), executor.getQueue().size());
+            sendError(session, "合成服务繁忙，请稍后重试");
+        }
+    }
+
+    /**
+     * 握手时保存的用户可能已过期（如月度字数在连接期间用完），每次合成前重新加载
+     */
+    private String checkPermission(WebSocketSession session) {
+        SysUser cached = (SysUser) session.getAttributes().get(WebSocketAuthInterceptor.CURRENT_USER_ATTR);
+        SysUser user = cached == null ? null : userRepository.findById(cached.getId()).orElse(null);
+        if (user == null) {
+            return "请先登录";
+        }
+        return permissionInterceptor.checkPermission(user, UserType.USER);
+    }
+
+    private void stream(WebSocketSession session, TtsV2Request request) {
+        long startTime = System.currentTimeMillis();
+        try {
+            CompletableFuture<TtsV2Response> archived = ttsV2Service.synthesizeStreaming(request, new TtsV2StreamListener() {
+                private boolean firstAudio = true;
+
+                @Override
+                public void onSentenceStart(String sentence) throws IOException {
+                    sendEvent(session, "sentence_start", sentence);
+                }
+
+                @Override
+                public void onAudio(ByteBuffer audio) throws IOException {
+                    if (firstAudio) {
+                        firstAudio = false;
+                        log.info("TTSv2流式首包音频: {}ms", System.currentTimeMillis() - startTime);
+                    }
+                    session.sendMessage(new BinaryMessage(audio));
+                }
+
+                @Override
+                public void onSentenceEnd(String sentence) throws IOException {
+                    sendEvent(session, "sentence_end", sentence);
+                }
+            });
+
+            JSONObject done = new JSONObject();
+            done.put("type", "done");
+            sendMessage(session, done);
+
+            archived.whenComplete((response, ex) -> {
+                if (ex != null) {
+                    sendError(session, "音频归档失败");
+                    return;
+                }
+                JSONObject result = new JSONObject();
+                result.put("type", "archived");
+                result.put("audioUrl", response.getAudioUrl());
+                result.put("subtitleUrl", response.getSubtitleUrl());
+                result.put("duration", response.getDuration());
+                result.put("subtitles", response.getSubtitles());
+                sendMessage(session, result);
+            });
+        } catch (Exception e) {
+            if (e instanceof InterruptedException || Thread.currentThread().isInterrupted() || !session.isOpen()) {
+                log.info("TTSv2流式合成已取消: {}", session.getId());
+                return;
+            }
+            log.error("TTSv2流式合成失败", e);
+            sendError(session, "合成失败: " + e.getMessage());
+        }
+    }
+
+    private String resolveUserKey(WebSocketSession session) {
+        Object userKey = session.getAttributes().get(UserKeyInterceptor.USER_KEY_ATTR);
+        if (userKey != null) {
+            return userKey.toString();
+        }
+        SysUser user = (SysUser) session.getAttributes().get(WebSocketAuthInterceptor.CURRENT_USER_ATTR);
+        return user != null ? String.valueOf(user.getId()) : null;
+    }
+
+    private void cancel(String sessionId) {
+        Future<?> future = running.remove(sessionId);
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        cancel(session.getId());
+        sessions.remove(session.getId());
+        log.info("TTSv2流式连接关闭: {}, status: {}", session.getId(), status);
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.error("TTSv2流式传输错误: {}", exception.getMessage());
+        cancel(session.getId());
+        sessions.remove(session.getId());
+    }
+
+    private void sendEvent(WebSocketSession session, String type, String text) throws IOException {
+        JSONObject event = new JSONObject();
+        event.put("type", type);
+        event.put("text", text);
+        session.sendMessage(new TextMessage(event.toJSONString()));
+    }
+
+    private void sendMessage(WebSocketSession session, JSONObject message) {
+        try {
+            if (session.isOpen()) {
+                session.sendMessage(new TextMessage(message.toJSONString()));
+            }
+        } catch (IOException e) {
+            log.error("发送消息失败: {}", e.getMessage());
+        }
+    }
+
+    private void sendError(WebSocketSession session, String errorMessage) {
+        JSONObject error = new JSONObject();
+        error.put("type", "error");
+        error.put("message", errorMessage);
+        sendMessage(session, error);
+    }
+}
@@ -6,10 +6,10 @@ import com.interview.tts.entity.ChatMessage;
 import com.interview.tts.entity.Session;
 import com.interview.tts.repository.ChatMessageRepository;
 import com.interview.tts.repository.SessionRepository;
-import com.interview.tts.service.DouyinTtsService;
 import com.interview.tts.service.LlmScriptService;
 import com.interview.tts.service.StorageService;
 import com.interview.tts.service.UserService;
+import com.interview.tts.service.tts.TtsRouter;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -37,7 +37,7 @@ public class VoiceChatHandler extends TextWebSocketHandler {
     private final ExecutorService executor = Executors.newCachedThreadPool();
 
     private final LlmScriptService llmScriptService;
-    private final DouyinTtsService ttsService;
+    private final TtsRouter ttsRouter;
     private final StorageService storageService;
     private final UserService userService;
     private final SessionRepository sessionRepository;
@@ -47,13 +47,13 @@ public class VoiceChatHandler extends TextWebSocketHandler {
     private String apiKey;
 
     public VoiceChatHandler(LlmScriptService llmScriptService,
-                           DouyinTtsService ttsService,
+                           TtsRouter ttsRouter,
                            StorageService storageService,
                            UserService userService,
                            SessionRepository sessionRepository,
                            ChatMessageRepository chatMessageRepository) {
         this.llmScriptService = llmScriptService;
-        this.ttsService = ttsService;
+        this.ttsRouter = ttsRouter;
         this.storageService = storageService;
         this.userService = userService;
         this.sessionRepository = sessionRepository;
@@ -215,7 +215,7 @@ public class VoiceChatHandler extends TextWebSocketHandler {
             sendMessage(session, textResponse);
 
             // 转换为语音
-            byte[] audioData = ttsService.generateAudio(answer, userSession.getVoiceName());
+            byte[] audioData = ttsRouter.generateAudio(answer, userSession.getVoiceName());
             String audioUrl = storageService.uploadAudio(audioData, "chat_" + System.currentTimeMillis());
 
             // 发送语音回答
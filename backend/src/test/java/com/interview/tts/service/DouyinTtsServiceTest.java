@@ -0,0 +1,224 @@
+package com.interview.tts.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.interview.tts.service.upstream.HttpClients;
+import com.interview.tts.service.upstream.UpstreamGateway;
+import com.interview.tts.stub.StubTtsController;
+import com.interview.tts.util.TextChunker;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 分段并行合成测试，上游为本地HTTP服务转发到 StubTtsController
+ */
+class DouyinTtsServiceTest {
+
+    private static final String VOICE = "BV001_streaming";
+    private static final int CHUNK_MAX_CHARS = 20;
+
+    private final StubTtsController stub = new StubTtsController();
+    // stub收到的每次请求的文本，按到达顺序
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    // 首次请求时注入失败的文本
+    private final Set<String> failOnce = ConcurrentHashMap.newKeySet();
+
+    private HttpServer server;
+    private String apiUrl;
+    private DouyinTtsService ttsService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ReflectionTestUtils.setField(stub, "latencyMs", 0L);
+        ReflectionTestUtils.setField(stub, "latencyPerCharMs", 1L);
+        ReflectionTestUtils.setField(stub, "failureRate", 0.0);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/stub/api/v1/tts", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String text = JSON.parseObject(body).getJSONObject("request").getString("text");
+            requests.add(text);
+            String response;
+            if (failOnce.remove(text)) {
+                JSONObject error = new JSONObject();
+                error.put("code", 3031);
+                error.put("message", "injected failure");
+                response = error.toJSONString();
+            } else {
+                try {
+                    response = stub.synthesize(body);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+
+        apiUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/stub/api/v1/tts";
+        ttsService = newService(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (ttsService != null) {
+            ttsService.shutdown();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    void chunksAreSynthesizedInParallelAndJoinedInOrder() {
+        String text = longText();
+        List<String> chunks = TextChunker.split(text, CHUNK_MAX_CHARS);
+        assertThat(chunks.size()).isGreaterThan(3);
+
+        List<int[]> progress = new CopyOnWriteArrayList<>();
+        byte[] audio = ttsService.generateAudio(text, VOICE, (completed, total) -> progress.add(new int[]{completed, total}));
+
+        assertThat(requests).containsExactlyInAnyOrderElementsOf(chunks);
+        assertThat(audio).isEqualTo(concat(chunks));
+        assertThat(progress).hasSize(chunks.size());
+        assertThat(progress).allSatisfy(p -> assertThat(p[1]).isEqualTo(chunks.size()));
+        assertThat(progress.stream().mapToInt(p -> p[0]).sorted().toArray())
+                .containsExactly(IntStream.rangeClosed(1, chunks.size()).toArray());
+    }
+
+    @Test
+    void streamingEmitsFirstSentenceAloneAndPartsInOrder() {
+        String text = longText();
+        List<String> chunks = TextChunker.splitForStreaming(text, CHUNK_MAX_CHARS);
+
+        List<byte[]> parts = new ArrayList<>();
+        byte[] audio = ttsService.generateAudioStreaming(text, VOICE, parts::add);
+
+        assertThat(chunks.get(0)).isEqualTo(TextChunker.splitSentences(text, CHUNK_MAX_CHARS).get(0));
+        assertThat(parts).hasSize(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            // 各分段的静音长度与文本长度成正比，按长度校验分段顺序
+            assertThat(parts.get(i)).as("分段%d", i).isEqualTo(stubAudio(chunks.get(i)));
+        }
+        assertThat(audio).isEqualTo(concat(chunks));
+    }
+
+    @Test
+    void failedChunkIsRetriedAlone() {
+        String text = longText();
+        List<String> chunks = TextChunker.split(text, CHUNK_MAX_CHARS);
+        String flaky = chunks.get(1);
+        failOnce.add(flaky);
+
+        byte[] audio = ttsService.generateAudio(text, VOICE);
+
+        assertThat(audio).isEqualTo(concat(chunks));
+        assertThat(requests.stream().filter(flaky::equals).count()).isEqualTo(2);
+        assertThat(requests).hasSize(chunks.size() + 1);
+    }
+
+    @Test
+    void editedTextOnlySynthesizesTheEditedSentence() {
+        ttsService.shutdown();
+        ttsService = newService(true);
+        String text = longText();
+        List<String> sentences = TextChunker.splitSentences(text, CHUNK_MAX_CHARS);
+        ttsService.generateAudio(text, VOICE);
+        assertThat(requests).containsExactlyInAnyOrderElementsOf(sentences);
+
+        requests.clear();
+        String edited = text.replace("第5句", "第五句");
+        List<String> editedSentences = TextChunker.splitSentences(edited, CHUNK_MAX_CHARS);
+        byte[] audio = ttsService.generateAudio(edited, VOICE);
+
+        // 相邻句子命中按句缓存，只有改动的一句请求上游
+        assertThat(requests).containsExactly(editedSentences.get(5));
+        assertThat(audio).isEqualTo(concat(editedSentences));
+    }
+
+    private DouyinTtsService newService(boolean segmentCacheEnabled) {
+        MockEnvironment environment = new MockEnvironment();
+        HttpClients httpClients = new HttpClients(new OkHttpClient(), environment);
+        UpstreamGateway gateway = new UpstreamGateway(environment);
+        ReflectionTestUtils.setField(gateway, "throttleCodesConfig", "3003,3005");
+        TextPreprocessService textPreprocessService = new TextPreprocessService(gateway, httpClients);
+        SegmentCacheService segmentCacheService = new SegmentCacheService(textPreprocessService);
+        ReflectionTestUtils.setField(segmentCacheService, "enabled", segmentCacheEnabled);
+        ReflectionTestUtils.setField(segmentCacheService, "maxBytes", 64L * 1024 * 1024);
+
+        DouyinTtsService service = new DouyinTtsService(segmentCacheService, gateway, httpClients);
+        ReflectionTestUtils.setField(service, "appId", "stub");
+        ReflectionTestUtils.setField(service, "accessToken", "stub");
+        ReflectionTestUtils.setField(service, "cluster", "volcano_tts");
+        ReflectionTestUtils.setField(service, "apiUrl", apiUrl);
+        ReflectionTestUtils.setField(service, "chunkMaxChars", CHUNK_MAX_CHARS);
+        ReflectionTestUtils.setField(service, "chunkParallelism", 4);
+        ReflectionTestUtils.setField(service, "chunkMaxRetries", 2);
+        ReflectionTestUtils.setField(service, "chunkRetryBackoffMs", 1L);
+        ReflectionTestUtils.setField(service, "hedgeEnabled", false);
+        ReflectionTestUtils.setField(service, "hedgePercentile", 0.95);
+        ReflectionTestUtils.setField(service, "hedgeDefaultDelayMs", 1500L);
+        ReflectionTestUtils.setField(service, "hedgeMinDelayMs", 200L);
+        ReflectionTestUtils.setField(service, "hedgeBudgetRatio", 0.1);
+        ReflectionTestUtils.setField(service, "hedgeBudgetBurst", 2.0);
+        ReflectionTestUtils.setField(service, "hedgeMaxConcurrent", 8);
+        service.init();
+        return service;
+    }
+
+    /**
+     * 长短不一的句子，切分后各分段长度不同
+     */
+    private static String longText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            text.append("第").append(i).append("句").append("内容".repeat(i % 5 + 1)).append("。");
+        }
+        return text.toString();
+    }
+
+    private byte[] stubAudio(String text) {
+        JSONObject request = new JSONObject();
+        request.put("request", new JSONObject());
+        request.getJSONObject("request").put("text", text);
+        try {
+            String response = stub.synthesize(request.toJSONString());
+            return Base64.getDecoder().decode(JSON.parseObject(response).getString("data"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+    }
+
+    private byte[] concat(List<String> chunks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String chunk : chunks) {
+            out.writeBytes(stubAudio(chunk));
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,200 @@
+package com.interview.tts.service.job;
+
+import com.interview.tts.entity.SynthesisJob;
+import com.interview.tts.repository.SynthesisJobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 任务队列在H2上的领取/租约/重试测试
+ * 工作线程在测试事务之外读写，测试方法不开启事务，每个用例前清空表
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JobQueueTest {
+
+    private static final long AWAIT_MS = 5000;
+
+    @Autowired
+    private SynthesisJobRepository jobRepository;
+
+    private JobQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        jobRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    void claimIsExclusiveAndFollowsPriority() {
+        JobQueue idle = newQueue();
+        Long low = idle.enqueue("test", "{}", 0);
+        Long high = idle.enqueue("test", "{}", 10);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> runnable = jobRepository.findRunnableIds(now, PageRequest.of(0, 10));
+        assertThat(runnable).containsExactly(high, low);
+
+        assertThat(jobRepository.claim(high, "node-a", now.plusMinutes(1), now)).isEqualTo(1);
+        // 已被领取的任务，其他实例的条件更新不生效
+        assertThat(jobRepository.claim(high, "node-b", now.plusMinutes(1), now)).isZero();
+
+        SynthesisJob claimed = jobRepository.findById(high).orElseThrow();
+        assertThat(claimed.getStatus()).isEqualTo(SynthesisJob.JobStatus.RUNNING);
+        assertThat(claimed.getLeaseOwner()).isEqualTo("node-a");
+        assertThat(claimed.getAttempts()).isEqualTo(1);
+        assertThat(jobRepository.findRunnableIds(now, PageRequest.of(0, 10))).containsExactly(low);
+    }
+
+    @Test
+    void expiredLeaseIsReleasedAndReclaimed() {
+        Long id = newQueue().enqueue("test", "{}");
+        LocalDateTime now = LocalDateTime.now();
+        jobRepository.claim(id, "node-a", now.minusSeconds(1), now);
+
+        // 只有租约持有者可以续约和结束任务
+        assertThat(jobRepository.renewLeases(List.of(id), "node-b", now.plusMinutes(1))).isZero();
+        assertThat(jobRepository.finish(id, "node-b", SynthesisJob.JobStatus.SUCCEEDED, now, null, now)).isZero();
+
+        assertThat(jobRepository.releaseExpired(now)).isEqualTo(1);
+        SynthesisJob released = jobRepository.findById(id).orElseThrow();
+        assertThat(released.getStatus()).isEqualTo(SynthesisJob.JobStatus.PENDING);
+        assertThat(released.getLeaseOwner()).isNull();
+
+        assertThat(jobRepository.claim(id, "node-b", now.plusMinutes(1), now)).isEqualTo(1);
+        assertThat(jobRepository.findById(id).orElseThrow().getAttempts()).isEqualTo(2);
+        // 原持有者崩溃前的结束请求不再生效
+        assertThat(jobRepository.finish(id, "node-a", SynthesisJob.JobStatus.SUCCEEDED, now, null, now)).isZero();
+    }
+
+    @Test
+    void failedJobIsRetriedWithBackoff() {
+        queue = newQueue(new TestHandler("flaky", () -> {
+            throw new IllegalStateException("上游超时");
+        }));
+        queue.start();
+        Long id = queue.enqueue("flaky", "{}");
+
+        SynthesisJob job = awaitJob(id, j -> j.getAttempts() == 1 && j.getStatus() == SynthesisJob.JobStatus.PENDING);
+        assertThat(job.getLastError()).contains("上游超时");
+        assertThat(job.getLeaseOwner()).isNull();
+        assertThat(job.getRunAt()).isAfter(LocalDateTime.now());
+        assertThat(queue.getStats().getRetried()).isEqualTo(1);
+    }
+
+    @Test
+    void lastAttemptGoesToDeadLetter() {
+        TestHandler handler = new TestHandler("flaky", () -> {
+            throw new IllegalStateException("参数错误");
+        });
+        queue = newQueue(handler);
+        ReflectionTestUtils.setField(queue, "defaultMaxAttempts", 1);
+        queue.start();
+        Long id = queue.enqueue("flaky", "{}");
+
+        SynthesisJob job = awaitJob(id, j -> j.getStatus() == SynthesisJob.JobStatus.DEAD);
+        assertThat(job.getLastError()).contains("参数错误");
+        awaitCondition(() -> handler.deadLetters.contains(id));
+    }
+
+    @Test
+    void errorInHandlerMarksJobFailedAndWorkerKeepsPolling() {
+        queue = newQueue(
+                new TestHandler("broken", () -> {
+                    throw new StackOverflowError("模拟递归过深");
+                }),
+                new TestHandler("ok", () -> {
+                }));
+        queue.start();
+
+        Long broken = queue.enqueue("broken", "{}", 10);
+        SynthesisJob failed = awaitJob(broken, j -> j.getAttempts() == 1 && j.getStatus() == SynthesisJob.JobStatus.PENDING);
+        assertThat(failed.getLastError()).contains("StackOverflowError");
+
+        // 唯一的工作线程没有因为Error退出，后续任务照常执行
+        Long ok = queue.enqueue("ok", "{}");
+        awaitJob(ok, j -> j.getStatus() == SynthesisJob.JobStatus.SUCCEEDED);
+    }
+
+    private JobQueue newQueue(TestHandler... handlers) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        for (TestHandler handler : handlers) {
+            beanFactory.addBean(handler.type(), handler);
+        }
+        JobQueue jobQueue = new JobQueue(jobRepository, beanFactory.getBeanProvider(JobHandler.class));
+        ReflectionTestUtils.setField(jobQueue, "workers", 1);
+        ReflectionTestUtils.setField(jobQueue, "leaseMs", 60000L);
+        ReflectionTestUtils.setField(jobQueue, "pollIntervalMs", 50L);
+        ReflectionTestUtils.setField(jobQueue, "defaultMaxAttempts", 3);
+        ReflectionTestUtils.setField(jobQueue, "backoffBaseMs", 60000L);
+        ReflectionTestUtils.setField(jobQueue, "backoffMaxMs", 600000L);
+        return jobQueue;
+    }
+
+    private SynthesisJob awaitJob(Long id, Predicate<SynthesisJob> condition) {
+        awaitCondition(() -> condition.test(jobRepository.findById(id).orElseThrow()));
+        return jobRepository.findById(id).orElseThrow();
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + AWAIT_MS;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("等待任务状态超时").isLessThan(deadline);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static class TestHandler implements JobHandler {
+        private final String type;
+        private final Runnable action;
+        private final List<Long> deadLetters = new CopyOnWriteArrayList<>();
+
+        TestHandler(String type, Runnable action) {
+            this.type = type;
+            this.action = action;
+        }
+
+        @Override
+        public String type() {
+            return type;
+        }
+
+        @Override
+        public void handle(SynthesisJob job) {
+            action.run();
+        }
+
+        @Override
+        public void onDeadLetter(SynthesisJob job, Throwable lastError) {
+            deadLetters.add(job.getId());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.interview.tts.service.ttsv2;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.interview.tts.service.ttsv2.TtsV2Message.MsgFlag;
+import com.interview.tts.service.ttsv2.TtsV2Message.MsgType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TtsV2Message 编解码基准：LegacyTtsV2Message（改造前）对比 TtsV2Message
+ *
+ * 帧组合按一次v2流式合成的实际流量：
+ * - 上行 TASK_REQUEST：约600字节的JSON文本帧，带event和sessionId
+ * - 下行 TTS_RESPONSE：4KB音频帧，解码后写入输出流
+ * - 下行 TTS_SENTENCE_START：约300字节的字幕JSON帧，解码为字符串
+ * streamMix 为一句话的典型组合：1个文本帧编码 + 20个音频帧 + 1个字幕帧解码
+ *
+ * 运行 (backend目录):
+ * mvn -q test-compile dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-cp.txt) org.openjdk.jmh.Main TtsV2MessageCodecBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TtsV2MessageCodecBenchmark {
+
+    private static final int AUDIO_FRAMES_PER_SENTENCE = 20;
+
+    private String sessionId;
+    private byte[] textPayload;
+    private byte[] audioFrame;
+    private byte[] subtitleFrame;
+    private final CountingOutputStream audioOut = new CountingOutputStream();
+
+    @Setup
+    public void setup() {
+        // 与线上一致按INFO输出日志，否则logback未配置时默认DEBUG，会把日志输出计入耗时
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+
+        sessionId = UUID.randomUUID().toString();
+        StringBuilder text = new StringBuilder("{\"user\":{\"uid\":\"bench\"},\"event\":200,\"namespace\":\"BidirectionalTTS\","
+                + "\"req_params\":{\"speaker\":\"zh_female_shuangkuaisisi_moon_bigtts\","
+                + "\"audio_params\":{\"format\":\"mp3\",\"sample_rate\":24000},\"text\":\"");
+        while (text.length() < 580) {
+            text.append("面试官问到缓存一致性时，可以先讲清楚读写路径。");
+        }
+        text.append("\"}}");
+        textPayload = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        byte[] audio = new byte[4096];
+        new Random(42).nextBytes(audio);
+        audioFrame = serverFrame(MsgType.AUDIO_ONLY_SERVER, TtsV2EventType.TTS_RESPONSE, audio);
+
+        String subtitle = "{\"text\":\"面试官问到缓存一致性时，可以先讲清楚读写路径。\",\"words\":["
+                + "{\"word\":\"面试官\",\"startTime\":0.12,\"endTime\":0.48},"
+                + "{\"word\":\"问到\",\"startTime\":0.48,\"endTime\":0.71},"
+                + "{\"word\":\"缓存\",\"startTime\":0.71,\"endTime\":1.02}]}";
+        subtitleFrame = serverFrame(MsgType.FULL_SERVER_RESPONSE, TtsV2EventType.TTS_SENTENCE_START,
+                subtitle.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public byte[] encodeTextLegacy() throws Exception {
+        return legacyTextRequest().marshal();
+    }
+
+    @Benchmark
+    public ByteBuffer encodeTextPooled() {
+        return textRequest().marshalPooled();
+    }
+
+    @Benchmark
+    public long decodeAudioLegacy() throws IOException {
+        LegacyTtsV2Message message = LegacyTtsV2Message.unmarshal(audioFrame);
+        audioOut.write(message.getPayload());
+        return audioOut.count;
+    }
+
+    @Benchmark
+    public long decodeAudioSlice() throws IOException {
+        // 与线上一致，WebSocket回调收到的是包装帧数据的ByteBuffer
+        TtsV2Message message = TtsV2Message.unmarshal(ByteBuffer.wrap(audioFrame));
+        message.writePayloadTo(audioOut);
+        return audioOut.count;
+    }
+
+    @Benchmark
+    public String decodeSubtitleLegacy() {
+        return new String(LegacyTtsV2Message.unmarshal(subtitleFrame).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String decodeSubtitleSlice() {
+        return TtsV2Message.unmarshal(ByteBuffer.wrap(subtitleFrame)).getPayloadAsString();
+    }
+
+    @Benchmark
+    public void streamMixLegacy(Blackhole bh) throws Exception {
+        bh.consume(legacyTextRequest().marshal());
+        for (int i = 0; i < AUDIO_FRAMES_PER_SENTENCE; i++) {
+            audioOut.write(LegacyTtsV2Message.unmarshal(audioFrame).getPayload());
+        }
+        bh.consume(new String(LegacyTtsV2Message.unmarshal(subtitleFrame).getPayload(), StandardCharsets.UTF_8));
+        bh.consume(audioOut.count);
+    }
+
+    @Benchmark
+    public void streamMix(Blackhole bh) throws IOException {
+        bh.consume(textRequest().marshalPooled());
+        for (int i = 0; i < AUDIO_FRAMES_PER_SENTENCE; i++) {
+            TtsV2Message.unmarshal(ByteBuffer.wrap(audioFrame)).writePayloadTo(audioOut);
+        }
+        bh.consume(TtsV2Message.unmarshal(ByteBuffer.wrap(subtitleFrame)).getPayloadAsString());
+        bh.consume(audioOut.count);
+    }
+
+    private LegacyTtsV2Message legacyTextRequest() {
+        LegacyTtsV2Message message = new LegacyTtsV2Message(MsgType.FULL_CLIENT_REQUEST, MsgFlag.WITH_EVENT);
+        message.setEvent(TtsV2EventType.TASK_REQUEST);
+        message.setSessionId(sessionId);
+        message.setPayload(textPayload);
+        return message;
+    }
+
+    private TtsV2Message textRequest() {
+        TtsV2Message message = new TtsV2Message(MsgType.FULL_CLIENT_REQUEST, MsgFlag.WITH_EVENT);
+        message.setEvent(TtsV2EventType.TASK_REQUEST);
+        message.setSessionId(sessionId);
+        message.setPayload(textPayload);
+        return message;
+    }
+
+    private byte[] serverFrame(MsgType type, TtsV2EventType event, byte[] payload) {
+        TtsV2Message message = new TtsV2Message(type, MsgFlag.WITH_EVENT);
+        message.setEvent(event);
+        message.setSessionId(sessionId);
+        message.setPayload(payload);
+        return message.marshal();
+    }
+
+    /**
+     * 只计数的输出流，代替合成时的音频输出
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
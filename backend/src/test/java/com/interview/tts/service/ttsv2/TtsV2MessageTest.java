@@ -0,0 +1,146 @@
+package com.interview.tts.service.ttsv2;
+
+import com.interview.tts.service.ttsv2.TtsV2Message.MsgFlag;
+import com.interview.tts.service.ttsv2.TtsV2Message.MsgType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * TtsV2Message 解码测试
+ * 输入帧由 LegacyTtsV2Message.marshal 生成，其字段布局与官方示例的编码一致：按字段是否存在依次写入，不看消息类型
+ */
+class TtsV2MessageTest {
+
+    private static final String SESSION_ID = "6b7e0c52-4f1e-4d0a-9a43-0f1f3f6f2a11";
+
+    @Test
+    void decodesSessionEventWithJsonPayload() throws Exception {
+        LegacyTtsV2Message frame = new LegacyTtsV2Message(MsgType.FULL_SERVER_RESPONSE, MsgFlag.WITH_EVENT);
+        frame.setEvent(TtsV2EventType.TTS_SENTENCE_START);
+        frame.setSessionId(SESSION_ID);
+        frame.setPayload("{\"text\":\"你好\"}".getBytes(StandardCharsets.UTF_8));
+
+        TtsV2Message message = TtsV2Message.unmarshal(frame.marshal());
+
+        assertThat(message.getType()).isEqualTo(MsgType.FULL_SERVER_RESPONSE);
+        assertThat(message.getEvent()).isEqualTo(TtsV2EventType.TTS_SENTENCE_START);
+        assertThat(message.getSessionId()).isEqualTo(SESSION_ID);
+        assertThat(message.getPayloadAsString()).isEqualTo("{\"text\":\"你好\"}");
+    }
+
+    @Test
+    void decodesAudioFrameAsSliceOfInput() throws Exception {
+        byte[] audio = new byte[4096];
+        for (int i = 0; i < audio.length; i++) {
+            audio[i] = (byte) i;
+        }
+        LegacyTtsV2Message frame = new LegacyTtsV2Message(MsgType.AUDIO_ONLY_SERVER, MsgFlag.WITH_EVENT);
+        frame.setEvent(TtsV2EventType.TTS_RESPONSE);
+        frame.setSessionId(SESSION_ID);
+        frame.setPayload(audio);
+        byte[] bytes = frame.marshal();
+
+        TtsV2Message message = TtsV2Message.unmarshal(ByteBuffer.wrap(bytes));
+
+        assertThat(message.getSessionId()).isEqualTo(SESSION_ID);
+        assertThat(message.getPayloadSize()).isEqualTo(audio.length);
+        assertThat(message.getPayload()).isEqualTo(audio);
+        // payload是输入缓冲区的切片，未复制
+        bytes[bytes.length - 1] = 0x55;
+        assertThat(message.getPayloadBuffer().get(audio.length - 1)).isEqualTo((byte) 0x55);
+    }
+
+    @Test
+    void decodesConnectionEventWithConnectId() throws Exception {
+        LegacyTtsV2Message frame = new LegacyTtsV2Message(MsgType.FULL_SERVER_RESPONSE, MsgFlag.WITH_EVENT);
+        frame.setEvent(TtsV2EventType.CONNECTION_STARTED);
+        frame.setConnectId("conn-1");
+        frame.setPayload("{}".getBytes(StandardCharsets.UTF_8));
+
+        TtsV2Message message = TtsV2Message.unmarshal(frame.marshal());
+
+        assertThat(message.getEvent()).isEqualTo(TtsV2EventType.CONNECTION_STARTED);
+        assertThat(message.getConnectId()).isEqualTo("conn-1");
+        assertThat(message.getSessionId()).isNull();
+        assertThat(message.getPayloadAsString()).isEqualTo("{}");
+    }
+
+    @Test
+    void decodesSequenceWithoutEvent() throws Exception {
+        LegacyTtsV2Message frame = new LegacyTtsV2Message(MsgType.AUDIO_ONLY_SERVER, MsgFlag.NEGATIVE_SEQ);
+        frame.setSequence(-3);
+        frame.setPayload(new byte[]{1, 2, 3});
+
+        TtsV2Message message = TtsV2Message.unmarshal(frame.marshal());
+
+        assertThat(message.getEvent()).isNull();
+        assertThat(message.getSequence()).isEqualTo(-3);
+        assertThat(message.getPayload()).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void decodesErrorFrameWithoutEvent() throws Exception {
+        LegacyTtsV2Message frame = new LegacyTtsV2Message(MsgType.ERROR, MsgFlag.NO_SEQ);
+        frame.setErrorCode(45000001);
+        frame.setPayload("{\"error\":\"invalid speaker\"}".getBytes(StandardCharsets.UTF_8));
+
+        TtsV2Message message = TtsV2Message.unmarshal(frame.marshal());
+
+        assertThat(message.getType()).isEqualTo(MsgType.ERROR);
+        assertThat(message.getErrorCode()).isEqualTo(45000001);
+        assertThat(message.getPayloadAsString()).isEqualTo("{\"error\":\"invalid speaker\"}");
+    }
+
+    @Test
+    void errorFrameWithEventHasNoSessionId() throws Exception {
+        // 官方示例解码: type != ERROR 时才读取sessionId，ERROR帧在event之后直接是错误码
+        LegacyTtsV2Message frame = new LegacyTtsV2Message(MsgType.ERROR, MsgFlag.WITH_EVENT);
+        frame.setEvent(TtsV2EventType.SESSION_FAILED);
+        frame.setErrorCode(55000000);
+        frame.setPayload("{\"error\":\"server busy\"}".getBytes(StandardCharsets.UTF_8));
+
+        TtsV2Message message = TtsV2Message.unmarshal(frame.marshal());
+
+        assertThat(message.getType()).isEqualTo(MsgType.ERROR);
+        assertThat(message.getEvent()).isEqualTo(TtsV2EventType.SESSION_FAILED);
+        assertThat(message.getSessionId()).isNull();
+        assertThat(message.getErrorCode()).isEqualTo(55000000);
+        assertThat(message.getPayloadAsString()).isEqualTo("{\"error\":\"server busy\"}");
+    }
+
+    @Test
+    void errorFrameWithEventRoundTrips() {
+        TtsV2Message original = new TtsV2Message(MsgType.ERROR, MsgFlag.WITH_EVENT);
+        original.setEvent(TtsV2EventType.SESSION_FAILED);
+        original.setSessionId(SESSION_ID);
+        original.setErrorCode(55000000);
+        original.setPayload("{}".getBytes(StandardCharsets.UTF_8));
+
+        byte[] bytes = original.marshal();
+        TtsV2Message decoded = TtsV2Message.unmarshal(bytes);
+
+        // 编码与解码对称，ERROR帧不写sessionId
+        assertThat(bytes).hasSize(original.encodedLength());
+        assertThat(decoded.getSessionId()).isNull();
+        assertThat(decoded.getErrorCode()).isEqualTo(55000000);
+        assertThat(decoded.getPayloadAsString()).isEqualTo("{}");
+    }
+
+    @Test
+    void truncatedFrameIsRejected() throws Exception {
+        LegacyTtsV2Message frame = new LegacyTtsV2Message(MsgType.FULL_SERVER_RESPONSE, MsgFlag.WITH_EVENT);
+        frame.setEvent(TtsV2EventType.TTS_SENTENCE_START);
+        frame.setSessionId(SESSION_ID);
+        frame.setPayload("{\"text\":\"你好\"}".getBytes(StandardCharsets.UTF_8));
+        byte[] bytes = frame.marshal();
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+
+        assertThatThrownBy(() -> TtsV2Message.unmarshal(truncated)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
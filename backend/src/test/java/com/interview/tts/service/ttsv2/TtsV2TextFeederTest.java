@@ -0,0 +1,174 @@
+package com.interview.tts.service.ttsv2;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.interview.tts.config.TtsV2Properties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * TASK_REQUEST文本发送器的分帧测试：句末标点、长度上限、定时刷新
+ */
+class TtsV2TextFeederTest {
+
+    private static final long AWAIT_MS = 5000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void framesAreBuiltFromTemplate() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        TtsV2TextFeeder feeder = newFeeder(sink, 200, 60000);
+
+        feeder.feedAll("第一句。第二句\"引号\"。");
+
+        assertThat(sink.texts()).containsExactly("第一句。", "第二句\"引号\"。");
+        Map<?, ?> frame = objectMapper.readValue(sink.frames.get(0), Map.class);
+        assertThat(frame.get("event")).isEqualTo(TtsV2EventType.TASK_REQUEST.getValue());
+        assertThat(((Map<?, ?>) frame.get("req_params")).get("speaker")).isEqualTo("test-speaker");
+    }
+
+    @Test
+    void appendFlushesAtSentenceEnd() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        TtsV2TextFeeder feeder = newFeeder(sink, 200, 60000);
+
+        feeder.append("你好");
+        feeder.append("，世界");
+        assertThat(sink.texts()).isEmpty();
+
+        feeder.append("。下一");
+        assertThat(sink.texts()).containsExactly("你好，世界。");
+
+        feeder.append("句！还有");
+        assertThat(sink.texts()).containsExactly("你好，世界。", "下一句！");
+
+        feeder.finish();
+        assertThat(sink.texts()).containsExactly("你好，世界。", "下一句！", "还有");
+        assertThat(feeder.getFrameCount()).isEqualTo(3);
+    }
+
+    @Test
+    void appendFlushesAtMaxFrameChars() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        TtsV2TextFeeder feeder = newFeeder(sink, 5, 60000);
+
+        feeder.append("一二三四五六七八九十甲乙");
+        assertThat(sink.texts()).containsExactly("一二三四五", "六七八九十");
+
+        feeder.finish();
+        assertThat(sink.texts()).containsExactly("一二三四五", "六七八九十", "甲乙");
+    }
+
+    @Test
+    void bufferedTextIsFlushedOnTimer() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        TtsV2TextFeeder feeder = newFeeder(sink, 200, 50);
+
+        feeder.append("没有句末标点");
+        awaitCondition(() -> sink.frames.size() == 1);
+        assertThat(sink.texts()).containsExactly("没有句末标点");
+        // 定时刷新在发送线程上执行，不占用共享的计时线程
+        assertThat(sink.threads.get(0)).startsWith("ttsv2-feeder-flush-");
+
+        feeder.finish();
+        assertThat(sink.texts()).containsExactly("没有句末标点");
+    }
+
+    @Test
+    void finishCancelsPendingTimerFlush() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        TtsV2TextFeeder feeder = newFeeder(sink, 200, 50);
+
+        feeder.append("剩余文本");
+        feeder.finish();
+        Thread.sleep(200);
+
+        assertThat(sink.texts()).containsExactly("剩余文本");
+    }
+
+    @Test
+    void blockedTimerSendDoesNotDelayOtherFeeders() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink blocked = new RecordingSink() {
+            @Override
+            public void send(byte[] frame) throws Exception {
+                release.await(AWAIT_MS, TimeUnit.MILLISECONDS);
+                super.send(frame);
+            }
+        };
+        RecordingSink other = new RecordingSink();
+        try {
+            newFeeder(blocked, 200, 20).append("阻塞的会话");
+            Thread.sleep(100);
+            newFeeder(other, 200, 20).append("其他会话");
+
+            awaitCondition(() -> other.frames.size() == 1);
+            assertThat(blocked.frames).isEmpty();
+        } finally {
+            release.countDown();
+        }
+        awaitCondition(() -> blocked.frames.size() == 1);
+    }
+
+    @Test
+    void timerSendFailureIsThrownOnNextCall() throws Exception {
+        TtsV2TextFeeder feeder = newFeeder(frame -> {
+            throw new IllegalStateException("连接已断开");
+        }, 200, 20);
+
+        feeder.append("会失败");
+        Thread.sleep(200);
+
+        assertThatThrownBy(() -> feeder.append("下一段")).hasMessageContaining("连接已断开");
+        assertThatThrownBy(feeder::finish).hasMessageContaining("连接已断开");
+    }
+
+    private TtsV2TextFeeder newFeeder(TtsV2TextFeeder.FrameSink sink, int maxFrameChars, long flushIntervalMs)
+            throws Exception {
+        TtsV2Properties.Feeder config = new TtsV2Properties.Feeder();
+        config.setMaxFrameChars(maxFrameChars);
+        config.setFlushIntervalMs(flushIntervalMs);
+        Map<String, Object> reqParams = Map.of(
+                "user", Map.of("uid", "test"),
+                "namespace", "BidirectionalTTS",
+                "req_params", Map.of("speaker", "test-speaker"));
+        return TtsV2TextFeeder.create(objectMapper, reqParams, config, sink);
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_MS;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("等待发送超时").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private class RecordingSink implements TtsV2TextFeeder.FrameSink {
+        final List<byte[]> frames = new CopyOnWriteArrayList<>();
+        final List<String> threads = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(byte[] frame) throws Exception {
+            frames.add(frame);
+            threads.add(Thread.currentThread().getName());
+        }
+
+        List<String> texts() throws Exception {
+            List<String> texts = new CopyOnWriteArrayList<>();
+            for (byte[] frame : frames) {
+                Map<?, ?> json = objectMapper.readValue(frame, Map.class);
+                texts.add((String) ((Map<?, ?>) json.get("req_params")).get("text"));
+            }
+            return texts;
+        }
+    }
+}
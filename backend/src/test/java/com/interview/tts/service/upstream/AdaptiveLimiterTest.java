@@ -0,0 +1,130 @@
+package com.interview.tts.service.upstream;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 自适应并发限制测试：乘性减、取消不影响上限、排队顺序与超时
+ */
+class AdaptiveLimiterTest {
+
+    private static final long AWAIT_MS = 5000;
+
+    @Test
+    void throttledDecreasesLimitOncePerCooldown() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("tts", 10, 1, 20, 10, 1000, 0.5, 0);
+
+        long first = limiter.acquire();
+        long second = limiter.acquire();
+        limiter.release(first, AdaptiveLimiter.Outcome.THROTTLED);
+        assertThat(limiter.getStats().getLimit()).isEqualTo(5);
+
+        // 同一批失败在冷却期内只下调一次
+        limiter.release(second, AdaptiveLimiter.Outcome.THROTTLED);
+        assertThat(limiter.getStats().getLimit()).isEqualTo(5);
+        assertThat(limiter.getStats().getThrottled()).isEqualTo(2);
+        assertThat(limiter.getStats().getInflight()).isZero();
+    }
+
+    @Test
+    void throttledNeverGoesBelowMinLimit() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("tts", 3, 2, 20, 10, 1000, 0.1, 0);
+
+        limiter.release(limiter.acquire(), AdaptiveLimiter.Outcome.THROTTLED);
+
+        assertThat(limiter.getStats().getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void cancelledOnlyReturnsThePermit() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("tts", 4, 1, 20, 10, 1000, 0.5, 0);
+
+        long start = limiter.acquire();
+        limiter.release(start, AdaptiveLimiter.Outcome.CANCELLED);
+
+        AdaptiveLimiter.LimiterStats stats = limiter.getStats();
+        assertThat(stats.getLimit()).isEqualTo(4);
+        assertThat(stats.getInflight()).isZero();
+        assertThat(stats.getCancelled()).isEqualTo(1);
+        // 取消的请求不计入响应时间
+        assertThat(stats.getBaselineLatencyMs()).isZero();
+    }
+
+    @Test
+    void queuedRequestsAcquireInArrivalOrder() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("tts", 1, 1, 1, 10, AWAIT_MS, 0.5, 0);
+        List<String> order = new CopyOnWriteArrayList<>();
+        long held = limiter.acquire();
+
+        Thread first = startWaiter(limiter, "first", order);
+        awaitCondition(() -> limiter.getStats().getQueued() == 1);
+        Thread second = startWaiter(limiter, "second", order);
+        awaitCondition(() -> limiter.getStats().getQueued() == 2);
+
+        limiter.release(held, AdaptiveLimiter.Outcome.SUCCESS);
+        first.join(AWAIT_MS);
+        second.join(AWAIT_MS);
+
+        assertThat(order).containsExactly("first", "second");
+        assertThat(limiter.getStats().getInflight()).isZero();
+        assertThat(limiter.getStats().getRejected()).isZero();
+    }
+
+    @Test
+    void queuedRequestIsRejectedAfterMaxWait() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("tts", 1, 1, 1, 10, 50, 0.5, 0);
+        limiter.acquire();
+
+        long startTime = System.currentTimeMillis();
+        assertThatThrownBy(limiter::acquire)
+                .isInstanceOf(UpstreamRejectedException.class)
+                .hasMessageContaining("排队超时");
+
+        assertThat(System.currentTimeMillis() - startTime).isGreaterThanOrEqualTo(50);
+        assertThat(limiter.getStats().getRejected()).isEqualTo(1);
+        assertThat(limiter.getStats().getQueued()).isZero();
+    }
+
+    @Test
+    void fullQueueIsRejectedImmediately() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("tts", 1, 1, 1, 0, AWAIT_MS, 0.5, 0);
+        limiter.acquire();
+
+        assertThatThrownBy(limiter::acquire)
+                .isInstanceOf(UpstreamRejectedException.class)
+                .hasMessageContaining("排队请求过多");
+        assertThat(limiter.getStats().getRejected()).isEqualTo(1);
+    }
+
+    /**
+     * 排队获取名额，拿到后记录名称并立即归还
+     */
+    private static Thread startWaiter(AdaptiveLimiter limiter, String name, List<String> order) {
+        Thread thread = new Thread(() -> {
+            try {
+                long start = limiter.acquire();
+                order.add(name);
+                limiter.release(start, AdaptiveLimiter.Outcome.SUCCESS);
+            } catch (Exception e) {
+                order.add(name + ": " + e.getMessage());
+            }
+        }, "limiter-test-" + name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_MS;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("等待排队超时").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.interview.tts.service.upstream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 对冲请求测试：按分位数延迟触发对冲、按用户预算计费、并发上限与上游排队时不对冲
+ */
+class RequestHedgerTest {
+
+    private static final long AWAIT_MS = 5000;
+    private static final Long USER_ID = 1L;
+
+    private RequestHedger hedger;
+
+    @AfterEach
+    void tearDown() {
+        if (hedger != null) {
+            hedger.shutdown();
+        }
+    }
+
+    @Test
+    void hedgeFiresAfterPercentileDelayAndCancelsLoser() throws Exception {
+        hedger = new RequestHedger("tts", 0.95, 2000, 0, 1.0, 2.0, 8, null);
+        assertThat(hedger.getStats().getHedgeDelayMs()).isEqualTo(2000);
+        // 样本不足时用默认延迟，积累到20个后按p95
+        for (int i = 0; i < 20; i++) {
+            hedger.execute(onCancel -> {
+                Thread.sleep(50);
+                return "seed";
+            });
+        }
+        long delayMs = hedger.getStats().getHedgeDelayMs();
+        assertThat(delayMs).isGreaterThanOrEqualTo(50).isLessThan(2000);
+
+        SlowFirstCall call = new SlowFirstCall(AWAIT_MS);
+        long startTime = System.nanoTime();
+        String result = hedger.execute(USER_ID, call);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+        assertThat(result).isEqualTo("hedge");
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(delayMs).isLessThan(AWAIT_MS);
+        assertThat(call.primaryCancelled.await(AWAIT_MS, TimeUnit.MILLISECONDS)).isTrue();
+        RequestHedger.HedgeStats stats = hedger.getStats();
+        assertThat(stats.getHedged()).isEqualTo(1);
+        assertThat(stats.getHedgeWins()).isEqualTo(1);
+    }
+
+    @Test
+    void fastRequestIsNotHedged() throws Exception {
+        hedger = new RequestHedger("tts", 0.95, 200, 0, 1.0, 2.0, 8, null);
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = hedger.execute(USER_ID, onCancel -> {
+            calls.incrementAndGet();
+            return "primary";
+        });
+
+        assertThat(result).isEqualTo("primary");
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(hedger.getStats().getHedged()).isZero();
+    }
+
+    @Test
+    void hedgesAreLimitedByUserBudget() throws Exception {
+        // 每次请求积累0.5个令牌，最多1个：第一次对冲用掉初始令牌，第二次不足，第三次又攒够
+        hedger = new RequestHedger("tts", 0.95, 20, 0, 0.5, 1.0, 8, null);
+
+        assertThat(hedger.execute(USER_ID, new SlowFirstCall(200))).isEqualTo("hedge");
+        assertThat(hedger.execute(USER_ID, new SlowFirstCall(200))).isEqualTo("primary");
+        assertThat(hedger.execute(USER_ID, new SlowFirstCall(200))).isEqualTo("hedge");
+        // 预算按用户计，其他用户不受影响
+        assertThat(hedger.execute(2L, new SlowFirstCall(200))).isEqualTo("hedge");
+
+        RequestHedger.HedgeStats stats = hedger.getStats();
+        assertThat(stats.getRequests()).isEqualTo(4);
+        assertThat(stats.getHedged()).isEqualTo(3);
+        assertThat(stats.getOverBudget()).isEqualTo(1);
+    }
+
+    @Test
+    void budgetIsRefundedWhenNoHedgePermit() throws Exception {
+        // 没有对冲名额：预算不增长也不应被消耗，否则第二次会记为超预算
+        hedger = new RequestHedger("tts", 0.95, 20, 0, 0, 1.0, 0, null);
+
+        assertThat(hedger.execute(USER_ID, new SlowFirstCall(100))).isEqualTo("primary");
+        assertThat(hedger.execute(USER_ID, new SlowFirstCall(100))).isEqualTo("primary");
+
+        RequestHedger.HedgeStats stats = hedger.getStats();
+        assertThat(stats.getHedged()).isZero();
+        assertThat(stats.getSkipped()).isEqualTo(2);
+        assertThat(stats.getOverBudget()).isZero();
+    }
+
+    @Test
+    void saturatedUpstreamIsNotHedged() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("tts", 1, 1, 1, 10, 1000, 0.5, 0);
+        hedger = new RequestHedger("tts", 0.95, 20, 0, 0, 1.0, 8, limiter);
+        long held = limiter.acquire();
+        try {
+            assertThat(hedger.execute(USER_ID, new SlowFirstCall(100))).isEqualTo("primary");
+        } finally {
+            limiter.release(held, AdaptiveLimiter.Outcome.SUCCESS);
+        }
+
+        RequestHedger.HedgeStats stats = hedger.getStats();
+        assertThat(stats.getHedged()).isZero();
+        assertThat(stats.getSkipped()).isEqualTo(1);
+        // 上游排队时跳过对冲不消耗预算
+        assertThat(hedger.execute(USER_ID, new SlowFirstCall(100))).isEqualTo("hedge");
+    }
+
+    /**
+     * 第一次执行慢：等到被取消或 primaryMs 后返回 "primary"；之后的执行立即返回 "hedge"
+     */
+    private static class SlowFirstCall implements RequestHedger.HedgeableCall<String> {
+        private final long primaryMs;
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final CountDownLatch primaryCancelled = new CountDownLatch(1);
+
+        SlowFirstCall(long primaryMs) {
+            this.primaryMs = primaryMs;
+        }
+
+        @Override
+        public String execute(Consumer<Runnable> onCancel) throws Exception {
+            if (attempts.incrementAndGet() > 1) {
+                return "hedge";
+            }
+            onCancel.accept(primaryCancelled::countDown);
+            primaryCancelled.await(primaryMs, TimeUnit.MILLISECONDS);
+            return "primary";
+        }
+    }
+}
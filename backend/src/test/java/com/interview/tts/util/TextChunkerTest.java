@@ -0,0 +1,65 @@
+package com.interview.tts.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 文本分段切分测试
+ */
+class TextChunkerTest {
+
+    @Test
+    void splitsAtSentenceEndAndKeepsPunctuation() {
+        assertThat(TextChunker.splitSentences("第一句。第二句！  第三句？\n第四句", 100))
+                .containsExactly("第一句。", "第二句！", "第三句？", "第四句");
+    }
+
+    @Test
+    void englishPeriodSplitsOnlyBeforeWhitespace() {
+        assertThat(TextChunker.splitSentences("Version 2.5 is out. Try it now.", 100))
+                .containsExactly("Version 2.5 is out.", "Try it now.");
+    }
+
+    @Test
+    void longSentenceFallsBackToClausesThenHardCut() {
+        assertThat(TextChunker.splitSentences("一二三四五，六七八九十，甲乙丙。", 6))
+                .containsExactly("一二三四五，", "六七八九十，", "甲乙丙。");
+        assertThat(TextChunker.splitSentences("一二三四五六七八九十", 4))
+                .containsExactly("一二三四", "五六七八", "九十");
+    }
+
+    @Test
+    void packsAdjacentSentencesUpToMaxChars() {
+        assertThat(TextChunker.split("一二三。四五六。七八九。", 8))
+                .containsExactly("一二三。四五六。", "七八九。");
+        // 英文句子之间补回的空格也计入长度
+        assertThat(TextChunker.split("Aaaa. Bbbb.", 10))
+                .containsExactly("Aaaa.", "Bbbb.");
+        assertThat(TextChunker.split("Aaaa. Bbbb.", 11))
+                .containsExactly("Aaaa. Bbbb.");
+    }
+
+    @Test
+    void chunksNeverExceedMaxCharsAndKeepOrder() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("第").append(i).append("句话，内容").append("长".repeat(i % 13)).append(i % 3 == 0 ? "！" : "。");
+        }
+        int maxChars = 50;
+        List<String> chunks = TextChunker.split(text.toString(), maxChars);
+
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.length()).isLessThanOrEqualTo(maxChars));
+        assertThat(String.join("", chunks)).isEqualTo(text.toString());
+    }
+
+    @Test
+    void streamingKeepsFirstSentenceAlone() {
+        assertThat(TextChunker.splitForStreaming("开头。第二句。第三句。", 100))
+                .containsExactly("开头。", "第二句。第三句。");
+        assertThat(TextChunker.splitForStreaming("只有一句", 100)).containsExactly("只有一句");
+        assertThat(TextChunker.splitForStreaming("", 100)).isEmpty();
+    }
+}
@@ -73,6 +73,66 @@ CREATE TABLE IF NOT EXISTS `audio_cache` (
     UNIQUE KEY `uk_md5_voice_prompt` (`raw_text_md5`, `voice_name`, `prompt_hash`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='音频缓存表';
 
+-- 播客脚本缓存表（相同原文、提示词版本、模型和temperature复用LLM生成的脚本）
+CREATE TABLE IF NOT EXISTS `script_cache` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+    `cache_key` CHAR(64) NOT NULL COMMENT 'SHA-256(原文哈希, 提示词版本, 模型, temperature)',
+    `source_hash` CHAR(64) NOT NULL COMMENT '原文SHA-256',
+    `prompt_version` VARCHAR(32) NOT NULL COMMENT '提示词模板版本',
+    `model_id` VARCHAR(100) NOT NULL COMMENT '模型ID',
+    `temperature` DOUBLE NOT NULL COMMENT '采样温度',
+    `script_content` MEDIUMTEXT NOT NULL COMMENT '脚本内容',
+    `hit_count` BIGINT NOT NULL DEFAULT 0 COMMENT '命中次数',
+    `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `last_hit_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '最近命中时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_cache_key` (`cache_key`),
+    KEY `idx_last_hit_time` (`last_hit_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='播客脚本缓存表';
+
+-- 长文本异步任务状态表 (task-state.store=jdbc 时使用)
+CREATE TABLE IF NOT EXISTS `long_text_task` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+    `task_id` VARCHAR(64) NOT NULL COMMENT '火山引擎任务ID',
+    `user_id` BIGINT DEFAULT NULL COMMENT '用户ID',
+    `audio_file_id` BIGINT DEFAULT NULL COMMENT '音频文件ID',
+    `use_emotion` TINYINT(1) DEFAULT 0 COMMENT '是否情感预测版',
+    `status` VARCHAR(20) NOT NULL COMMENT '状态: PENDING/PERSISTING/COMPLETED/DEGRADED/FAILED',
+    `r2_url` VARCHAR(255) DEFAULT NULL COMMENT '音频URL',
+    `temp_audio_url` VARCHAR(500) DEFAULT NULL COMMENT '火山引擎临时音频URL',
+    `duration` INT DEFAULT 0 COMMENT '时长(秒)',
+    `error_message` VARCHAR(500) DEFAULT NULL COMMENT '失败原因',
+    `query_count` INT DEFAULT 0 COMMENT '上游查询次数',
+    `synthesizing` TINYINT(1) DEFAULT 0 COMMENT '是否已开始合成',
+    `last_poll_at` BIGINT DEFAULT NULL COMMENT '最近轮询时间(毫秒)',
+    `finished_at` BIGINT DEFAULT NULL COMMENT '结束时间(毫秒)',
+    `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_task_id` (`task_id`),
+    KEY `idx_status_finished` (`status`, `finished_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='长文本异步任务状态表';
+
+-- 持久化任务队列表
+CREATE TABLE IF NOT EXISTS `synthesis_job` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+    `job_type` VARCHAR(50) NOT NULL COMMENT '任务类型',
+    `payload` TEXT DEFAULT NULL COMMENT '任务参数(JSON)',
+    `priority` INT NOT NULL DEFAULT 0 COMMENT '优先级，越大越先执行',
+    `status` VARCHAR(20) NOT NULL DEFAULT 'PENDING' COMMENT '状态: PENDING/RUNNING/SUCCEEDED/DEAD',
+    `attempts` INT NOT NULL DEFAULT 0 COMMENT '已执行次数',
+    `max_attempts` INT NOT NULL DEFAULT 5 COMMENT '最大执行次数',
+    `run_at` DATETIME NOT NULL COMMENT '最早执行时间',
+    `lease_owner` VARCHAR(100) DEFAULT NULL COMMENT '持有租约的实例',
+    `lease_until` DATETIME DEFAULT NULL COMMENT '租约到期时间',
+    `last_error` VARCHAR(1000) DEFAULT NULL COMMENT '最近一次失败原因',
+    `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (`id`),
+    KEY `idx_status_run_at` (`status`, `run_at`),
+    KEY `idx_lease_until` (`status`, `lease_until`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='持久化任务队列表';
+
 -- 播客表
 CREATE TABLE IF NOT EXISTS `podcast` (
     `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键ID',
@@ -84,6 +144,7 @@ CREATE TABLE IF NOT EXISTS `podcast` (
     `voice_b` VARCHAR(50) DEFAULT NULL COMMENT '主播B音色',
     `audio_url` VARCHAR(255) DEFAULT NULL COMMENT '音频URL',
     `duration` INT DEFAULT 0 COMMENT '时长(秒)',
+    `time_index` TEXT DEFAULT NULL COMMENT '逐句时间索引(JSON)',
     `status` VARCHAR(20) DEFAULT 'PENDING' COMMENT '状态: PENDING/PROCESSING/COMPLETED/FAILED',
     `error_message` VARCHAR(500) DEFAULT NULL COMMENT '错误信息',
     `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
@@ -92,6 +153,24 @@ CREATE TABLE IF NOT EXISTS `podcast` (
     KEY `idx_user_id` (`user_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='播客表';
 
+-- 播客分句表（保存每句合成结果，任务重试时跳过已完成的句子）
+CREATE TABLE IF NOT EXISTS `podcast_segment` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+    `podcast_id` BIGINT NOT NULL COMMENT '播客ID',
+    `line_index` INT NOT NULL COMMENT '脚本中的句序号',
+    `speaker` VARCHAR(10) NOT NULL COMMENT '主播: A/B',
+    `voice` VARCHAR(50) DEFAULT NULL COMMENT '音色',
+    `content` TEXT DEFAULT NULL COMMENT '文本',
+    `status` VARCHAR(20) NOT NULL DEFAULT 'PENDING' COMMENT '状态: PENDING/COMPLETED/FAILED',
+    `audio_data` MEDIUMBLOB DEFAULT NULL COMMENT '合成的音频(MP3)',
+    `attempts` INT NOT NULL DEFAULT 0 COMMENT '合成次数',
+    `error_message` VARCHAR(500) DEFAULT NULL COMMENT '错误信息',
+    `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `update_time` DATETIME DEFAULT NULL COMMENT '更新时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_podcast_line` (`podcast_id`, `line_index`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='播客分句表';
+
 -- 克隆声音表
 CREATE TABLE IF NOT EXISTS `cloned_voice` (
     `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键ID',